@@ -8,6 +8,9 @@
 plugins {
     // Apply the application plugin to add support for building a CLI application in Java.
     application
+
+    // JMH plugin: adds the `jmh` source set (src/jmh/java) and the `jmh` task.
+    alias(libs.plugins.jmh)
 }
 
 repositories {
@@ -24,6 +27,10 @@ dependencies {
     
     // OpenCSV dependency for parsing CSV files
     implementation("com.opencsv:opencsv:5.7.1")
+
+    // Generates plain-Java injectors for classes with @AutoInjectable fields
+    annotationProcessor(project(":processor"))
+    testAnnotationProcessor(project(":processor"))
 }
 
 // Apply a specific Java toolchain to ease working on different environments.
@@ -42,10 +49,81 @@ tasks.named<JavaExec>("run") {
     standardInput = System.`in`
 }
 
+// Publish the injection mappings as a classpath index (Injector.fromClasspath)
+tasks.processResources {
+    from(rootProject.file("injection.properties")) {
+        into("META-INF")
+    }
+}
+
+// CSVTest reads the sample data set from the repository root
+tasks.test {
+    systemProperty("csv.file", rootProject.file("foreign_names.csv").path)
+}
+
 // run {
 //     standardInput = System.in
 // }
 
+// Multi-threaded contention comparison of the concurrent collections.
+tasks.register<JavaExec>("concurrentCompare") {
+    group = "benchmark"
+    description = "Runs ConcurrentCompare against the standard concurrent collections."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass = "app.gpuslave.first.ConcurrentCompare"
+}
+
+// Expression evaluation service on localhost: ./gradlew expressionService [-PservicePort=7070]
+tasks.register<JavaExec>("expressionService") {
+    group = "application"
+    description = "Runs the line-protocol expression evaluation service."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass = "app.gpuslave.first.ExpressionService"
+    args(providers.gradleProperty("servicePort").getOrElse("7070"))
+}
+
+// Performance regression tracking: ./gradlew perfBaseline records app/perf/baseline.json,
+// ./gradlew perfCheck compares a fresh run against it (-PperfThreshold=0.25,
+// -PperfFailOnRegression=true). Every run is kept in build/perf.
+val perfBaselineFile = layout.projectDirectory.file("perf/baseline.json").asFile.path
+val perfOutputDir = layout.buildDirectory.dir("perf").get().asFile.path
+
+tasks.register<JavaExec>("perfBaseline") {
+    group = "benchmark"
+    description = "Records a new performance baseline."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass = "app.gpuslave.first.PerformanceBaseline"
+    args("record", "--baseline", perfBaselineFile, "--output-dir", perfOutputDir)
+}
+
+tasks.register<JavaExec>("perfCheck") {
+    group = "verification"
+    description = "Compares a fresh performance run against the recorded baseline."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass = "app.gpuslave.first.PerformanceBaseline"
+    args(
+        "check", "--baseline", perfBaselineFile, "--output-dir", perfOutputDir,
+        "--threshold", providers.gradleProperty("perfThreshold").getOrElse("0.25"),
+        "--fail-on-regression", providers.gradleProperty("perfFailOnRegression").getOrElse("false")
+    )
+}
+
+// Microbenchmarks: ./gradlew jmh
+// Results (average time in ns/op with error bars, plus allocation rate from
+// the GC profiler) are written to build/results/jmh/results.json.
+jmh {
+    jmhVersion = libs.versions.jmh
+    benchmarkMode = listOf("avgt")
+    timeUnit = "ns"
+    warmupIterations = 5
+    iterations = 5
+    fork = 2
+    profilers = listOf("gc")
+    resultFormat = "JSON"
+    // Run a subset with -PjmhIncludes=ListBenchmark
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes = listOf(it) }
+}
+
 tasks.javadoc {
     options {
         memberLevel = JavadocMemberLevel.PRIVATE
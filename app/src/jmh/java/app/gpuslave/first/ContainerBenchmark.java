@@ -0,0 +1,160 @@
+package app.gpuslave.first;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH-бенчмарк операций над {@link Container}.
+ * Набор операций и размеров совпадает с {@link ListBenchmark}, насколько это
+ * позволяет интерфейс контейнера, поэтому результаты можно сравнивать
+ * построчно.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ContainerBenchmark {
+
+  /**
+   * Количество заранее сгенерированных случайных индексов.
+   * Степень двойки, чтобы переход по кругу выполнялся маской.
+   */
+  private static final int RANDOM_POOL = 1 << 12;
+
+  /**
+   * Размер контейнера.
+   */
+  @Param({ "100", "10000", "100000" })
+  public int size;
+
+  /**
+   * Тестируемый контейнер.
+   */
+  private Container<Integer> container;
+
+  /**
+   * Случайные индексы в диапазоне [0, size).
+   */
+  private int[] indices;
+
+  /**
+   * Позиция в пуле случайных индексов.
+   */
+  private int cursor;
+
+  /**
+   * Заполняет контейнер и пул случайных индексов.
+   */
+  @Setup
+  public void setUp() {
+    container = new Container<>();
+    for (int i = 0; i < size; i++) {
+      container.add(i);
+    }
+    Random random = new Random(42);
+    indices = new int[RANDOM_POOL];
+    for (int i = 0; i < RANDOM_POOL; i++) {
+      indices[i] = random.nextInt(size);
+    }
+  }
+
+  /**
+   * Возвращает следующую позицию в пуле случайных индексов.
+   *
+   * @return Позиция в диапазоне [0, RANDOM_POOL).
+   */
+  private int next() {
+    return cursor = (cursor + 1) & (RANDOM_POOL - 1);
+  }
+
+  /**
+   * Добавление в конец и удаление с конца.
+   *
+   * @return Размер контейнера после операции.
+   */
+  @Benchmark
+  public int addRemoveEnd() {
+    container.add(size);
+    container.remove(container.size() - 1);
+    return container.size();
+  }
+
+  /**
+   * Удаление из середины с последующим возвратом элемента в конец.
+   *
+   * @return Размер контейнера после операции.
+   */
+  @Benchmark
+  public int removeMiddleAddEnd() {
+    container.remove(container.size() / 2);
+    container.add(size);
+    return container.size();
+  }
+
+  /**
+   * Получение элемента по случайному индексу.
+   *
+   * @return Полученный элемент.
+   */
+  @Benchmark
+  public Integer getRandom() {
+    return container.get(indices[next()]);
+  }
+
+  /**
+   * Полный обход через {@link Container#get(int)}.
+   *
+   * @return Сумма элементов.
+   */
+  @Benchmark
+  public long iterateByIndex() {
+    long sum = 0;
+    for (int i = 0; i < container.size(); i++) {
+      sum += container.get(i);
+    }
+    return sum;
+  }
+
+  /**
+   * Полный обход через {@link Container#forEach(java.util.function.Consumer)}.
+   *
+   * @param blackhole Приемник элементов.
+   */
+  @Benchmark
+  public void iterateForEach(Blackhole blackhole) {
+    container.forEach(blackhole::consume);
+  }
+
+  /**
+   * Сумма элементов через последовательный поток.
+   *
+   * @return Сумма элементов.
+   */
+  @Benchmark
+  public long streamSum() {
+    return container.stream().mapToLong(Integer::longValue).sum();
+  }
+
+  /**
+   * Смешанная нагрузка: восемь чтений по случайному индексу на одну пару
+   * удаления в случайной позиции и добавления в конец.
+   *
+   * @param blackhole Приемник результатов чтения.
+   */
+  @Benchmark
+  public void mixed(Blackhole blackhole) {
+    for (int i = 0; i < 8; i++) {
+      blackhole.consume(container.get(indices[next()]));
+    }
+    container.remove(indices[next()]);
+    container.add(size);
+  }
+}
@@ -0,0 +1,202 @@
+package app.gpuslave.first;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * JMH-бенчмарк фаз {@link ExpressionEvaluator}: разбиения на токены,
+ * преобразования в постфиксную запись и вычисления постфиксной записи, а
+ * также компиляции, вычисления {@link CompiledExpression} и тихого
+ * вычисления целиком. Каждая фаза получает заранее подготовленный результат
+ * предыдущей, поэтому измеряется отдельно; профилировщик GC из настроек
+ * {@code jmh} показывает выделение памяти на операцию.
+ * <p>
+ * Набор выражений задается параметром {@link #shape}:
+ * <ul>
+ * <li>{@code short} - короткое выражение с тремя переменными</li>
+ * <li>{@code nested} - вложенность скобок глубиной {@value #DEPTH}</li>
+ * <li>{@code variables} - сумма {@value #VARIABLES} переменных</li>
+ * </ul>
+ * Интерактивный путь {@link ExpressionEvaluator#evaluate(String)} не
+ * измеряется: он запрашивает значения переменных и печатает в консоль.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ExpressionEvaluatorBenchmark {
+
+  /**
+   * Глубина вложенности выражения {@code nested}.
+   */
+  private static final int DEPTH = 32;
+
+  /**
+   * Количество переменных выражения {@code variables}.
+   */
+  private static final int VARIABLES = 64;
+
+  /**
+   * Форма выражения.
+   */
+  @Param({ "short", "nested", "variables" })
+  public String shape;
+
+  /**
+   * Выражение с переменными.
+   */
+  private String expression;
+
+  /**
+   * Выражение с подставленными значениями переменных.
+   */
+  private String substituted;
+
+  /**
+   * Токены подставленного выражения.
+   */
+  private List<String> infixTokens;
+
+  /**
+   * Постфиксная запись подставленного выражения.
+   */
+  private List<String> postfixTokens;
+
+  /**
+   * Имена переменных.
+   */
+  private List<String> names;
+
+  /**
+   * Значения переменных в порядке {@link #names}.
+   */
+  private double[] slots;
+
+  /**
+   * Значения переменных по именам.
+   */
+  private Map<String, Double> values;
+
+  /**
+   * Скомпилированное выражение.
+   */
+  private CompiledExpression compiled;
+
+  /**
+   * Вычислитель для тихого вычисления.
+   */
+  private ExpressionEvaluator evaluator;
+
+  /**
+   * Строит выражение выбранной формы и результаты промежуточных фаз.
+   */
+  @Setup
+  public void setUp() {
+    names = new ArrayList<>();
+    StringBuilder sb = new StringBuilder();
+    switch (shape) {
+      case "short":
+        names.addAll(List.of("a", "b", "c"));
+        sb.append("a + b * 2 - c / 4");
+        break;
+      case "nested":
+        names.add("x");
+        sb.append("x");
+        for (int i = 1; i <= DEPTH; i++) {
+          sb.insert(0, '(').append(" + ").append(i).append(") * 1.5");
+        }
+        break;
+      default:
+        for (int i = 0; i < VARIABLES; i++) {
+          names.add("v" + i);
+          sb.append(i == 0 ? "" : " + ").append("v").append(i).append(" * 1.5");
+        }
+        break;
+    }
+    expression = sb.toString();
+
+    slots = new double[names.size()];
+    values = new HashMap<>();
+    substituted = expression;
+    for (int i = names.size() - 1; i >= 0; i--) {
+      slots[i] = i + 0.5;
+      values.put(names.get(i), slots[i]);
+      substituted = substituted.replaceAll("\\b" + names.get(i) + "\\b", String.valueOf(slots[i]));
+    }
+
+    infixTokens = ExpressionEvaluator.tokenize(substituted);
+    postfixTokens = ExpressionEvaluator.infixToPostfix(infixTokens);
+    compiled = ExpressionEvaluator.compile(expression, names);
+    evaluator = new ExpressionEvaluator();
+  }
+
+  /**
+   * Разбиение на токены.
+   *
+   * @return Токены.
+   */
+  @Benchmark
+  public List<String> tokenize() {
+    return ExpressionEvaluator.tokenize(substituted);
+  }
+
+  /**
+   * Преобразование токенов в постфиксную запись.
+   *
+   * @return Постфиксная запись.
+   */
+  @Benchmark
+  public List<String> infixToPostfix() {
+    return ExpressionEvaluator.infixToPostfix(infixTokens);
+  }
+
+  /**
+   * Вычисление постфиксной записи.
+   *
+   * @return Значение выражения.
+   */
+  @Benchmark
+  public double evaluatePostfix() {
+    return ExpressionEvaluator.evaluatePostfix(postfixTokens);
+  }
+
+  /**
+   * Компиляция выражения с переменными.
+   *
+   * @return Скомпилированное выражение.
+   */
+  @Benchmark
+  public CompiledExpression compile() {
+    return ExpressionEvaluator.compile(expression, names);
+  }
+
+  /**
+   * Вычисление скомпилированного выражения.
+   *
+   * @return Значение выражения.
+   */
+  @Benchmark
+  public double evaluateCompiled() {
+    return compiled.evaluate(slots);
+  }
+
+  /**
+   * Тихое вычисление выражения с переменными от строки до результата.
+   *
+   * @return Результат вычисления.
+   */
+  @Benchmark
+  public EvaluationResult evaluateQuietly() {
+    return evaluator.evaluateQuietly(expression, values);
+  }
+}
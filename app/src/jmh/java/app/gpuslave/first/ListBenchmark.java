@@ -0,0 +1,180 @@
+package app.gpuslave.first;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH-бенчмарк операций над {@link ArrayList} и {@link LinkedList}.
+ * Заменяет замеры {@link Compare} через {@code System.currentTimeMillis()}:
+ * JMH выполняет прогрев, запускает измерения в отдельных JVM и не дает JIT
+ * выбросить неиспользуемые результаты.
+ * <p>
+ * Операции вставки выполняются в паре с удалением, чтобы размер списка
+ * оставался равным {@link #size} на протяжении всего измерения.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ListBenchmark {
+
+  /**
+   * Количество заранее сгенерированных случайных индексов и значений.
+   * Степень двойки, чтобы переход по кругу выполнялся маской.
+   */
+  private static final int RANDOM_POOL = 1 << 12;
+
+  /**
+   * Тестируемая реализация списка.
+   */
+  @Param({ "ArrayList", "LinkedList" })
+  public String implementation;
+
+  /**
+   * Размер списка.
+   */
+  @Param({ "100", "10000", "100000" })
+  public int size;
+
+  /**
+   * Тестируемый список.
+   */
+  private List<Integer> list;
+
+  /**
+   * Случайные индексы в диапазоне [0, size).
+   */
+  private int[] indices;
+
+  /**
+   * Случайные значения для поиска; примерно половина из них есть в списке.
+   */
+  private Integer[] values;
+
+  /**
+   * Позиция в пулах случайных индексов и значений.
+   */
+  private int cursor;
+
+  /**
+   * Заполняет список и пулы случайных данных.
+   */
+  @Setup
+  public void setUp() {
+    list = "LinkedList".equals(implementation) ? new LinkedList<>() : new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      list.add(i);
+    }
+    Random random = new Random(42);
+    indices = new int[RANDOM_POOL];
+    values = new Integer[RANDOM_POOL];
+    for (int i = 0; i < RANDOM_POOL; i++) {
+      indices[i] = random.nextInt(size);
+      values[i] = random.nextInt(size * 2);
+    }
+  }
+
+  /**
+   * Возвращает следующую позицию в пулах случайных данных.
+   *
+   * @return Позиция в диапазоне [0, RANDOM_POOL).
+   */
+  private int next() {
+    return cursor = (cursor + 1) & (RANDOM_POOL - 1);
+  }
+
+  /**
+   * Добавление в конец и удаление с конца.
+   *
+   * @return Удаленный элемент.
+   */
+  @Benchmark
+  public Integer addRemoveEnd() {
+    list.add(size);
+    return list.remove(list.size() - 1);
+  }
+
+  /**
+   * Добавление в начало и удаление из начала.
+   *
+   * @return Удаленный элемент.
+   */
+  @Benchmark
+  public Integer addRemoveBeginning() {
+    list.add(0, size);
+    return list.remove(0);
+  }
+
+  /**
+   * Добавление в середину и удаление из середины.
+   *
+   * @return Удаленный элемент.
+   */
+  @Benchmark
+  public Integer addRemoveMiddle() {
+    int middle = size / 2;
+    list.add(middle, size);
+    return list.remove(middle);
+  }
+
+  /**
+   * Получение элемента по случайному индексу.
+   *
+   * @return Полученный элемент.
+   */
+  @Benchmark
+  public Integer getRandom() {
+    return list.get(indices[next()]);
+  }
+
+  /**
+   * Поиск случайного значения.
+   *
+   * @return Результат поиска.
+   */
+  @Benchmark
+  public boolean contains() {
+    return list.contains(values[next()]);
+  }
+
+  /**
+   * Полный обход списка итератором.
+   *
+   * @return Сумма элементов.
+   */
+  @Benchmark
+  public long iterate() {
+    long sum = 0;
+    for (Integer value : list) {
+      sum += value;
+    }
+    return sum;
+  }
+
+  /**
+   * Смешанная нагрузка: восемь чтений по случайному индексу на одну пару
+   * вставки и удаления в случайной позиции.
+   *
+   * @param blackhole Приемник результатов чтения.
+   */
+  @Benchmark
+  public void mixed(Blackhole blackhole) {
+    for (int i = 0; i < 8; i++) {
+      blackhole.consume(list.get(indices[next()]));
+    }
+    int index = indices[next()];
+    list.add(index, size);
+    blackhole.consume(list.remove(index));
+  }
+}
@@ -4,97 +4,70 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
-import java.lang.reflect.Field;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.Properties;
 
 /**
  * Аннотация, используемая для пометки полей, в которые должны быть внедрены
  * зависимости с помощью механизма рефлексии.
  * Поля, помеченные данной аннотацией, будут автоматически инициализированы
  * классом {@link Injector}.
+ * <p>
+ * Аннотацией можно также пометить конструктор реализации: {@link Injector}
+ * создаст ее этим конструктором, передав в параметры экземпляры реализаций
+ * их интерфейсов. Атрибуты аннотации на конструкторе не используются.
  */
 @Retention(RetentionPolicy.RUNTIME)
-@Target(ElementType.FIELD)
+@Target({ ElementType.FIELD, ElementType.CONSTRUCTOR })
 public @interface AutoInjectable {
-}
-
-/**
- * Класс, реализующий механизм внедрения зависимостей через рефлексию.
- * Находит поля, помеченные аннотацией {@link AutoInjectable}, и инициализирует их
- * экземплярами классов, указанных в файле свойств.
- * <p>
- * Файл свойств должен содержать пары "интерфейс = реализация" в формате:
- * <pre>
- * пакет.ИмяИнтерфейса=пакет.ИмяРеализации
- * </pre>
- */
-class Injector {
 
   /**
-   * Файл свойств, содержащий сопоставление интерфейсов и их реализаций.
+   * Область видимости внедряемого экземпляра. Значение {@link Scope#DEFAULT}
+   * означает, что область берется из файла свойств (ключ
+   * {@code пакет.ИмяИнтерфейса.scope}), а если она там не указана -
+   * используется {@link Scope#PROTOTYPE}.
+   *
+   * @return область видимости
    */
-  private final Properties properties;
+  Scope scope() default Scope.DEFAULT;
 
   /**
-   * Создает инжектор, используя путь к файлу свойств по умолчанию "injection.properties".
-   * 
-   * @throws IOException при ошибке чтения файла свойств
+   * Признак отложенного создания. Если {@code true}, в поле типа интерфейса
+   * внедряется легковесный прокси, а в поле типа
+   * {@link java.util.function.Supplier Supplier&lt;X&gt;} - поставщик;
+   * реализация создается (с учетом {@link #scope()}) только при первом
+   * обращении и затем переиспользуется.
+   *
+   * @return {@code true} для отложенного создания
    */
-  public Injector() throws IOException {
-    this("injection.properties");
-  }
+  boolean lazy() default false;
 
   /**
-   * Создает инжектор, используя указанный путь к файлу свойств.
-   * 
-   * @param propertiesPath путь к файлу свойств
-   * @throws IOException при ошибке чтения файла свойств
+   * Область видимости экземпляров реализации.
    */
-  public Injector(String propertiesPath) throws IOException {
-    this.properties = new Properties();
-    try (InputStream is = new FileInputStream(propertiesPath)) {
-      properties.load(is);
-    }
-  }
-
-  /**
-   * Внедряет зависимости в переданный объект.
-   * Метод ищет все поля, помеченные аннотацией {@link AutoInjectable},
-   * и инициализирует их экземплярами классов, указанных в файле свойств.
-   * 
-   * @param <T>    тип объекта
-   * @param object объект, в который внедряются зависимости
-   * @return объект с внедренными зависимостями
-   * @throws Exception при ошибке внедрения:
-   *                   - если не найдена реализация для интерфейса
-   *                   - если возникла ошибка создания экземпляра класса
-   *                   - если возникла ошибка доступа к полю
-   */
-  public <T> T inject(T object) throws Exception {
-    Class<?> objectClass = object.getClass();
-
-    for (Field field : objectClass.getDeclaredFields()) {
-      if (field.isAnnotationPresent(AutoInjectable.class)) {
-        field.setAccessible(true);
-
-        Class<?> fieldType = field.getType();
-        String interfaceName = fieldType.getName();
+  enum Scope {
+    /**
+     * Область не задана в аннотации и определяется файлом свойств.
+     */
+    DEFAULT,
 
-        String implementationClassName = properties.getProperty(interfaceName);
-        if (implementationClassName == null) {
-          throw new IllegalStateException("No implementation found for " + interfaceName);
-        }
+    /**
+     * Новый экземпляр для каждого внедрения.
+     */
+    PROTOTYPE,
 
-        Class<?> implementationClass = Class.forName(implementationClassName);
-        Object implementationInstance = implementationClass.getDeclaredConstructor().newInstance();
+    /**
+     * Один экземпляр на инжектор, создаваемый при первом обращении.
+     */
+    SINGLETON,
 
-        field.set(object, implementationInstance);
-      }
-    }
+    /**
+     * Один экземпляр на поток.
+     */
+    THREAD,
 
-    return object;
+    /**
+     * Один экземпляр на область запроса, открытую методом
+     * {@link Injector#openRequestScope()}.
+     */
+    REQUEST
   }
 }
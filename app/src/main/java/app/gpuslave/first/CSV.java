@@ -4,11 +4,15 @@ import com.opencsv.CSVParser;
 import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
+import com.opencsv.ICSVParser;
 import com.opencsv.exceptions.CsvValidationException;
+import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -16,14 +20,38 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Класс для работы с CSV файлами, содержащими данные о сотрудниках.
  * Предоставляет методы для чтения CSV файлов и создания объектов Person с
  * ассоциированными объектами Division.
+ * <p>
+ * Методы с параметром {@link CsvErrorSink} передают ошибочные строки в
+ * приемник ошибок. Методы без него пропускают такие строки и, если они были,
+ * выводят итог {@link CsvErrorSink#toSummary()} в {@code System.err}, чтобы
+ * пропуск не оставался незамеченным.
  */
 public class CSV {
 
+  /**
+   * Количество строк в одном пакете конвейерного разбора.
+   */
+  static final int PIPELINE_BATCH_SIZE = 1024;
+
+  /**
+   * Наибольшее количество пакетов в работе на один поток конвейерного
+   * разбора.
+   */
+  static final int PIPELINE_BATCHES_PER_WORKER = 4;
+
   /**
    * Конструктор по умолчанию. Не используется напрямую, так как класс 
    * предоставляет только статические методы.
@@ -37,7 +65,7 @@ public class CSV {
    */
   public static class Division {
     /** Счетчик для автоматической генерации идентификаторов отделов. */
-    private static int nextId = 1;
+    private static final AtomicInteger nextId = new AtomicInteger(1);
     
     /** Уникальный идентификатор отдела. */
     private final int id;
@@ -52,7 +80,7 @@ public class CSV {
      * @param title Название отдела
      */
     public Division(String title) {
-      this.id = nextId++;
+      this.id = nextId.getAndIncrement();
       this.title = title;
     }
 
@@ -180,56 +208,117 @@ public class CSV {
    * @return Список объектов Person
    */
   public static List<Person> parseCSV(String csvFilePath, char separator) {
-    List<Person> people = new ArrayList<>();
-    Map<String, Division> divisionCache = new HashMap<>();
-    SimpleDateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy");
-
-    CSVParser parser = new CSVParserBuilder().withSeparator(separator).build();
+    return parseCSV(csvFilePath, separator, null);
+  }
 
-    try (CSVReader reader = new CSVReaderBuilder(new FileReader(csvFilePath))
-        .withCSVParser(parser)
-        .build()) {
-      String[] header = reader.readNext();
-      if (header == null) {
-        throw new RuntimeException("CSV файл пуст или имеет недопустимый формат");
-      }
+  /**
+   * Читает данные из CSV файла по указанному пути и создает объекты Person
+   * только для строк, прошедших условие запроса. Условие проверяется до
+   * разбора даты и создания отдела; вычисляемые столбцы запроса не
+   * используются.
+   * 
+   * @param csvFilePath Путь к CSV файлу
+   * @param separator   Разделитель полей в CSV файле
+   * @param query       Запрос или {@code null}, чтобы прочитать все строки
+   * @return Список объектов Person
+   */
+  public static List<Person> parseCSV(String csvFilePath, char separator, PersonQuery query) {
+    CsvErrorSink errors = CsvErrorSink.skip();
+    return warnSkipped(parseCSV(csvFilePath, separator, query, errors), errors);
+  }
 
-      String[] nextLine;
-      while ((nextLine = reader.readNext()) != null) {
-        if (nextLine.length < 6) {
-          System.err.println("Предупреждение: Пропуск некорректной строки с менее чем 6 полями");
-          continue;
-        }
+  /**
+   * Читает данные из CSV файла по указанному пути и создает объекты Person
+   * для строк, прошедших условие запроса. Ошибочные строки передаются в
+   * приемник ошибок, который решает, пропустить строку или прервать чтение.
+   * 
+   * @param csvFilePath Путь к CSV файлу
+   * @param separator   Разделитель полей в CSV файле
+   * @param query       Запрос или {@code null}, чтобы прочитать все строки
+   * @param errors      Приемник ошибок строк
+   * @return Список объектов Person
+   * @throws CsvErrorSink.RowException при ошибочной строке и политике
+   *                                   {@link CsvErrorSink.Policy#FAIL_FAST}
+   */
+  public static List<Person> parseCSV(String csvFilePath, char separator, PersonQuery query,
+      CsvErrorSink errors) {
+    try (Reader in = new FileReader(csvFilePath)) {
+      return readRows(in, separator, personMapper(query), errors);
+    } catch (IOException | CsvValidationException e) {
+      throw new RuntimeException("Ошибка при чтении CSV файла: " + e.getMessage(), e);
+    }
+  }
 
-        try {
-          int id = Integer.parseInt(nextLine[0]);
-          String name = nextLine[1];
-          char gender = nextLine[2].equalsIgnoreCase("Male") ? 'M' : 'F';
-
-          Date dateOfBirth;
-          try {
-            dateOfBirth = dateFormat.parse(nextLine[3]);
-          } catch (ParseException e) {
-            System.err.println("Предупреждение: Неверный формат даты для ID " + id + ": " + nextLine[3]);
-            dateOfBirth = new Date(0);
-          }
+  /**
+   * Читает данные CSV из потока, например распакованного
+   * {@link java.util.zip.GZIPInputStream}, и создает список объектов Person.
+   * Поток читается до конца и закрывается.
+   * 
+   * @param in        Поток с данными CSV в кодировке UTF-8
+   * @param separator Разделитель полей в CSV файле
+   * @return Список объектов Person
+   */
+  public static List<Person> parseCSV(InputStream in, char separator) {
+    CsvErrorSink errors = CsvErrorSink.skip();
+    return warnSkipped(parseCSV(in, separator, errors), errors);
+  }
 
-          String divisionTitle = nextLine[4];
-          Division division = divisionCache.computeIfAbsent(divisionTitle, Division::new);
-          int salary = Integer.parseInt(nextLine[5]);
+  /**
+   * Читает данные CSV из потока и создает список объектов Person, передавая
+   * ошибочные строки в приемник ошибок. Поток читается до конца и
+   * закрывается.
+   * 
+   * @param in        Поток с данными CSV в кодировке UTF-8
+   * @param separator Разделитель полей в CSV файле
+   * @param errors    Приемник ошибок строк
+   * @return Список объектов Person
+   * @throws CsvErrorSink.RowException при ошибочной строке и политике
+   *                                   {@link CsvErrorSink.Policy#FAIL_FAST}
+   */
+  public static List<Person> parseCSV(InputStream in, char separator, CsvErrorSink errors) {
+    try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+      return readRows(reader, separator, personMapper(null), errors);
+    } catch (IOException | CsvValidationException e) {
+      throw new RuntimeException("Ошибка при чтении CSV файла: " + e.getMessage(), e);
+    }
+  }
 
-          Person person = new Person(id, name, gender, dateOfBirth, division, salary);
-          people.add(person);
+  /**
+   * Читает данные из CSV файла по указанному пути и возвращает вычисляемые
+   * столбцы запроса для строк, прошедших его условие. Объекты Person, даты и
+   * отделы при этом не создаются.
+   * 
+   * @param csvFilePath Путь к CSV файлу
+   * @param separator   Разделитель полей в CSV файле
+   * @param query       Запрос
+   * @return Список строк результата
+   */
+  public static List<PersonQuery.Row> queryCSV(String csvFilePath, char separator, PersonQuery query) {
+    CsvErrorSink errors = CsvErrorSink.skip();
+    return warnSkipped(queryCSV(csvFilePath, separator, query, errors), errors);
+  }
 
-        } catch (NumberFormatException e) {
-          System.err.println("Предупреждение: Не удалось преобразовать числовое значение: " + e.getMessage());
-        }
-      }
+  /**
+   * Читает данные из CSV файла по указанному пути и возвращает вычисляемые
+   * столбцы запроса, передавая ошибочные строки в приемник ошибок. Проверяются
+   * только столбцы, на которые ссылается запрос.
+   * 
+   * @param csvFilePath Путь к CSV файлу
+   * @param separator   Разделитель полей в CSV файле
+   * @param query       Запрос
+   * @param errors      Приемник ошибок строк
+   * @return Список строк результата
+   * @throws CsvErrorSink.RowException при ошибочной строке и политике
+   *                                   {@link CsvErrorSink.Policy#FAIL_FAST}
+   */
+  public static List<PersonQuery.Row> queryCSV(String csvFilePath, char separator, PersonQuery query,
+      CsvErrorSink errors) {
+    double[] slots = query.newSlots();
+    try (Reader in = new FileReader(csvFilePath)) {
+      return readRows(in, separator, row -> query.accept(row, slots) ? query.project(row, slots) : null, errors);
     } catch (IOException | CsvValidationException e) {
       throw new RuntimeException("Ошибка при чтении CSV файла: " + e.getMessage(), e);
     }
-
-    return people;
   }
 
   /**
@@ -241,63 +330,478 @@ public class CSV {
    * @return Список объектов Person
    */
   public static List<Person> parseCSVFromResources(String csvFileName, char separator) {
-    List<Person> people = new ArrayList<>();
-    Map<String, Division> divisionCache = new HashMap<>();
-    SimpleDateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy");
-
     try (InputStream is = CSV.class.getClassLoader().getResourceAsStream(csvFileName)) {
 
       if (is == null) {
         throw new RuntimeException("Ресурс не найден: " + csvFileName);
       }
 
-      CSVParser parser = new CSVParserBuilder().withSeparator(separator).build();
+      CsvErrorSink errors = CsvErrorSink.skip();
+      return warnSkipped(readRows(new InputStreamReader(is), separator, personMapper(null), errors), errors);
+    } catch (IOException | CsvValidationException e) {
+      throw new RuntimeException("Ошибка при чтении CSV файла: " + e.getMessage(), e);
+    }
+  }
 
-      try (CSVReader reader = new CSVReaderBuilder(new InputStreamReader(is))
-          .withCSVParser(parser)
-          .build()) {
+  /**
+   * Читает данные CSV из потока конвейером: один поток читает строки и
+   * собирает их в пакеты по {@value #PIPELINE_BATCH_SIZE}, {@code workers}
+   * потоков разбирают пакеты в объекты Person, а вызывающий поток передает
+   * их потребителю в порядке строк файла. Стадии связаны ограниченными
+   * очередями, а количество пакетов в работе ограничено, поэтому память не
+   * растет при медленном потребителе. Подходит для потоков, которые нельзя
+   * разделить на части: ресурсов, gzip, стандартного ввода.
+   * <p>
+   * Запись, поле которой содержит перевод строки внутри кавычек, собирается
+   * из нескольких строк стадией чтения, поэтому файлы {@link PersonCsvWriter}
+   * читаются без потерь. Идентификаторы отделов назначаются в порядке их
+   * первой встречи рабочими потоками. Поток читается до конца и
+   * закрывается; если разбор прерван ошибкой, поток закрывается сразу, а
+   * потоки конвейера - фоновые, так что чтение, заблокированное на
+   * стандартном вводе, не удерживает JVM.
+   * 
+   * @param in        Поток с данными CSV в кодировке UTF-8
+   * @param separator Разделитель полей в CSV файле
+   * @param workers   Количество потоков разбора
+   * @param consumer  Потребитель объектов Person; вызывается в вызывающем
+   *                  потоке
+   * @return Количество переданных потребителю объектов
+   */
+  public static long parseCSVPipelined(InputStream in, char separator, int workers,
+      Consumer<? super Person> consumer) {
+    CsvErrorSink errors = CsvErrorSink.skip();
+    return warnSkipped(parseCSVPipelined(in, separator, workers, errors, consumer), errors);
+  }
 
-        String[] header = reader.readNext();
-        if (header == null) {
-          throw new RuntimeException("CSV файл пуст или имеет недопустимый формат");
+  /**
+   * Читает данные CSV из потока конвейером, передавая ошибочные строки в
+   * приемник ошибок. Приемник вызывается из рабочих потоков; при политике
+   * {@link CsvErrorSink.Policy#FAIL_FAST} исключение рабочего потока
+   * выбрасывается в вызывающем потоке, когда до него дойдет очередь: все
+   * объекты из пакетов, прочитанных раньше пакета с ошибкой, к этому моменту
+   * переданы потребителю.
+   * 
+   * @param in        Поток с данными CSV в кодировке UTF-8
+   * @param separator Разделитель полей в CSV файле
+   * @param workers   Количество потоков разбора
+   * @param errors    Приемник ошибок строк
+   * @param consumer  Потребитель объектов Person; вызывается в вызывающем
+   *                  потоке
+   * @return Количество переданных потребителю объектов
+   * @see #parseCSVPipelined(InputStream, char, int, Consumer)
+   */
+  public static long parseCSVPipelined(InputStream in, char separator, int workers, CsvErrorSink errors,
+      Consumer<? super Person> consumer) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("Количество потоков разбора должно быть положительным: " + workers);
+    }
+    RowMapper<Person> mapper = personMapper(null);
+    Semaphore inFlight = new Semaphore(workers * PIPELINE_BATCHES_PER_WORKER);
+    BlockingQueue<Batch<String>> lines = new ArrayBlockingQueue<>(workers * 2);
+    BlockingQueue<Batch<Person>> parsed = new ArrayBlockingQueue<>(workers * 2);
+    ExecutorService executor = Executors.newFixedThreadPool(workers + 1,
+        Thread.ofPlatform().name("csv-pipeline-", 0).daemon().factory());
+    boolean completed = false;
+    try {
+      executor.execute(() -> readBatches(in, inFlight, lines, parsed, workers));
+      for (int i = 0; i < workers; i++) {
+        executor.execute(() -> parseBatches(separator, mapper, errors, lines, parsed));
+      }
+      long count = consumeInOrder(parsed, inFlight, workers, consumer);
+      completed = true;
+      return count;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Разбор CSV прерван", e);
+    } finally {
+      executor.shutdownNow();
+      if (!completed) {
+        // прерывание не снимает блокировку чтения из потока, а закрытие снимает
+        // ее для сокетов и каналов
+        try {
+          in.close();
+        } catch (IOException e) {
+          // поток уже закрыт или недоступен
         }
+      }
+    }
+  }
 
-        String[] nextLine;
-        while ((nextLine = reader.readNext()) != null) {
-          if (nextLine.length < 6) {
-            System.err.println("Предупреждение: Пропуск некорректной строки с менее чем 6 полями");
-            continue;
-          }
+  /**
+   * Читает данные CSV из файла в папке ресурсов конвейером.
+   * 
+   * @param csvFileName Имя CSV файла в папке ресурсов
+   * @param separator   Разделитель полей в CSV файле
+   * @param workers     Количество потоков разбора
+   * @param consumer    Потребитель объектов Person
+   * @return Количество переданных потребителю объектов
+   * @see #parseCSVPipelined(InputStream, char, int, Consumer)
+   */
+  public static long parseCSVFromResources(String csvFileName, char separator, int workers,
+      Consumer<? super Person> consumer) {
+    InputStream is = CSV.class.getClassLoader().getResourceAsStream(csvFileName);
+    if (is == null) {
+      throw new RuntimeException("Ресурс не найден: " + csvFileName);
+    }
+    return parseCSVPipelined(is, separator, workers, consumer);
+  }
+
+  /**
+   * Выводит итог пропущенных строк в {@code System.err}, если они были.
+   *
+   * @param <T>    тип результата
+   * @param result результат разбора
+   * @param errors приемник ошибок разбора
+   * @return результат разбора
+   */
+  private static <T> T warnSkipped(T result, CsvErrorSink errors) {
+    if (errors.getTotal() > 0) {
+      System.err.print("Предупреждение: " + errors.toSummary());
+    }
+    return result;
+  }
 
-          try {
-            int id = Integer.parseInt(nextLine[0]);
-            String name = nextLine[1];
-            char gender = nextLine[2].equalsIgnoreCase("Male") ? 'M' : 'F';
-
-            Date dateOfBirth;
-            try {
-              dateOfBirth = dateFormat.parse(nextLine[3]);
-            } catch (ParseException e) {
-              System.err.println("Предупреждение: Неверный формат даты для ID " + id + ": " + nextLine[3]);
-              dateOfBirth = new Date(0);
+  /**
+   * Пакет конвейера: записи или объекты с порядковым номером, ошибка стадии
+   * либо признак завершения.
+   *
+   * @param <T> тип элементов
+   */
+  private static final class Batch<T> {
+    /**
+     * Порядковый номер пакета, -1 для признака завершения. Ошибка стадии
+     * получает номер пакета, при обработке которого возникла, а ошибка
+     * чтения - номер следующего за последним отправленным пакетом.
+     */
+    private final long sequence;
+
+    /** Элементы пакета. */
+    private final List<T> items;
+
+    /** Ошибка стадии или {@code null}. */
+    private final Exception failure;
+
+    /**
+     * Номера первых строк файла для записей пакета или {@code null} для
+     * пакетов объектов.
+     */
+    private final long[] lineNumbers;
+
+    private Batch(long sequence, List<T> items, Exception failure) {
+      this(sequence, items, failure, null);
+    }
+
+    private Batch(long sequence, List<T> items, Exception failure, long[] lineNumbers) {
+      this.sequence = sequence;
+      this.items = items;
+      this.failure = failure;
+      this.lineNumbers = lineNumbers;
+    }
+
+    /**
+     * Проверяет, является ли пакет признаком завершения.
+     *
+     * @return {@code true} для признака завершения
+     */
+    private boolean isEnd() {
+      return items == null && failure == null;
+    }
+  }
+
+  /**
+   * Стадия чтения: пропускает заголовок, собирает записи в пакеты и
+   * передает их рабочим потокам, затем отправляет каждому признак
+   * завершения. Строка с незакрытой кавычкой продолжается следующими
+   * строками до закрывающей кавычки, так что запись с переводом строки в
+   * поле передается целиком; удвоенная кавычка внутри поля не меняет
+   * четности.
+   *
+   * @param in       поток с данными
+   * @param inFlight ограничение количества пакетов в работе
+   * @param lines    очередь пакетов записей
+   * @param parsed   очередь результатов, куда передается ошибка чтения
+   * @param workers  количество рабочих потоков
+   */
+  private static void readBatches(InputStream in, Semaphore inFlight, BlockingQueue<Batch<String>> lines,
+      BlockingQueue<Batch<Person>> parsed, int workers) {
+    try {
+      long sequence = 0;
+      try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+        if (reader.readLine() == null) {
+          throw new RuntimeException("CSV файл пуст или имеет недопустимый формат");
+        }
+        long lineNumber = 1;
+        List<String> batch = new ArrayList<>(PIPELINE_BATCH_SIZE);
+        long[] numbers = new long[PIPELINE_BATCH_SIZE];
+        String line;
+        while ((line = reader.readLine()) != null) {
+          numbers[batch.size()] = ++lineNumber;
+          if (hasOddQuotes(line)) {
+            StringBuilder record = new StringBuilder(line);
+            boolean open = true;
+            String next;
+            while (open && (next = reader.readLine()) != null) {
+              lineNumber++;
+              record.append('\n').append(next);
+              open = open != hasOddQuotes(next);
             }
+            line = record.toString();
+          }
+          batch.add(line);
+          if (batch.size() == PIPELINE_BATCH_SIZE) {
+            inFlight.acquire();
+            lines.put(new Batch<>(sequence++, batch, null, numbers));
+            batch = new ArrayList<>(PIPELINE_BATCH_SIZE);
+            numbers = new long[PIPELINE_BATCH_SIZE];
+          }
+        }
+        if (!batch.isEmpty()) {
+          inFlight.acquire();
+          lines.put(new Batch<>(sequence++, batch, null, numbers));
+        }
+      } catch (IOException | RuntimeException e) {
+        parsed.put(new Batch<>(sequence, null, e));
+      }
+      for (int i = 0; i < workers; i++) {
+        lines.put(new Batch<>(-1, null, null));
+      }
+    } catch (InterruptedException e) {
+      // конвейер остановлен потребителем
+    }
+  }
 
-            String divisionTitle = nextLine[4];
-            Division division = divisionCache.computeIfAbsent(divisionTitle, Division::new);
-            int salary = Integer.parseInt(nextLine[5]);
+  /**
+   * Создает разборщик строк в формате {@link PersonCsvWriter}: кавычки внутри
+   * поля удваиваются, а обратная косая черта - обычный символ, а не символ
+   * экранирования, как в OpenCSV по умолчанию.
+   *
+   * @param separator Разделитель полей в CSV файле
+   * @return разборщик строк
+   */
+  private static CSVParser csvParser(char separator) {
+    return new CSVParserBuilder()
+        .withSeparator(separator)
+        .withEscapeChar(ICSVParser.NULL_CHARACTER)
+        .build();
+  }
 
-            Person person = new Person(id, name, gender, dateOfBirth, division, salary);
-            people.add(person);
+  /**
+   * Проверяет, содержит ли строка нечетное количество кавычек, то есть
+   * открывает или закрывает поле в кавычках.
+   *
+   * @param line строка файла
+   * @return {@code true}, если кавычек нечетное количество
+   */
+  private static boolean hasOddQuotes(String line) {
+    boolean odd = false;
+    for (int i = line.indexOf('"'); i >= 0; i = line.indexOf('"', i + 1)) {
+      odd = !odd;
+    }
+    return odd;
+  }
 
-          } catch (NumberFormatException e) {
-            System.err.println("Предупреждение: Не удалось преобразовать числовое значение: " + e.getMessage());
+  /**
+   * Стадия разбора: преобразует пакеты записей в пакеты объектов Person до
+   * получения признака завершения.
+   *
+   * @param separator Разделитель полей в CSV файле
+   * @param mapper    потокобезопасный преобразователь строк
+   * @param errors    приемник ошибок строк
+   * @param lines     очередь пакетов записей
+   * @param parsed    очередь результатов
+   */
+  private static void parseBatches(char separator, RowMapper<Person> mapper, CsvErrorSink errors,
+      BlockingQueue<Batch<String>> lines, BlockingQueue<Batch<Person>> parsed) {
+    CSVParser parser = csvParser(separator);
+    try {
+      while (true) {
+        Batch<String> batch = lines.take();
+        if (batch.isEnd()) {
+          parsed.put(new Batch<>(-1, null, null));
+          return;
+        }
+        List<Person> people = new ArrayList<>(batch.items.size());
+        try {
+          for (int i = 0; i < batch.items.size(); i++) {
+            Person person = mapRow(parser.parseLine(batch.items.get(i)), batch.lineNumbers[i], mapper, errors);
+            if (person != null) {
+              people.add(person);
+            }
           }
+          parsed.put(new Batch<>(batch.sequence, people, null));
+        } catch (IOException | RuntimeException e) {
+          parsed.put(new Batch<>(batch.sequence, null, e));
         }
       }
-    } catch (IOException | CsvValidationException e) {
-      throw new RuntimeException("Ошибка при чтении CSV файла: " + e.getMessage(), e);
+    } catch (InterruptedException e) {
+      // конвейер остановлен потребителем
+    }
+  }
+
+  /**
+   * Стадия потребления: восстанавливает порядок пакетов и передает объекты
+   * потребителю, пока все рабочие потоки не завершатся. Ошибка стадии
+   * выбрасывается на месте своего пакета, после объектов всех предыдущих
+   * пакетов. Непроверяемые исключения стадий, в том числе
+   * {@link CsvErrorSink.RowException}, выбрасываются без обертки.
+   *
+   * @param parsed   очередь результатов
+   * @param inFlight ограничение количества пакетов в работе
+   * @param workers  количество рабочих потоков
+   * @param consumer потребитель объектов Person
+   * @return количество переданных объектов
+   * @throws InterruptedException если вызывающий поток прерван
+   */
+  private static long consumeInOrder(BlockingQueue<Batch<Person>> parsed, Semaphore inFlight, int workers,
+      Consumer<? super Person> consumer) throws InterruptedException {
+    Map<Long, Batch<Person>> pending = new HashMap<>();
+    long next = 0;
+    long count = 0;
+    int finished = 0;
+    while (finished < workers) {
+      Batch<Person> batch = parsed.take();
+      if (batch.isEnd()) {
+        finished++;
+        continue;
+      }
+      pending.put(batch.sequence, batch);
+      Batch<Person> ready;
+      while ((ready = pending.remove(next)) != null) {
+        if (ready.failure instanceof RuntimeException) {
+          throw (RuntimeException) ready.failure;
+        }
+        if (ready.failure != null) {
+          throw new RuntimeException("Ошибка при чтении CSV файла: " + ready.failure.getMessage(), ready.failure);
+        }
+        for (Person person : ready.items) {
+          consumer.accept(person);
+        }
+        count += ready.items.size();
+        next++;
+        inFlight.release();
+      }
     }
+    return count;
+  }
+
+  /**
+   * Преобразователь строки CSV в объект результата.
+   *
+   * @param <T> тип результата
+   */
+  private interface RowMapper<T> {
+    /**
+     * Преобразует строку.
+     *
+     * @param row поля строки, не менее 6
+     * @return объект или {@code null}, если строка отклонена
+     * @throws NumberFormatException если числовое поле некорректно
+     * @throws ParseException        если дата некорректна
+     */
+    T map(String[] row) throws ParseException;
+  }
+
+  /**
+   * Читает строки CSV после заголовка и преобразует их. Ошибочные строки
+   * передаются в приемник ошибок.
+   *
+   * @param <T>       тип результата
+   * @param in        источник данных
+   * @param separator Разделитель полей в CSV файле
+   * @param mapper    преобразователь строк
+   * @param errors    приемник ошибок строк
+   * @return Список результатов для неотклоненных строк
+   * @throws IOException            при ошибке чтения
+   * @throws CsvValidationException при некорректной строке CSV
+   */
+  private static <T> List<T> readRows(Reader in, char separator, RowMapper<T> mapper, CsvErrorSink errors)
+      throws IOException, CsvValidationException {
+    List<T> result = new ArrayList<>();
+    CSVParser parser = csvParser(separator);
+
+    try (CSVReader reader = new CSVReaderBuilder(in)
+        .withCSVParser(parser)
+        .build()) {
+      String[] header = reader.readNext();
+      if (header == null) {
+        throw new RuntimeException("CSV файл пуст или имеет недопустимый формат");
+      }
+
+      String[] nextLine;
+      // номер первой строки записи, как в конвейерном разборе
+      long line = reader.getLinesRead() + 1;
+      while ((nextLine = reader.readNext()) != null) {
+        T item = mapRow(nextLine, line, mapper, errors);
+        if (item != null) {
+          result.add(item);
+        }
+        line = reader.getLinesRead() + 1;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Преобразует одну строку CSV. Строки с менее чем 6 полями, некорректными
+   * числами или датой передаются в приемник ошибок и пропускаются.
+   *
+   * @param <T>    тип результата
+   * @param row    поля строки
+   * @param line   номер первой строки записи в файле, считая заголовок
+   *               первой строкой
+   * @param mapper преобразователь строк
+   * @param errors приемник ошибок строк
+   * @return результат или {@code null}, если строка пропущена или отклонена
+   * @throws CsvErrorSink.RowException при политике
+   *                                   {@link CsvErrorSink.Policy#FAIL_FAST}
+   */
+  private static <T> T mapRow(String[] row, long line, RowMapper<T> mapper, CsvErrorSink errors) {
+    if (row.length < 6) {
+      errors.report(CsvErrorSink.ErrorType.SHORT_ROW, line, "полей: " + row.length);
+      return null;
+    }
+
+    try {
+      return mapper.map(row);
+    } catch (NumberFormatException e) {
+      errors.report(CsvErrorSink.ErrorType.BAD_NUMBER, line, e.getMessage());
+    } catch (ParseException e) {
+      errors.report(CsvErrorSink.ErrorType.BAD_DATE, line, e.getMessage());
+    }
+    return null;
+  }
+
+  /**
+   * Создает преобразователь строк в объекты Person с общим для одного чтения
+   * кэшем отделов и форматом даты для каждого потока. Без запроса
+   * преобразователь можно вызывать из нескольких потоков одновременно.
+   *
+   * @param query Запрос, условие которого проверяется до создания объекта,
+   *              или {@code null}
+   * @return преобразователь строк
+   */
+  private static RowMapper<Person> personMapper(PersonQuery query) {
+    Map<String, Division> divisionCache = new ConcurrentHashMap<>();
+    ThreadLocal<SimpleDateFormat> dateFormat = ThreadLocal.withInitial(() -> new SimpleDateFormat("dd.MM.yyyy"));
+    double[] slots = query == null ? null : query.newSlots();
+
+    return row -> {
+      if (query != null && !query.accept(row, slots)) {
+        return null;
+      }
+
+      int id = Integer.parseInt(row[0]);
+      String name = row[1];
+      char gender = row[2].equalsIgnoreCase("Male") ? 'M' : 'F';
+
+      Date dateOfBirth = dateFormat.get().parse(row[3]);
+
+      String divisionTitle = row[4];
+      Division division = divisionCache.computeIfAbsent(divisionTitle, Division::new);
+      int salary = Integer.parseInt(row[5]);
 
-    return people;
+      return new Person(id, name, gender, dateOfBirth, division, salary);
+    };
   }
 }
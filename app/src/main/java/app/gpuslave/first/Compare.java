@@ -1,14 +1,52 @@
 package app.gpuslave.first;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Random;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * Класс {@code Compare} предназначен для сравнения производительности
- * ArrayList и LinkedList при выполнении различных операций.
+ * реализаций {@link List} при выполнении различных операций.
  * Тестируются различные методы коллекций с замером времени их выполнения.
+ * <p>
+ * Сравниваемые коллекции задаются именованными фабриками
+ * ({@link #addCollection(String, Supplier)}), набор операций - перечислением
+ * {@link Operation}. Каждая операция выполняется над новым экземпляром списка,
+ * созданным своей фабрикой и заполненным {@link #getListSize()} элементами,
+ * поэтому каждая реализация измеряется на собственной структуре. Задержка
+ * каждой отдельной операции записывается в {@link LatencyHistogram}, так что
+ * кроме среднего видны и хвосты распределения (p99, p99.9, максимум).
+ * Результат возвращается в виде {@link Report}, который можно вывести
+ * таблицей или выгрузить в CSV и JSON. Замеры под конкурентной нагрузкой выполняет
+ * {@link ConcurrentCompare}.
+ * <pre>
+ * Compare.Report report = new Compare()
+ *     .addCollection("ArrayList", ArrayList::new)
+ *     .addCollection("LinkedList", LinkedList::new)
+ *     .addCollection("Container", Compare::containerList)
+ *     .run();
+ * System.out.print(report.toTable());
+ * </pre>
+ * <p>
+ * Класс дает лишь быструю наглядную оценку в консоли. Для чисел, на основании
+ * которых выбирается структура данных, следует использовать JMH-бенчмарки из
+ * набора исходников {@code jmh} ({@code ./gradlew jmh}): они выполняют прогрев,
+ * защищены от удаления мертвого кода и сообщают погрешность и скорость
+ * выделения памяти.
  */
 public class Compare {
   /**
@@ -24,18 +62,60 @@ public class Compare {
   public static final int LIST_SIZE = 10000;
 
   /**
-   * Генератор случайных чисел для создания тестовых данных.
-   * Используется для генерации случайных индексов и значений элементов.
+   * Начальное значение генератора случайных чисел. Все коллекции получают
+   * одинаковую последовательность индексов и значений.
    */
-  private static final Random random = new Random();
+  private static final long SEED = 42;
 
   /**
-   * Конструктор по умолчанию для класса Compare.
-   * Создает новый экземпляр класса без инициализации полей,
-   * так как все поля класса статические.
+   * Приемник результатов чтения, не позволяющий JIT удалить операции
+   * {@code get} и {@code contains} как неиспользуемые.
+   */
+  private static volatile long sink;
+
+  /**
+   * Количество итераций для каждой операции.
+   */
+  private final int iterations;
+
+  /**
+   * Начальный размер тестируемых списков.
+   */
+  private final int listSize;
+
+  /**
+   * Сравниваемые коллекции в порядке регистрации: имя и фабрика пустого
+   * списка.
+   */
+  private final Map<String, Supplier<? extends List<Integer>>> collections = new LinkedHashMap<>();
+
+  /**
+   * Выполняемые операции.
+   */
+  private final Set<Operation> operations = EnumSet.allOf(Operation.class);
+
+  /**
+   * Создает сравнение с количеством итераций {@link #ITERATIONS} и размером
+   * списков {@link #LIST_SIZE}.
    */
   public Compare() {
-    // Пустой конструктор
+    this(ITERATIONS, LIST_SIZE);
+  }
+
+  /**
+   * Создает сравнение с заданным количеством итераций и размером списков.
+   *
+   * @param iterations количество итераций для каждой операции
+   * @param listSize   начальный размер тестируемых списков
+   * @throws IllegalArgumentException если итераций нет или размер списков
+   *                                  не положителен
+   */
+  public Compare(int iterations, int listSize) {
+    if (iterations <= 0 || listSize <= 0) {
+      throw new IllegalArgumentException("Количество итераций и размер списков должны быть положительными");
+    }
+    this.iterations = iterations;
+    this.listSize = listSize;
   }
 
   /**
@@ -45,7 +125,7 @@ public class Compare {
    * @return количество итераций для тестов
    */
   public int getIter() {
-    return ITERATIONS;
+    return iterations;
   }
 
   /**
@@ -55,205 +135,535 @@ public class Compare {
    * @return размер тестируемых коллекций
    */
   public int getListSize() {
-    return LIST_SIZE;
+    return listSize;
   }
 
   /**
-   * Запуск всех тестов производительности для обеих коллекций
-   * и вывод результатов.
-   * 
-   * @param arrayList  коллекция ArrayList для тестирования
-   * @param linkedList коллекция LinkedList для тестирования
+   * Регистрирует коллекцию для сравнения.
+   * Фабрика вызывается перед каждой операцией и должна возвращать новый
+   * пустой список.
+   *
+   * @param name    имя коллекции в отчете
+   * @param factory фабрика пустых списков
+   * @return это же сравнение
    */
-  public void runTests(ArrayList<Integer> arrayList, LinkedList<Integer> linkedList) {
-    System.out.println("+----------------------------+---------------+---------------+");
-    System.out.println("| Операция                   | ArrayList (мс) | LinkedList (мс) |");
-    System.out.println("+----------------------------+---------------+---------------+");
-
-    long arrayListAddTime = testAddToEnd(arrayList);
-    long linkedListAddTime = testAddToEnd(linkedList);
-    printResult("Добавление в конец", arrayListAddTime, linkedListAddTime);
-
-    arrayListAddTime = testAddToBeginning(arrayList);
-    linkedListAddTime = testAddToBeginning(linkedList);
-    printResult("Добавление в начало", arrayListAddTime, linkedListAddTime);
-
-    arrayListAddTime = testAddToMiddle(arrayList);
-    linkedListAddTime = testAddToMiddle(linkedList);
-    printResult("Добавление в середину", arrayListAddTime, linkedListAddTime);
-
-    long arrayListGetTime = testGet(arrayList);
-    long linkedListGetTime = testGet(linkedList);
-    printResult("Получение по индексу", arrayListGetTime, linkedListGetTime);
-
-    long arrayListContainsTime = testContains(arrayList);
-    long linkedListContainsTime = testContains(linkedList);
-    printResult("Поиск элемента", arrayListContainsTime, linkedListContainsTime);
-
-    long arrayListRemoveEndTime = testRemoveFromEnd(arrayList);
-    long linkedListRemoveEndTime = testRemoveFromEnd(linkedList);
-    printResult("Удаление с конца", arrayListRemoveEndTime, linkedListRemoveEndTime);
-
-    long arrayListRemoveBeginningTime = testRemoveFromBeginning(arrayList);
-    long linkedListRemoveBeginningTime = testRemoveFromBeginning(linkedList);
-    printResult("Удаление с начала", arrayListRemoveBeginningTime, linkedListRemoveBeginningTime);
-
-    long arrayListRemoveMiddleTime = testRemoveFromMiddle(arrayList);
-    long linkedListRemoveMiddleTime = testRemoveFromMiddle(linkedList);
-    printResult("Удаление из середины", arrayListRemoveMiddleTime, linkedListRemoveMiddleTime);
-
-    System.out.println("+----------------------------+---------------+---------------+");
+  public Compare addCollection(String name, Supplier<? extends List<Integer>> factory) {
+    collections.put(Objects.requireNonNull(name), Objects.requireNonNull(factory));
+    return this;
   }
 
   /**
-   * Тестирует производительность операции добавления элемента в конец коллекции.
-   * 
-   * @param list коллекция для тестирования
-   * @return время выполнения операций в миллисекундах
+   * Ограничивает набор выполняемых операций.
+   *
+   * @param selected операции, которые необходимо выполнить
+   * @return это же сравнение
    */
-  private static long testAddToEnd(List<Integer> list) {
-    List<Integer> testList = new ArrayList<>(list);
-
-    long startTime = System.currentTimeMillis();
-    for (int i = 0; i < ITERATIONS; i++) {
-      testList.add(random.nextInt(1000));
-    }
-    return System.currentTimeMillis() - startTime;
+  public Compare withOperations(Operation... selected) {
+    operations.clear();
+    Collections.addAll(operations, selected);
+    return this;
   }
 
   /**
-   * Тестирует производительность операции добавления элемента в начало коллекции.
-   * 
-   * @param list коллекция для тестирования
-   * @return время выполнения операций в миллисекундах
+   * Выполняет все выбранные операции для всех зарегистрированных коллекций.
+   * Если коллекция не поддерживает операцию
+   * ({@link UnsupportedOperationException}), результат для нее отсутствует.
+   *
+   * @return отчет с результатами
+   * @throws IllegalStateException если не зарегистрировано ни одной коллекции
    */
-  private static long testAddToBeginning(List<Integer> list) {
-    List<Integer> testList = new ArrayList<>(list);
-
-    long startTime = System.currentTimeMillis();
-    for (int i = 0; i < ITERATIONS; i++) {
-      testList.add(0, random.nextInt(1000));
+  public Report run() {
+    if (collections.isEmpty()) {
+      throw new IllegalStateException("Не задано ни одной коллекции для сравнения");
+    }
+    List<String> names = new ArrayList<>(collections.keySet());
+    List<Operation> ops = new ArrayList<>(operations);
+    LatencyHistogram[][] histograms = new LatencyHistogram[ops.size()][names.size()];
+
+    for (int o = 0; o < ops.size(); o++) {
+      for (int c = 0; c < names.size(); c++) {
+        List<Integer> list = prepare(collections.get(names.get(c)));
+        try {
+          histograms[o][c] = ops.get(o).measure(list, iterations, new Random(SEED));
+        } catch (UnsupportedOperationException e) {
+          histograms[o][c] = null;
+        }
+      }
     }
-    return System.currentTimeMillis() - startTime;
+    return new Report(iterations, listSize, names, ops, histograms);
   }
 
   /**
-   * Тестирует производительность операции добавления элемента в середину
-   * коллекции.
-   * 
-   * @param list коллекция для тестирования
-   * @return время выполнения операций в миллисекундах
+   * Запуск всех тестов производительности для ArrayList и LinkedList
+   * и вывод результатов в консоль.
+   * Каждая операция выполняется над собственной копией соответствующего
+   * типа размером с переданные коллекции; сами коллекции не изменяются.
+   *
+   * @param arrayList  коллекция ArrayList для тестирования
+   * @param linkedList коллекция LinkedList для тестирования
    */
-  private static long testAddToMiddle(List<Integer> list) {
-    List<Integer> testList = new ArrayList<>(list);
-    int middle = testList.size() / 2;
-
-    long startTime = System.currentTimeMillis();
-    for (int i = 0; i < ITERATIONS; i++) {
-      testList.add(middle, random.nextInt(1000));
-    }
-    return System.currentTimeMillis() - startTime;
+  public void runTests(ArrayList<Integer> arrayList, LinkedList<Integer> linkedList) {
+    Report report = new Compare(iterations, Math.max(1, arrayList.size()))
+        .addCollection("ArrayList", () -> new ArrayList<>(arrayList.size()))
+        .addCollection("LinkedList", LinkedList::new)
+        .run();
+    System.out.print(report.toTable());
   }
 
   /**
-   * Тестирует производительность операции получения элемента по индексу.
-   * 
-   * @param list коллекция для тестирования
-   * @return время выполнения операций в миллисекундах
+   * Создает список фабрикой и заполняет его значениями от 0 до
+   * {@code listSize - 1}.
+   *
+   * @param factory фабрика пустых списков
+   * @return заполненный список
    */
-  private static long testGet(List<Integer> list) {
-    long startTime = System.currentTimeMillis();
-    for (int i = 0; i < ITERATIONS; i++) {
-      int index = random.nextInt(list.size());
-      list.get(index);
+  private List<Integer> prepare(Supplier<? extends List<Integer>> factory) {
+    List<Integer> list = factory.get();
+    for (int i = 0; i < listSize; i++) {
+      list.add(i);
     }
-    return System.currentTimeMillis() - startTime;
+    return list;
   }
 
   /**
-   * Тестирует производительность операции поиска элемента в коллекции.
-   * 
-   * @param list коллекция для тестирования
-   * @return время выполнения операций в миллисекундах
+   * Возвращает пустой список, хранящий элементы в {@link Container}.
+   * Поддерживает добавление в конец, получение и удаление по индексу;
+   * вставка в произвольную позицию не поддерживается.
+   *
+   * @return новый пустой список на основе контейнера
    */
-  private static long testContains(List<Integer> list) {
-    long startTime = System.currentTimeMillis();
-    for (int i = 0; i < ITERATIONS; i++) {
-      list.contains(random.nextInt(LIST_SIZE * 2));
-    }
-    return System.currentTimeMillis() - startTime;
+  public static List<Integer> containerList() {
+    return new ContainerList<>();
   }
 
   /**
-   * Тестирует производительность операции удаления элемента с конца коллекции.
-   * 
-   * @param list коллекция для тестирования
-   * @return время выполнения операций в миллисекундах
+   * Тестируемая операция над списком.
    */
-  private static long testRemoveFromEnd(List<Integer> list) {
-    List<Integer> testList = new ArrayList<>(list);
+  public enum Operation {
+    /** Добавление элемента в конец коллекции. */
+    ADD_TO_END("Добавление в конец", (list, iterations, random, histogram) -> {
+      for (int i = 0; i < iterations; i++) {
+        Integer value = random.nextInt(1000);
+        long start = System.nanoTime();
+        list.add(value);
+        histogram.record(System.nanoTime() - start);
+      }
+    }),
+
+    /** Добавление элемента в начало коллекции. */
+    ADD_TO_BEGINNING("Добавление в начало", (list, iterations, random, histogram) -> {
+      for (int i = 0; i < iterations; i++) {
+        Integer value = random.nextInt(1000);
+        long start = System.nanoTime();
+        list.add(0, value);
+        histogram.record(System.nanoTime() - start);
+      }
+    }),
+
+    /** Добавление элемента в середину коллекции. */
+    ADD_TO_MIDDLE("Добавление в середину", (list, iterations, random, histogram) -> {
+      int middle = list.size() / 2;
+      for (int i = 0; i < iterations; i++) {
+        Integer value = random.nextInt(1000);
+        long start = System.nanoTime();
+        list.add(middle, value);
+        histogram.record(System.nanoTime() - start);
+      }
+    }),
+
+    /** Получение элемента по случайному индексу. */
+    GET("Получение по индексу", (list, iterations, random, histogram) -> {
+      long checksum = 0;
+      for (int i = 0; i < iterations; i++) {
+        int index = random.nextInt(list.size());
+        long start = System.nanoTime();
+        checksum += list.get(index);
+        histogram.record(System.nanoTime() - start);
+      }
+      sink = checksum;
+    }),
+
+    /** Поиск случайного значения; примерно половина значений есть в списке. */
+    CONTAINS("Поиск элемента", (list, iterations, random, histogram) -> {
+      long found = 0;
+      int bound = list.size() * 2;
+      for (int i = 0; i < iterations; i++) {
+        Integer value = random.nextInt(bound);
+        long start = System.nanoTime();
+        if (list.contains(value)) {
+          found++;
+        }
+        histogram.record(System.nanoTime() - start);
+      }
+      sink = found;
+    }),
+
+    /** Удаление элемента с конца коллекции. */
+    REMOVE_FROM_END("Удаление с конца", (list, iterations, random, histogram) -> {
+      for (int i = 0; i < iterations; i++) {
+        list.add(random.nextInt(1000));
+      }
+      for (int i = 0; i < iterations; i++) {
+        int index = list.size() - 1;
+        long start = System.nanoTime();
+        list.remove(index);
+        histogram.record(System.nanoTime() - start);
+      }
+    }),
+
+    /** Удаление элемента с начала коллекции. */
+    REMOVE_FROM_BEGINNING("Удаление с начала", (list, iterations, random, histogram) -> {
+      for (int i = 0; i < iterations; i++) {
+        list.add(random.nextInt(1000));
+      }
+      for (int i = 0; i < iterations; i++) {
+        long start = System.nanoTime();
+        list.remove(0);
+        histogram.record(System.nanoTime() - start);
+      }
+    }),
+
+    /** Удаление элемента из середины коллекции. */
+    REMOVE_FROM_MIDDLE("Удаление из середины", (list, iterations, random, histogram) -> {
+      for (int i = 0; i < iterations; i++) {
+        list.add(random.nextInt(1000));
+      }
+      for (int i = 0; i < iterations; i++) {
+        int index = list.size() / 2;
+        long start = System.nanoTime();
+        list.remove(index);
+        histogram.record(System.nanoTime() - start);
+      }
+    });
+
+    /** Название операции в отчете. */
+    private final String label;
+
+    /** Измеряемое действие. */
+    private final Measurement measurement;
+
+    /**
+     * Создает операцию.
+     *
+     * @param label       название операции в отчете
+     * @param measurement измеряемое действие
+     */
+    Operation(String label, Measurement measurement) {
+      this.label = label;
+      this.measurement = measurement;
+    }
 
-    for (int i = 0; i < ITERATIONS; i++) {
-      testList.add(random.nextInt(1000));
+    /**
+     * Возвращает название операции для отчета.
+     *
+     * @return название операции
+     */
+    public String getLabel() {
+      return label;
     }
 
-    long startTime = System.currentTimeMillis();
-    for (int i = 0; i < ITERATIONS; i++) {
-      testList.remove(testList.size() - 1);
+    /**
+     * Выполняет операцию над подготовленным списком.
+     *
+     * @param list       заполненный список
+     * @param iterations количество итераций
+     * @param random     источник случайных индексов и значений
+     * @return гистограмма задержек отдельных операций
+     */
+    LatencyHistogram measure(List<Integer> list, int iterations, Random random) {
+      LatencyHistogram histogram = new LatencyHistogram();
+      measurement.run(list, iterations, random, histogram);
+      return histogram;
     }
-    return System.currentTimeMillis() - startTime;
   }
 
   /**
-   * Тестирует производительность операции удаления элемента с начала коллекции.
-   * 
-   * @param list коллекция для тестирования
-   * @return время выполнения операций в миллисекундах
+   * Измеряемое действие операции.
    */
-  private static long testRemoveFromBeginning(List<Integer> list) {
-    List<Integer> testList = new ArrayList<>(list);
+  @FunctionalInterface
+  private interface Measurement {
+    /**
+     * Выполняет действие, записывая задержку каждой измеряемой операции.
+     *
+     * @param list       заполненный список
+     * @param iterations количество итераций
+     * @param random     источник случайных индексов и значений
+     * @param histogram  гистограмма задержек
+     */
+    void run(List<Integer> list, int iterations, Random random, LatencyHistogram histogram);
+  }
 
-    for (int i = 0; i < ITERATIONS; i++) {
-      testList.add(0, random.nextInt(1000));
+  /**
+   * Результаты сравнения: гистограмма задержек отдельных операций для каждой
+   * пары "операция - коллекция".
+   */
+  public static final class Report {
+    /** Процентили, выводимые в отчете. */
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    /** Количество итераций для каждой операции. */
+    private final int iterations;
+
+    /** Начальный размер списков. */
+    private final int listSize;
+
+    /** Имена коллекций. */
+    private final List<String> collections;
+
+    /** Операции. */
+    private final List<Operation> operations;
+
+    /** Гистограммы задержек; {@code null}, если операция не поддерживается. */
+    private final LatencyHistogram[][] histograms;
+
+    /**
+     * Создает отчет.
+     *
+     * @param iterations  количество итераций
+     * @param listSize    начальный размер списков
+     * @param collections имена коллекций
+     * @param operations  операции
+     * @param histograms  гистограммы задержек по строкам операций
+     */
+    Report(int iterations, int listSize, List<String> collections, List<Operation> operations,
+        LatencyHistogram[][] histograms) {
+      this.iterations = iterations;
+      this.listSize = listSize;
+      this.collections = List.copyOf(collections);
+      this.operations = List.copyOf(operations);
+      this.histograms = histograms;
     }
 
-    long startTime = System.currentTimeMillis();
-    for (int i = 0; i < ITERATIONS; i++) {
-      testList.remove(0);
+    /**
+     * Возвращает имена сравниваемых коллекций.
+     *
+     * @return имена коллекций в порядке регистрации
+     */
+    public List<String> getCollections() {
+      return collections;
     }
-    return System.currentTimeMillis() - startTime;
-  }
 
-  /**
-   * Тестирует производительность операции удаления элемента из середины
-   * коллекции.
-   * 
-   * @param list коллекция для тестирования
-   * @return время выполнения операций в миллисекундах
-   */
-  private static long testRemoveFromMiddle(List<Integer> list) {
-    List<Integer> testList = new ArrayList<>(list);
+    /**
+     * Возвращает выполненные операции.
+     *
+     * @return операции
+     */
+    public List<Operation> getOperations() {
+      return operations;
+    }
+
+    /**
+     * Возвращает гистограмму задержек операции.
+     *
+     * @param operation  операция
+     * @param collection имя коллекции
+     * @return гистограмма или {@code null}, если операция не поддерживается
+     *         коллекцией
+     * @throws IllegalArgumentException если операция или коллекция не
+     *                                  входят в отчет
+     */
+    public LatencyHistogram histogram(Operation operation, String collection) {
+      int o = operations.indexOf(operation);
+      int c = collections.indexOf(collection);
+      if (o < 0 || c < 0) {
+        throw new IllegalArgumentException("Нет результата для " + operation + " / " + collection);
+      }
+      return histograms[o][c];
+    }
+
+    /**
+     * Возвращает среднее время одной операции.
+     *
+     * @param operation  операция
+     * @param collection имя коллекции
+     * @return время в наносекундах или {@code NaN}, если операция не
+     *         поддерживается коллекцией
+     * @throws IllegalArgumentException если операция или коллекция не
+     *                                  входят в отчет
+     */
+    public double nanosPerOp(Operation operation, String collection) {
+      LatencyHistogram histogram = histogram(operation, collection);
+      return histogram == null ? Double.NaN : histogram.getMean();
+    }
+
+    /**
+     * Форматирует отчет в виде текстовой таблицы: по строке на пару
+     * "операция - коллекция" со средним, процентилями и максимумом в
+     * наносекундах.
+     *
+     * @return таблица
+     */
+    public String toTable() {
+      int nameWidth = 13;
+      for (String name : collections) {
+        nameWidth = Math.max(nameWidth, name.length());
+      }
+      String separator = "+----------------------------+" + "-".repeat(nameWidth + 2)
+          + "+----------+--------+--------+--------+--------+----------+";
+      StringBuilder sb = new StringBuilder();
+      sb.append(String.format("Итераций: %d, размер списков: %d, время в нс%n", iterations, listSize));
+      sb.append(separator).append(System.lineSeparator());
+      sb.append(String.format("| %-26s | %-" + nameWidth + "s | %8s | %6s | %6s | %6s | %6s | %8s |%n",
+          "Операция", "Коллекция", "среднее", "p50", "p90", "p99", "p99.9", "max"));
+      sb.append(separator).append(System.lineSeparator());
+      for (int o = 0; o < operations.size(); o++) {
+        for (int c = 0; c < collections.size(); c++) {
+          sb.append(String.format("| %-26s | %-" + nameWidth + "s |",
+              operations.get(o).getLabel(), collections.get(c)));
+          LatencyHistogram h = histograms[o][c];
+          if (h == null) {
+            sb.append(String.format(" %8s | %6s | %6s | %6s | %6s | %8s |%n", "-", "-", "-", "-", "-", "-"));
+          } else {
+            sb.append(String.format(Locale.ROOT, " %8.1f | %6d | %6d | %6d | %6d | %8d |%n",
+                h.getMean(), h.getValueAtPercentile(PERCENTILES[0]), h.getValueAtPercentile(PERCENTILES[1]),
+                h.getValueAtPercentile(PERCENTILES[2]), h.getValueAtPercentile(PERCENTILES[3]), h.getMax()));
+          }
+        }
+      }
+      sb.append(separator).append(System.lineSeparator());
+      return sb.toString();
+    }
+
+    /**
+     * Форматирует отчет в CSV: по строке на пару "коллекция - операция".
+     * Неподдерживаемые операции выводятся с пустыми значениями.
+     *
+     * @return CSV с заголовком
+     */
+    public String toCsv() {
+      StringBuilder sb = new StringBuilder("collection,operation,ns_per_op,p50_ns,p90_ns,p99_ns,p999_ns,max_ns\n");
+      for (int c = 0; c < collections.size(); c++) {
+        for (int o = 0; o < operations.size(); o++) {
+          LatencyHistogram h = histograms[o][c];
+          sb.append(csvField(collections.get(c))).append(',')
+              .append(operations.get(o).name()).append(',');
+          if (h == null) {
+            sb.append(",,,,,");
+          } else {
+            sb.append(String.format(Locale.ROOT, "%.3f,%d,%d,%d,%d,%d",
+                h.getMean(), h.getValueAtPercentile(PERCENTILES[0]), h.getValueAtPercentile(PERCENTILES[1]),
+                h.getValueAtPercentile(PERCENTILES[2]), h.getValueAtPercentile(PERCENTILES[3]), h.getMax()));
+          }
+          sb.append('\n');
+        }
+      }
+      return sb.toString();
+    }
 
-    int middle = testList.size() / 2;
-    for (int i = 0; i < ITERATIONS; i++) {
-      testList.add(middle, random.nextInt(1000));
+    /**
+     * Форматирует отчет в JSON.
+     * Неподдерживаемые операции выводятся со значениями {@code null}.
+     *
+     * @return JSON-объект с параметрами запуска и массивом результатов
+     */
+    public String toJson() {
+      StringBuilder sb = new StringBuilder();
+      sb.append("{\n");
+      sb.append("  \"iterations\": ").append(iterations).append(",\n");
+      sb.append("  \"listSize\": ").append(listSize).append(",\n");
+      sb.append("  \"results\": [");
+      boolean first = true;
+      for (int c = 0; c < collections.size(); c++) {
+        for (int o = 0; o < operations.size(); o++) {
+          LatencyHistogram h = histograms[o][c];
+          sb.append(first ? "\n" : ",\n");
+          first = false;
+          sb.append("    {\"collection\": ").append(Json.quote(collections.get(c)))
+              .append(", \"operation\": \"").append(operations.get(o).name()).append('"');
+          if (h == null) {
+            sb.append(", \"nsPerOp\": null");
+          } else {
+            sb.append(String.format(Locale.ROOT,
+                ", \"nsPerOp\": %.3f, \"p50\": %d, \"p90\": %d, \"p99\": %d, \"p999\": %d, \"max\": %d",
+                h.getMean(), h.getValueAtPercentile(PERCENTILES[0]), h.getValueAtPercentile(PERCENTILES[1]),
+                h.getValueAtPercentile(PERCENTILES[2]), h.getValueAtPercentile(PERCENTILES[3]), h.getMax()));
+          }
+          sb.append('}');
+        }
+      }
+      sb.append("\n  ]\n}\n");
+      return sb.toString();
     }
 
-    long startTime = System.currentTimeMillis();
-    for (int i = 0; i < ITERATIONS; i++) {
-      testList.remove(middle);
+    /**
+     * Сохраняет гистограммы всех операций в каталог для последующего
+     * сравнения: по файлу {@code <коллекция>-<ОПЕРАЦИЯ>.csv} в формате
+     * {@link LatencyHistogram#toCsv()}.
+     *
+     * @param directory каталог; создается при необходимости
+     * @throws IOException при ошибке записи
+     */
+    public void exportHistograms(Path directory) throws IOException {
+      Files.createDirectories(directory);
+      for (int o = 0; o < operations.size(); o++) {
+        for (int c = 0; c < collections.size(); c++) {
+          LatencyHistogram h = histograms[o][c];
+          if (h != null) {
+            String fileName = collections.get(c).replaceAll("[^A-Za-z0-9._-]", "_")
+                + "-" + operations.get(o).name() + ".csv";
+            Files.writeString(directory.resolve(fileName), h.toCsv());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Экранирует значение поля CSV отчетов {@link Compare} и
+   * {@link ConcurrentCompare}.
+   *
+   * @param value значение
+   * @return значение, заключенное в кавычки при необходимости
+   */
+  static String csvField(String value) {
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+      return value;
     }
-    return System.currentTimeMillis() - startTime;
+    return '"' + value.replace("\"", "\"\"") + '"';
   }
 
   /**
-   * Выводит результаты сравнения производительности операций в формате таблицы.
-   * 
-   * @param operation      название операции
-   * @param arrayListTime  время выполнения для ArrayList в миллисекундах
-   * @param linkedListTime время выполнения для LinkedList в миллисекундах
+   * Представление {@link Container} в виде {@link List} для сравнения с
+   * другими реализациями.
+   *
+   * @param <E> тип элементов
    */
-  private static void printResult(String operation, long arrayListTime, long linkedListTime) {
-    System.out.printf("| %-26s | %13d | %13d |%n", operation, arrayListTime, linkedListTime);
+  private static final class ContainerList<E> extends AbstractList<E> implements RandomAccess {
+    /** Контейнер с элементами. */
+    private final Container<E> container = new Container<>();
+
+    @Override
+    public E get(int index) {
+      return container.get(index);
+    }
+
+    @Override
+    public int size() {
+      return container.size();
+    }
+
+    /**
+     * Добавляет элемент; поддерживается только добавление в конец.
+     *
+     * @param index   позиция, равная текущему размеру
+     * @param element элемент
+     * @throws UnsupportedOperationException если позиция не в конце списка
+     */
+    @Override
+    public void add(int index, E element) {
+      if (index != container.size()) {
+        throw new UnsupportedOperationException("Container поддерживает только добавление в конец");
+      }
+      container.add(element);
+      modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+      E removed = container.get(index);
+      container.remove(index);
+      modCount++;
+      return removed;
+    }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,559 @@
+package app.gpuslave.first;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * Выражение, скомпилированное методом
+ * {@link ExpressionEvaluator#compile(String, List)}.
+ * <p>
+ * Постфиксная запись выражения хранится в виде массива кодов операций, а
+ * переменные заменены номерами ячеек, поэтому вычисление не разбирает строки
+ * и не обращается к словарю переменных. Объект неизменяем и может
+ * использоваться из нескольких потоков одновременно.
+ * <p>
+ * Выражение, скомпилированное методом
+ * {@link ExpressionEvaluator#compile(String, List, int, RoundingMode)},
+ * выполняет ту же программу в арифметике с фиксированной точкой: значения -
+ * это {@code long}, умноженные на {@code 10^scale}, сложение и вычитание
+ * точны, результаты умножения и деления округляются по заданному правилу, а
+ * переполнение вызывает {@link ArithmeticException}. Основной метод этого
+ * режима - {@link #evaluateScaled(long...)}; он не создает объектов, кроме
+ * стека вычисления.
+ */
+public final class CompiledExpression {
+
+  /**
+   * Масштаб, означающий вычисление в {@code double}.
+   */
+  static final int FLOATING = -1;
+
+  /**
+   * Наибольший масштаб фиксированной точки: {@code 10^18} помещается в
+   * {@code long}.
+   */
+  private static final int MAX_SCALE = 18;
+
+  /**
+   * Код операции загрузки константы.
+   */
+  private static final int CONST = -1;
+
+  /**
+   * Код операции загрузки значения переменной.
+   */
+  private static final int LOAD = -2;
+
+  /** Код операции {@code +}. */
+  private static final int ADD = 0;
+
+  /** Код операции {@code -}. */
+  private static final int SUBTRACT = 1;
+
+  /** Код операции {@code *}. */
+  private static final int MULTIPLY = 2;
+
+  /** Код операции {@code /}. */
+  private static final int DIVIDE = 3;
+
+  /** Код операции {@code <}. */
+  private static final int LESS = 4;
+
+  /** Код операции {@code <=}. */
+  private static final int LESS_OR_EQUAL = 5;
+
+  /** Код операции {@code >}. */
+  private static final int GREATER = 6;
+
+  /** Код операции {@code >=}. */
+  private static final int GREATER_OR_EQUAL = 7;
+
+  /** Код операции {@code ==}. */
+  private static final int EQUAL = 8;
+
+  /** Код операции {@code !=}. */
+  private static final int NOT_EQUAL = 9;
+
+  /** Код операции {@code &&}. */
+  private static final int AND = 10;
+
+  /** Код операции {@code ||}. */
+  private static final int OR = 11;
+
+  /**
+   * Операторы; код бинарной операции - индекс в этом массиве, поэтому порядок
+   * должен совпадать с константами {@link #ADD} ... {@link #OR}.
+   */
+  private static final String[] OPERATORS = {
+      "+", "-", "*", "/", "<", "<=", ">", ">=", "==", "!=", "&&", "||"
+  };
+
+  /**
+   * Исходный текст выражения.
+   */
+  private final String source;
+
+  /**
+   * Имена переменных в порядке ячеек.
+   */
+  private final List<String> variables;
+
+  /**
+   * Коды операций.
+   */
+  private final int[] codes;
+
+  /**
+   * Аргументы операций: значение константы или номер ячейки переменной.
+   */
+  private final double[] arguments;
+
+  /**
+   * Константы, приведенные к масштабу фиксированной точки.
+   */
+  private final long[] scaledConstants;
+
+  /**
+   * Наибольшая глубина стека при вычислении.
+   */
+  private final int maxDepth;
+
+  /**
+   * Количество десятичных знаков или {@link #FLOATING}.
+   */
+  private final int scale;
+
+  /**
+   * Множитель фиксированной точки {@code 10^scale}.
+   */
+  private final long unit;
+
+  /**
+   * Правило округления фиксированной точки.
+   */
+  private final RoundingMode rounding;
+
+  private CompiledExpression(String source, List<String> variables, int[] codes, double[] arguments,
+      long[] scaledConstants, int maxDepth, int scale, RoundingMode rounding) {
+    this.source = source;
+    this.variables = variables;
+    this.codes = codes;
+    this.arguments = arguments;
+    this.scaledConstants = scaledConstants;
+    this.maxDepth = maxDepth;
+    this.scale = scale;
+    this.unit = scale == FLOATING ? 1 : pow10(scale);
+    this.rounding = rounding;
+  }
+
+  /**
+   * Компилирует постфиксную запись выражения.
+   *
+   * @param source        исходный текст выражения
+   * @param postfixTokens токены в постфиксной записи
+   * @param variables     имена переменных в порядке ячеек
+   * @param scale         масштаб фиксированной точки или {@link #FLOATING}
+   * @param rounding      правило округления фиксированной точки
+   * @return скомпилированное выражение
+   * @throws IllegalArgumentException если выражение некорректно, содержит
+   *                                  неизвестную переменную или масштаб
+   *                                  недопустим
+   * @throws ArithmeticException      если константа не помещается в масштаб
+   */
+  static CompiledExpression fromPostfix(String source, List<String> postfixTokens, List<String> variables,
+      int scale, RoundingMode rounding) {
+    if (scale != FLOATING && (scale < 0 || scale > MAX_SCALE)) {
+      throw new IllegalArgumentException("Масштаб должен быть от 0 до " + MAX_SCALE + ": " + scale);
+    }
+    int[] codes = new int[postfixTokens.size()];
+    double[] arguments = new double[postfixTokens.size()];
+    long[] scaledConstants = new long[postfixTokens.size()];
+    int depth = 0;
+    int maxDepth = 0;
+
+    for (int i = 0; i < codes.length; i++) {
+      String token = postfixTokens.get(i);
+      if (ExpressionEvaluator.isNumber(token)) {
+        codes[i] = CONST;
+        arguments[i] = Double.parseDouble(token);
+        if (scale != FLOATING) {
+          scaledConstants[i] = new BigDecimal(token).setScale(scale, rounding).unscaledValue().longValueExact();
+        }
+        depth++;
+      } else if (ExpressionEvaluator.isIdentifier(token)) {
+        int slot = variables.indexOf(token);
+        if (slot < 0) {
+          throw new IllegalArgumentException("Неизвестная переменная " + token + " в выражении " + source);
+        }
+        codes[i] = LOAD;
+        arguments[i] = slot;
+        depth++;
+      } else {
+        codes[i] = operatorCode(token);
+        if (depth < 2) {
+          throw new IllegalArgumentException("Некорректное выражение " + source);
+        }
+        depth--;
+      }
+      maxDepth = Math.max(maxDepth, depth);
+    }
+
+    if (depth != 1) {
+      throw new IllegalArgumentException("Некорректное выражение " + source);
+    }
+    return new CompiledExpression(source, List.copyOf(variables), codes, arguments, scaledConstants, maxDepth,
+        scale, rounding);
+  }
+
+  /**
+   * Возвращает код бинарной операции.
+   *
+   * @param operator оператор
+   * @return код операции
+   */
+  private static int operatorCode(String operator) {
+    for (int i = 0; i < OPERATORS.length; i++) {
+      if (OPERATORS[i].equals(operator)) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("Неизвестный оператор " + operator);
+  }
+
+  /**
+   * Вычисляет {@code 10^exponent}.
+   *
+   * @param exponent показатель от 0 до {@link #MAX_SCALE}
+   * @return степень десяти
+   */
+  private static long pow10(int exponent) {
+    long result = 1;
+    for (int i = 0; i < exponent; i++) {
+      result *= 10;
+    }
+    return result;
+  }
+
+  /**
+   * Вычисляет выражение. В режиме фиксированной точки значения переменных
+   * приводятся к масштабу, а результат возвращается как {@code double}.
+   *
+   * @param values значения переменных в порядке {@link #getVariables()}
+   * @return результат; для сравнений и логических операций 1.0 или 0.0
+   * @throws ArithmeticException      при делении на ноль, а в режиме
+   *                                  фиксированной точки также при
+   *                                  переполнении
+   * @throws IllegalArgumentException если значений меньше, чем переменных
+   */
+  public double evaluate(double... values) {
+    checkArity(values.length);
+    if (scale != FLOATING) {
+      long[] scaled = new long[values.length];
+      for (int i = 0; i < values.length; i++) {
+        scaled[i] = toScaled(BigDecimal.valueOf(values[i]));
+      }
+      return (double) evaluateScaled(scaled) / unit;
+    }
+    double[] stack = new double[maxDepth];
+    int top = 0;
+
+    for (int i = 0; i < codes.length; i++) {
+      int code = codes[i];
+      if (code == CONST) {
+        stack[top++] = arguments[i];
+      } else if (code == LOAD) {
+        stack[top++] = values[(int) arguments[i]];
+      } else {
+        double b = stack[--top];
+        double a = stack[top - 1];
+        stack[top - 1] = apply(code, a, b);
+      }
+    }
+    return stack[0];
+  }
+
+  /**
+   * Применяет бинарную операцию к значениям {@code double}.
+   *
+   * @param code код операции
+   * @param a    левый операнд
+   * @param b    правый операнд
+   * @return результат; для сравнений и логических операций 1.0 или 0.0
+   * @throws ArithmeticException при делении на ноль
+   */
+  private static double apply(int code, double a, double b) {
+    switch (code) {
+      case ADD:
+        return a + b;
+      case SUBTRACT:
+        return a - b;
+      case MULTIPLY:
+        return a * b;
+      case DIVIDE:
+        if (b == 0) {
+          throw new ArithmeticException("Деление на ноль");
+        }
+        return a / b;
+      case LESS:
+        return a < b ? 1 : 0;
+      case LESS_OR_EQUAL:
+        return a <= b ? 1 : 0;
+      case GREATER:
+        return a > b ? 1 : 0;
+      case GREATER_OR_EQUAL:
+        return a >= b ? 1 : 0;
+      case EQUAL:
+        return a == b ? 1 : 0;
+      case NOT_EQUAL:
+        return a != b ? 1 : 0;
+      case AND:
+        return a != 0 && b != 0 ? 1 : 0;
+      case OR:
+        return a != 0 || b != 0 ? 1 : 0;
+      default:
+        throw new IllegalStateException("Неизвестный код операции " + code);
+    }
+  }
+
+  /**
+   * Вычисляет выражение в арифметике с фиксированной точкой.
+   *
+   * @param values значения переменных, умноженные на {@code 10^scale}, в
+   *               порядке {@link #getVariables()}
+   * @return результат, умноженный на {@code 10^scale}; для сравнений и
+   *         логических операций {@code 10^scale} (истина) или 0
+   * @throws ArithmeticException      при делении на ноль, переполнении или
+   *                                  необходимости округления при
+   *                                  {@link RoundingMode#UNNECESSARY}
+   * @throws IllegalStateException    если выражение скомпилировано для
+   *                                  {@code double}
+   * @throws IllegalArgumentException если значений меньше, чем переменных
+   */
+  public long evaluateScaled(long... values) {
+    checkFixed();
+    checkArity(values.length);
+    long[] stack = new long[maxDepth];
+    int top = 0;
+
+    for (int i = 0; i < codes.length; i++) {
+      int code = codes[i];
+      if (code == CONST) {
+        stack[top++] = scaledConstants[i];
+      } else if (code == LOAD) {
+        stack[top++] = values[(int) arguments[i]];
+      } else {
+        long b = stack[--top];
+        long a = stack[top - 1];
+        stack[top - 1] = applyScaled(code, a, b);
+      }
+    }
+    return stack[0];
+  }
+
+  /**
+   * Применяет бинарную операцию к значениям с фиксированной точкой.
+   *
+   * @param code код операции
+   * @param a    левый операнд
+   * @param b    правый операнд
+   * @return результат
+   */
+  private long applyScaled(int code, long a, long b) {
+    switch (code) {
+      case ADD:
+        return Math.addExact(a, b);
+      case SUBTRACT:
+        return Math.subtractExact(a, b);
+      case MULTIPLY:
+        return multiplyDivide(a, b, unit);
+      case DIVIDE:
+        if (b == 0) {
+          throw new ArithmeticException("Деление на ноль");
+        }
+        return multiplyDivide(a, unit, b);
+      case LESS:
+        return a < b ? unit : 0;
+      case LESS_OR_EQUAL:
+        return a <= b ? unit : 0;
+      case GREATER:
+        return a > b ? unit : 0;
+      case GREATER_OR_EQUAL:
+        return a >= b ? unit : 0;
+      case EQUAL:
+        return a == b ? unit : 0;
+      case NOT_EQUAL:
+        return a != b ? unit : 0;
+      case AND:
+        return a != 0 && b != 0 ? unit : 0;
+      case OR:
+        return a != 0 || b != 0 ? unit : 0;
+      default:
+        throw new IllegalStateException("Неизвестный код операции " + code);
+    }
+  }
+
+  /**
+   * Вычисляет {@code x * y / divisor} с округлением по правилу выражения.
+   * Произведение считается в 128 битах: если оно не помещается в
+   * {@code long}, деление выполняется в {@link BigDecimal}, поэтому
+   * исключение возникает только при переполнении самого результата.
+   *
+   * @param x       первый множитель
+   * @param y       второй множитель
+   * @param divisor делитель, не равный нулю
+   * @return частное
+   * @throws ArithmeticException при переполнении результата или
+   *                             необходимости округления при
+   *                             {@link RoundingMode#UNNECESSARY}
+   */
+  private long multiplyDivide(long x, long y, long divisor) {
+    long low = x * y;
+    long high = Math.multiplyHigh(x, y);
+    if (high == low >> 63) {
+      return divide(low, divisor);
+    }
+    try {
+      return BigDecimal.valueOf(x).multiply(BigDecimal.valueOf(y))
+          .divide(BigDecimal.valueOf(divisor), 0, rounding).longValueExact();
+    } catch (ArithmeticException e) {
+      throw new ArithmeticException("Переполнение в выражении " + source);
+    }
+  }
+
+  /**
+   * Делит с округлением по правилу выражения.
+   *
+   * @param dividend делимое
+   * @param divisor  делитель, не равный нулю
+   * @return частное
+   * @throws ArithmeticException при переполнении или необходимости округления
+   *                             при {@link RoundingMode#UNNECESSARY}
+   */
+  private long divide(long dividend, long divisor) {
+    long quotient = Math.divideExact(dividend, divisor);
+    long remainder = dividend - quotient * divisor;
+    if (remainder == 0) {
+      return quotient;
+    }
+    int sign = (dividend ^ divisor) < 0 ? -1 : 1;
+    // сравнение остатка с половиной делителя без удвоения остатка
+    int half = Long.compare(Math.abs(remainder), Math.abs(divisor) - Math.abs(remainder));
+
+    switch (rounding) {
+      case DOWN:
+        return quotient;
+      case UP:
+        return quotient + sign;
+      case FLOOR:
+        return sign < 0 ? quotient - 1 : quotient;
+      case CEILING:
+        return sign > 0 ? quotient + 1 : quotient;
+      case HALF_UP:
+        return half >= 0 ? quotient + sign : quotient;
+      case HALF_DOWN:
+        return half > 0 ? quotient + sign : quotient;
+      case HALF_EVEN:
+        return half > 0 || half == 0 && (quotient & 1) != 0 ? quotient + sign : quotient;
+      default:
+        throw new ArithmeticException("Требуется округление в выражении " + source);
+    }
+  }
+
+  /**
+   * Проверяет количество значений переменных.
+   *
+   * @param length количество переданных значений
+   */
+  private void checkArity(int length) {
+    if (length < variables.size()) {
+      throw new IllegalArgumentException("Ожидается " + variables.size() + " значений переменных, передано "
+          + length);
+    }
+  }
+
+  /**
+   * Проверяет, что выражение скомпилировано для фиксированной точки.
+   */
+  private void checkFixed() {
+    if (scale == FLOATING) {
+      throw new IllegalStateException("Выражение скомпилировано для вычисления в double: " + source);
+    }
+  }
+
+  /**
+   * Приводит десятичное число к масштабу выражения.
+   *
+   * @param value число
+   * @return число, умноженное на {@code 10^scale} и округленное
+   * @throws ArithmeticException   если результат не помещается в {@code long}
+   * @throws IllegalStateException если выражение скомпилировано для
+   *                               {@code double}
+   */
+  public long toScaled(BigDecimal value) {
+    checkFixed();
+    return value.setScale(scale, rounding).unscaledValue().longValueExact();
+  }
+
+  /**
+   * Преобразует значение с фиксированной точкой в десятичное число.
+   *
+   * @param scaled число, умноженное на {@code 10^scale}
+   * @return десятичное число с масштабом выражения
+   * @throws IllegalStateException если выражение скомпилировано для
+   *                               {@code double}
+   */
+  public BigDecimal toDecimal(long scaled) {
+    checkFixed();
+    return BigDecimal.valueOf(scaled, scale);
+  }
+
+  /**
+   * Вычисляет выражение как условие.
+   *
+   * @param values значения переменных в порядке {@link #getVariables()}
+   * @return {@code true}, если результат не равен нулю
+   */
+  public boolean test(double... values) {
+    return evaluate(values) != 0;
+  }
+
+  /**
+   * Проверяет, ссылается ли выражение на переменную.
+   *
+   * @param slot номер ячейки переменной
+   * @return {@code true}, если значение ячейки используется при вычислении
+   */
+  boolean uses(int slot) {
+    for (int i = 0; i < codes.length; i++) {
+      if (codes[i] == LOAD && arguments[i] == slot) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Возвращает имена переменных в порядке ячеек.
+   *
+   * @return неизменяемый список имен
+   */
+  public List<String> getVariables() {
+    return variables;
+  }
+
+  /**
+   * Возвращает масштаб фиксированной точки.
+   *
+   * @return количество десятичных знаков или -1 для вычисления в
+   *         {@code double}
+   */
+  public int getScale() {
+    return scale;
+  }
+
+  @Override
+  public String toString() {
+    return source;
+  }
+}
@@ -0,0 +1,575 @@
+package app.gpuslave.first;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Класс {@code ConcurrentCompare} дополняет {@link Compare} измерениями под
+ * конкурентной нагрузкой: несколько потоков одновременно выполняют смешанные
+ * операции чтения и записи над одной общей коллекцией.
+ * <p>
+ * Для каждой коллекции, вида потоков ({@link ThreadKind}) и количества потоков
+ * сообщается общая пропускная способность и процентили задержки отдельных
+ * операций, собранные в {@link LatencyHistogram}. По росту пропускной способности с числом потоков видно, где
+ * коллекция перестает масштабироваться.
+ * <pre>
+ * ConcurrentCompare.Report report = new ConcurrentCompare()
+ *     .addCollection("synchronizedList",
+ *         () -&gt; SharedCollection.ofList(Collections.synchronizedList(new ArrayList&lt;&gt;())))
+ *     .withThreadCounts(1, 2, 4, 8)
+ *     .run();
+ * System.out.print(report.toTable());
+ * </pre>
+ */
+public class ConcurrentCompare {
+
+  /**
+   * Количество операций, выполняемых каждым потоком, по умолчанию.
+   */
+  public static final int OPERATIONS_PER_THREAD = 20000;
+
+  /**
+   * Начальный размер общей коллекции по умолчанию.
+   */
+  public static final int COLLECTION_SIZE = 1000;
+
+  /**
+   * Доля операций записи в процентах по умолчанию.
+   */
+  public static final int WRITE_PERCENT = 10;
+
+  /**
+   * Вид потоков, создаваемых для нагрузки.
+   */
+  public enum ThreadKind {
+    /** Платформенные потоки операционной системы. */
+    PLATFORM,
+    /** Виртуальные потоки. */
+    VIRTUAL
+  }
+
+  /**
+   * Общая коллекция под нагрузкой: операции чтения и записи, которые
+   * выполняют потоки. Адаптирует коллекции с разными интерфейсами к одной
+   * нагрузке.
+   */
+  public interface SharedCollection {
+    /**
+     * Заполняет коллекцию начальными значениями. Вызывается до запуска
+     * потоков.
+     *
+     * @param size количество элементов
+     */
+    void fill(int size);
+
+    /**
+     * Выполняет операцию чтения.
+     *
+     * @param index индекс в диапазоне начального размера коллекции
+     * @return прочитанное значение
+     */
+    Integer read(int index);
+
+    /**
+     * Выполняет операцию записи.
+     *
+     * @param index индекс в диапазоне начального размера коллекции
+     * @param value записываемое значение
+     */
+    void write(int index, int value);
+
+    /**
+     * Адаптирует список: чтение - {@link List#get(int)}, запись -
+     * {@link List#set(int, Object)}. Список должен быть потокобезопасным.
+     *
+     * @param list потокобезопасный список
+     * @return общая коллекция
+     */
+    static SharedCollection ofList(List<Integer> list) {
+      return new SharedCollection() {
+        @Override
+        public void fill(int size) {
+          for (int i = 0; i < size; i++) {
+            list.add(i);
+          }
+        }
+
+        @Override
+        public Integer read(int index) {
+          return list.get(index);
+        }
+
+        @Override
+        public void write(int index, int value) {
+          list.set(index, value);
+        }
+      };
+    }
+
+    /**
+     * Адаптирует двустороннюю очередь: чтение - {@link Deque#peekFirst()},
+     * запись - {@link Deque#offerLast(Object)} и {@link Deque#pollFirst()},
+     * так что размер очереди не меняется. Очередь должна быть
+     * потокобезопасной.
+     *
+     * @param deque потокобезопасная очередь
+     * @return общая коллекция
+     */
+    static SharedCollection ofDeque(Deque<Integer> deque) {
+      return new SharedCollection() {
+        @Override
+        public void fill(int size) {
+          for (int i = 0; i < size; i++) {
+            deque.offerLast(i);
+          }
+        }
+
+        @Override
+        public Integer read(int index) {
+          return deque.peekFirst();
+        }
+
+        @Override
+        public void write(int index, int value) {
+          deque.offerLast(value);
+          deque.pollFirst();
+        }
+      };
+    }
+  }
+
+  /**
+   * Приемник результатов чтения, не позволяющий JIT удалить операции чтения
+   * как неиспользуемые.
+   */
+  private static volatile long sink;
+
+  /**
+   * Сравниваемые коллекции в порядке регистрации.
+   */
+  private final Map<String, Supplier<? extends SharedCollection>> collections = new LinkedHashMap<>();
+
+  /**
+   * Количества потоков, для которых выполняются замеры.
+   */
+  private int[] threadCounts = { 1, 2, 4, 8 };
+
+  /**
+   * Виды потоков, для которых выполняются замеры.
+   */
+  private final Set<ThreadKind> threadKinds = EnumSet.allOf(ThreadKind.class);
+
+  /**
+   * Количество операций на поток.
+   */
+  private int operationsPerThread = OPERATIONS_PER_THREAD;
+
+  /**
+   * Начальный размер общей коллекции.
+   */
+  private int collectionSize = COLLECTION_SIZE;
+
+  /**
+   * Доля операций записи в процентах.
+   */
+  private int writePercent = WRITE_PERCENT;
+
+  /**
+   * Создает сравнение с параметрами по умолчанию и без коллекций.
+   */
+  public ConcurrentCompare() {
+    // Коллекции добавляются через addCollection
+  }
+
+  /**
+   * Возвращает сравнение стандартных потокобезопасных коллекций:
+   * {@link Collections#synchronizedList(List)}, {@link CopyOnWriteArrayList}
+   * и {@link ConcurrentLinkedDeque}.
+   *
+   * @return сравнение с зарегистрированными коллекциями
+   */
+  public static ConcurrentCompare withDefaultCollections() {
+    return new ConcurrentCompare()
+        .addCollection("synchronizedList",
+            () -> SharedCollection.ofList(Collections.synchronizedList(new ArrayList<>())))
+        .addCollection("CopyOnWriteArrayList",
+            () -> SharedCollection.ofList(new CopyOnWriteArrayList<>()))
+        .addCollection("ConcurrentLinkedDeque",
+            () -> SharedCollection.ofDeque(new ConcurrentLinkedDeque<>()));
+  }
+
+  /**
+   * Регистрирует коллекцию для сравнения. Фабрика вызывается перед каждым
+   * замером и должна возвращать новую пустую коллекцию.
+   *
+   * @param name    имя коллекции в отчете
+   * @param factory фабрика коллекций
+   * @return это же сравнение
+   */
+  public ConcurrentCompare addCollection(String name, Supplier<? extends SharedCollection> factory) {
+    collections.put(Objects.requireNonNull(name), Objects.requireNonNull(factory));
+    return this;
+  }
+
+  /**
+   * Задает количества потоков.
+   *
+   * @param counts положительные количества потоков
+   * @return это же сравнение
+   * @throws IllegalArgumentException если список пуст или содержит
+   *                                  неположительное значение
+   */
+  public ConcurrentCompare withThreadCounts(int... counts) {
+    if (counts.length == 0 || Arrays.stream(counts).anyMatch(c -> c <= 0)) {
+      throw new IllegalArgumentException("Количество потоков должно быть положительным");
+    }
+    threadCounts = counts.clone();
+    return this;
+  }
+
+  /**
+   * Задает виды потоков.
+   *
+   * @param kinds виды потоков
+   * @return это же сравнение
+   */
+  public ConcurrentCompare withThreadKinds(ThreadKind... kinds) {
+    threadKinds.clear();
+    Collections.addAll(threadKinds, kinds);
+    return this;
+  }
+
+  /**
+   * Задает количество операций, выполняемых каждым потоком.
+   *
+   * @param operations количество операций
+   * @return это же сравнение
+   * @throws IllegalArgumentException если значение не положительно
+   */
+  public ConcurrentCompare withOperationsPerThread(int operations) {
+    if (operations <= 0) {
+      throw new IllegalArgumentException("Количество операций должно быть положительным");
+    }
+    operationsPerThread = operations;
+    return this;
+  }
+
+  /**
+   * Задает начальный размер общей коллекции.
+   *
+   * @param size размер коллекции
+   * @return это же сравнение
+   * @throws IllegalArgumentException если значение не положительно
+   */
+  public ConcurrentCompare withCollectionSize(int size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("Размер коллекции должен быть положительным");
+    }
+    collectionSize = size;
+    return this;
+  }
+
+  /**
+   * Задает долю операций записи.
+   *
+   * @param percent доля записей в процентах, от 0 до 100
+   * @return это же сравнение
+   * @throws IllegalArgumentException если значение вне диапазона
+   */
+  public ConcurrentCompare withWritePercent(int percent) {
+    if (percent < 0 || percent > 100) {
+      throw new IllegalArgumentException("Доля записей должна быть от 0 до 100: " + percent);
+    }
+    writePercent = percent;
+    return this;
+  }
+
+  /**
+   * Выполняет замеры для всех коллекций, видов и количеств потоков.
+   *
+   * @return отчет с результатами
+   * @throws IllegalStateException если не зарегистрировано ни одной коллекции,
+   *                               поток нагрузки завершился с ошибкой или был
+   *                               прерван
+   * @throws InterruptedException  если ожидание потоков было прервано
+   */
+  public Report run() throws InterruptedException {
+    if (collections.isEmpty()) {
+      throw new IllegalStateException("Не задано ни одной коллекции для сравнения");
+    }
+    List<Row> rows = new ArrayList<>();
+    for (Map.Entry<String, Supplier<? extends SharedCollection>> entry : collections.entrySet()) {
+      for (ThreadKind kind : threadKinds) {
+        for (int threads : threadCounts) {
+          rows.add(measure(entry.getKey(), entry.getValue().get(), kind, threads));
+        }
+      }
+    }
+    return new Report(writePercent, operationsPerThread, rows);
+  }
+
+  /**
+   * Выполняет один замер: запускает потоки, одновременно открывает для них
+   * стартовый барьер и ждет завершения.
+   *
+   * @param name       имя коллекции
+   * @param collection пустая общая коллекция
+   * @param kind       вид потоков
+   * @param threads    количество потоков
+   * @return строка отчета
+   * @throws InterruptedException если ожидание потоков было прервано
+   */
+  private Row measure(String name, SharedCollection collection, ThreadKind kind, int threads)
+      throws InterruptedException {
+    collection.fill(collectionSize);
+    CountDownLatch ready = new CountDownLatch(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    LatencyHistogram[] histograms = new LatencyHistogram[threads];
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread[] workers = new Thread[threads];
+
+    for (int t = 0; t < threads; t++) {
+      final int id = t;
+      Runnable task = () -> {
+        ready.countDown();
+        try {
+          start.await();
+          histograms[id] = runWorkload(collection, new SplittableRandom(id));
+        } catch (InterruptedException e) {
+          failure.compareAndSet(null, e);
+          Thread.currentThread().interrupt();
+        } catch (RuntimeException | Error e) {
+          failure.compareAndSet(null, e);
+        }
+      };
+      workers[t] = kind == ThreadKind.VIRTUAL
+          ? Thread.ofVirtual().unstarted(task)
+          : Thread.ofPlatform().unstarted(task);
+      workers[t].start();
+    }
+
+    ready.await();
+    long startTime = System.nanoTime();
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    long elapsed = System.nanoTime() - startTime;
+
+    if (failure.get() != null) {
+      // причина - исключение нагрузки или InterruptedException прерванного потока
+      throw new IllegalStateException("Ошибка в потоке нагрузки для " + name, failure.get());
+    }
+
+    LatencyHistogram merged = new LatencyHistogram();
+    for (LatencyHistogram histogram : histograms) {
+      merged.add(histogram);
+    }
+    double throughput = merged.getCount() * 1e9 / elapsed;
+    return new Row(name, kind, threads, throughput, merged);
+  }
+
+  /**
+   * Выполняет нагрузку одного потока и замеряет задержку каждой операции.
+   *
+   * @param collection общая коллекция
+   * @param random     источник индексов, значений и выбора операции
+   * @return гистограмма задержек операций потока
+   */
+  private LatencyHistogram runWorkload(SharedCollection collection, SplittableRandom random) {
+    LatencyHistogram latencies = new LatencyHistogram();
+    long checksum = 0;
+    for (int i = 0; i < operationsPerThread; i++) {
+      int index = random.nextInt(collectionSize);
+      boolean write = random.nextInt(100) < writePercent;
+      long opStart = System.nanoTime();
+      if (write) {
+        collection.write(index, i);
+      } else {
+        Integer value = collection.read(index);
+        checksum += value != null ? value : 0;
+      }
+      latencies.record(System.nanoTime() - opStart);
+    }
+    sink = checksum;
+    return latencies;
+  }
+
+  /**
+   * Результат одного замера.
+   */
+  public static final class Row {
+    /** Имя коллекции. */
+    private final String collection;
+    /** Вид потоков. */
+    private final ThreadKind kind;
+    /** Количество потоков. */
+    private final int threads;
+    /** Пропускная способность, операций в секунду. */
+    private final double throughput;
+    /** Гистограмма задержек операций всех потоков. */
+    private final LatencyHistogram latency;
+
+    /**
+     * Создает строку отчета.
+     *
+     * @param collection имя коллекции
+     * @param kind       вид потоков
+     * @param threads    количество потоков
+     * @param throughput операций в секунду
+     * @param latency    гистограмма задержек операций всех потоков
+     */
+    Row(String collection, ThreadKind kind, int threads, double throughput, LatencyHistogram latency) {
+      this.collection = collection;
+      this.kind = kind;
+      this.threads = threads;
+      this.throughput = throughput;
+      this.latency = latency;
+    }
+
+    /**
+     * Возвращает имя коллекции.
+     *
+     * @return имя коллекции
+     */
+    public String getCollection() {
+      return collection;
+    }
+
+    /**
+     * Возвращает вид потоков.
+     *
+     * @return вид потоков
+     */
+    public ThreadKind getKind() {
+      return kind;
+    }
+
+    /**
+     * Возвращает количество потоков.
+     *
+     * @return количество потоков
+     */
+    public int getThreads() {
+      return threads;
+    }
+
+    /**
+     * Возвращает пропускную способность.
+     *
+     * @return операций в секунду по всем потокам
+     */
+    public double getThroughput() {
+      return throughput;
+    }
+
+    /**
+     * Возвращает гистограмму задержек операций всех потоков.
+     *
+     * @return гистограмма задержек
+     */
+    public LatencyHistogram getLatency() {
+      return latency;
+    }
+  }
+
+  /**
+   * Результаты конкурентного сравнения.
+   */
+  public static final class Report {
+    /** Доля операций записи в процентах. */
+    private final int writePercent;
+    /** Количество операций на поток. */
+    private final int operationsPerThread;
+    /** Строки отчета. */
+    private final List<Row> rows;
+
+    /**
+     * Создает отчет.
+     *
+     * @param writePercent        доля записей в процентах
+     * @param operationsPerThread количество операций на поток
+     * @param rows                строки отчета
+     */
+    Report(int writePercent, int operationsPerThread, List<Row> rows) {
+      this.writePercent = writePercent;
+      this.operationsPerThread = operationsPerThread;
+      this.rows = List.copyOf(rows);
+    }
+
+    /**
+     * Возвращает строки отчета.
+     *
+     * @return строки в порядке выполнения замеров
+     */
+    public List<Row> getRows() {
+      return rows;
+    }
+
+    /**
+     * Форматирует отчет в виде текстовой таблицы.
+     *
+     * @return таблица
+     */
+    public String toTable() {
+      String separator = "+-----------------------+----------+---------+--------------+----------+----------+----------+----------+------------+";
+      StringBuilder sb = new StringBuilder();
+      sb.append(String.format("Записей: %d%%, операций на поток: %d%n", writePercent, operationsPerThread));
+      sb.append(separator).append(System.lineSeparator());
+      sb.append(String.format("| %-21s | %-8s | %7s | %12s | %8s | %8s | %8s | %8s | %10s |%n",
+          "Коллекция", "Потоки", "Кол-во", "Опер./с", "p50, нс", "p90, нс", "p99, нс", "p99.9, нс", "max, нс"));
+      sb.append(separator).append(System.lineSeparator());
+      for (Row row : rows) {
+        LatencyHistogram h = row.latency;
+        sb.append(String.format(Locale.ROOT, "| %-21s | %-8s | %7d | %12.0f | %8d | %8d | %8d | %8d | %10d |%n",
+            row.collection, row.kind, row.threads, row.throughput, h.getValueAtPercentile(50),
+            h.getValueAtPercentile(90), h.getValueAtPercentile(99), h.getValueAtPercentile(99.9), h.getMax()));
+      }
+      sb.append(separator).append(System.lineSeparator());
+      return sb.toString();
+    }
+
+    /**
+     * Форматирует отчет в CSV.
+     *
+     * @return CSV с заголовком
+     */
+    public String toCsv() {
+      StringBuilder sb = new StringBuilder(
+          "collection,thread_kind,threads,ops_per_sec,p50_ns,p90_ns,p99_ns,p999_ns,max_ns\n");
+      for (Row row : rows) {
+        LatencyHistogram h = row.latency;
+        sb.append(String.format(Locale.ROOT, "%s,%s,%d,%.0f,%d,%d,%d,%d,%d\n",
+            Compare.csvField(row.collection), row.kind, row.threads, row.throughput, h.getValueAtPercentile(50),
+            h.getValueAtPercentile(90), h.getValueAtPercentile(99), h.getValueAtPercentile(99.9), h.getMax()));
+      }
+      return sb.toString();
+    }
+  }
+
+  /**
+   * Запускает сравнение стандартных потокобезопасных коллекций и выводит
+   * таблицу результатов.
+   *
+   * @param args аргументы командной строки (не используются)
+   * @throws InterruptedException если ожидание потоков было прервано
+   */
+  public static void main(String[] args) throws InterruptedException {
+    System.out.print(withDefaultCollections().run().toTable());
+  }
+}
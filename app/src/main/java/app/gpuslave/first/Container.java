@@ -1,15 +1,39 @@
 package app.gpuslave.first;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * Класс {@code Container} представляет собой обобщенный контейнер для хранения
  * элементов любого типа.
  * Он реализован на основе массива и позволяет добавлять, получать, удалять
  * элементы, а также
  * узнавать текущий размер контейнера.
+ * <p>
+ * Помимо поэлементного доступа контейнер поддерживает пакетные операции
+ * ({@link #addAll(Collection)}, {@link #removeIf(Predicate)},
+ * {@link #forEach(Consumer)}) и потоки ({@link #stream()},
+ * {@link #parallelStream()}), которые обходят внутренний массив напрямую, без
+ * проверки индекса на каждом элементе.
+ * <p>
+ * Содержимое можно упорядочить на месте ({@link #sort(Comparator)},
+ * {@link #parallelSort(Comparator)}) и затем искать в нем двоичным поиском
+ * ({@link #binarySearch(Object, Comparator)}), не копируя элементы в
+ * промежуточный список.
  *
  * @param <T> Тип элементов, хранящихся в контейнере.
  */
-public class Container<T> {
+public class Container<T> implements Iterable<T> {
   /**
    * Массив для хранения элементов контейнера.
    */
@@ -18,17 +42,80 @@ public class Container<T> {
    * Текущий размер контейнера (количество элементов в нем).
    */
   private int size;
+  /**
+   * Счетчик структурных изменений (добавлений и удалений). Используется
+   * итераторами и сплитераторами для обнаружения одновременной модификации.
+   */
+  private int modCount;
   /**
    * Размер контейнера по умолчанию при создании.
    */
   private static final int DEFAULT_CAPACITY = 10;
+  /**
+   * Наибольший размер массива, который можно безопасно запросить у JVM.
+   */
+  private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+  /**
+   * Общий пустой массив для контейнеров нулевой вместимости.
+   */
+  private static final Object[] EMPTY_ELEMENTS = {};
+  /**
+   * Оценка размера заголовка объекта в байтах (64-битная JVM со сжатыми
+   * указателями).
+   */
+  private static final int OBJECT_HEADER_BYTES = 12;
+  /**
+   * Оценка размера заголовка массива в байтах (заголовок объекта и длина).
+   */
+  private static final int ARRAY_HEADER_BYTES = 16;
+  /**
+   * Оценка размера ссылки в байтах при сжатых указателях.
+   */
+  private static final int REFERENCE_BYTES = 4;
+  /**
+   * Выравнивание объектов в куче в байтах.
+   */
+  private static final int OBJECT_ALIGNMENT = 8;
+
+  /**
+   * Политика увеличения вместимости, применяемая при переполнении массива.
+   */
+  private final GrowthPolicy growthPolicy;
 
   /**
    * Создает новый пустой контейнер с размером по умолчанию.
    */
-  @SuppressWarnings("unchecked")
   public Container() {
-    elements = (T[]) new Object[DEFAULT_CAPACITY];
+    this(DEFAULT_CAPACITY, GrowthPolicy.doubling());
+  }
+
+  /**
+   * Создает новый пустой контейнер заданной начальной вместимости.
+   * Если итоговое количество элементов известно заранее, это позволяет
+   * обойтись без промежуточных увеличений массива.
+   *
+   * @param initialCapacity Начальная вместимость.
+   * @throws IllegalArgumentException Если вместимость отрицательна.
+   */
+  public Container(int initialCapacity) {
+    this(initialCapacity, GrowthPolicy.doubling());
+  }
+
+  /**
+   * Создает новый пустой контейнер заданной начальной вместимости с
+   * указанной политикой увеличения.
+   *
+   * @param initialCapacity Начальная вместимость.
+   * @param growthPolicy    Политика увеличения вместимости.
+   * @throws IllegalArgumentException Если вместимость отрицательна.
+   */
+  @SuppressWarnings("unchecked")
+  public Container(int initialCapacity, GrowthPolicy growthPolicy) {
+    if (initialCapacity < 0) {
+      throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+    }
+    this.growthPolicy = Objects.requireNonNull(growthPolicy);
+    elements = (T[]) (initialCapacity == 0 ? EMPTY_ELEMENTS : new Object[initialCapacity]);
     size = 0;
   }
 
@@ -40,12 +127,59 @@ public class Container<T> {
    * @param element Элемент, который необходимо добавить.
    */
   public void add(T element) {
+    modCount++;
     if (size == elements.length) {
-      grow();
+      grow(size + 1);
     }
     elements[size++] = element;
   }
 
+  /**
+   * Добавляет в конец контейнера все элементы коллекции в порядке ее обхода.
+   * Массив увеличивается не более одного раза, сколько бы элементов ни
+   * добавлялось.
+   *
+   * @param collection Коллекция, элементы которой необходимо добавить.
+   * @return {@code true}, если контейнер изменился.
+   */
+  @SuppressWarnings("unchecked")
+  public boolean addAll(Collection<? extends T> collection) {
+    Object[] added = collection.toArray();
+    return appendAll((T[]) added, added.length);
+  }
+
+  /**
+   * Добавляет в конец контейнера все элементы другого контейнера.
+   * Массив увеличивается не более одного раза.
+   *
+   * @param other Контейнер, элементы которого необходимо добавить.
+   * @return {@code true}, если контейнер изменился.
+   */
+  public boolean addAll(Container<? extends T> other) {
+    return appendAll(other.elements, other.size);
+  }
+
+  /**
+   * Копирует первые {@code count} элементов массива в конец контейнера,
+   * увеличивая массив одним вызовом {@link #grow(int)}.
+   *
+   * @param source Массив с добавляемыми элементами.
+   * @param count  Количество добавляемых элементов.
+   * @return {@code true}, если был добавлен хотя бы один элемент.
+   */
+  private boolean appendAll(T[] source, int count) {
+    if (count == 0) {
+      return false;
+    }
+    modCount++;
+    if (count > elements.length - size) {
+      grow(size + count);
+    }
+    System.arraycopy(source, 0, elements, size, count);
+    size += count;
+    return true;
+  }
+
   /**
    * Возвращает элемент из контейнера по указанному индексу.
    *
@@ -73,6 +207,7 @@ public class Container<T> {
     if (index < 0 || index >= size) {
       throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
     }
+    modCount++;
     int numMoved = size - index - 1;
     if (numMoved > 0) {
       System.arraycopy(elements, index + 1, elements, index, numMoved);
@@ -80,6 +215,47 @@ public class Container<T> {
     elements[--size] = null;
   }
 
+  /**
+   * Удаляет все элементы, удовлетворяющие условию, за O(n). Сначала условие
+   * проверяется для всех элементов и результаты отмечаются в битовой маске,
+   * затем оставшиеся элементы сдвигаются к началу с сохранением порядка.
+   * Если условие выбросит исключение, контейнер не изменится.
+   *
+   * @param filter Условие, которому должны удовлетворять удаляемые элементы.
+   * @return {@code true}, если был удален хотя бы один элемент.
+   */
+  public boolean removeIf(Predicate<? super T> filter) {
+    Objects.requireNonNull(filter);
+    final T[] es = elements;
+    final int end = size;
+    int i = 0;
+    while (i < end && !filter.test(es[i])) {
+      i++;
+    }
+    if (i == end) {
+      return false;
+    }
+    // биты отсчитываются от первого удаляемого элемента
+    final int beg = i;
+    final long[] deathRow = new long[((end - beg) >> 6) + 1];
+    deathRow[0] = 1L;
+    for (i = beg + 1; i < end; i++) {
+      if (filter.test(es[i])) {
+        deathRow[(i - beg) >> 6] |= 1L << (i - beg);
+      }
+    }
+    int w = beg;
+    for (i = beg; i < end; i++) {
+      if ((deathRow[(i - beg) >> 6] & (1L << (i - beg))) == 0) {
+        es[w++] = es[i];
+      }
+    }
+    Arrays.fill(es, w, end, null);
+    size = w;
+    modCount++;
+    return true;
+  }
+
   /**
    * Возвращает текущий размер контейнера (количество элементов в нем).
    *
@@ -90,11 +266,217 @@ public class Container<T> {
   }
 
   /**
-   * Увеличивает размер массива, используемого для хранения элементов, в два раза.
+   * Сортирует элементы контейнера на месте.
+   * Используется устойчивая сортировка слиянием (TimSort) по внутреннему
+   * массиву, без копирования элементов в отдельный список.
+   *
+   * @param comparator Компаратор, задающий порядок; {@code null} означает
+   *                   естественный порядок элементов.
+   * @throws ClassCastException Если {@code comparator} равен {@code null}, а
+   *                            элементы не реализуют {@link Comparable}.
+   */
+  public void sort(Comparator<? super T> comparator) {
+    final int expectedModCount = modCount;
+    Arrays.sort(elements, 0, size, comparator);
+    if (modCount != expectedModCount) {
+      throw new ConcurrentModificationException();
+    }
+    modCount++;
+  }
+
+  /**
+   * Сортирует элементы контейнера на месте, распределяя работу по потокам
+   * общего {@link java.util.concurrent.ForkJoinPool}.
+   * Массив делится на части, которые сортируются параллельно и затем
+   * сливаются; для небольших контейнеров сортировка выполняется в
+   * вызывающем потоке, как в {@link #sort(Comparator)}. Сортировка устойчива.
+   *
+   * @param comparator Компаратор, задающий порядок; {@code null} означает
+   *                   естественный порядок элементов.
+   * @throws ClassCastException Если {@code comparator} равен {@code null}, а
+   *                            элементы не реализуют {@link Comparable}.
+   */
+  public void parallelSort(Comparator<? super T> comparator) {
+    final int expectedModCount = modCount;
+    Arrays.parallelSort(elements, 0, size, comparator);
+    if (modCount != expectedModCount) {
+      throw new ConcurrentModificationException();
+    }
+    modCount++;
+  }
+
+  /**
+   * Ищет элемент в отсортированном контейнере двоичным поиском.
+   * Контейнер должен быть упорядочен тем же компаратором, например вызовом
+   * {@link #sort(Comparator)}; иначе результат не определен.
+   *
+   * @param key        Искомый элемент.
+   * @param comparator Компаратор, которым упорядочен контейнер;
+   *                   {@code null} означает естественный порядок элементов.
+   * @return Индекс найденного элемента, либо {@code -(точка вставки) - 1},
+   *         если элемент не найден.
+   */
+  public int binarySearch(T key, Comparator<? super T> comparator) {
+    return Arrays.binarySearch(elements, 0, size, key, comparator);
+  }
+
+  /**
+   * Выполняет действие для каждого элемента контейнера по порядку.
+   * Обход идет напрямую по внутреннему массиву, без вызова {@link #get(int)}.
+   *
+   * @param action Действие, выполняемое для каждого элемента.
+   * @throws ConcurrentModificationException Если контейнер был изменен во
+   *                                         время обхода.
+   */
+  @Override
+  public void forEach(Consumer<? super T> action) {
+    Objects.requireNonNull(action);
+    final int expectedModCount = modCount;
+    final T[] es = elements;
+    final int end = size;
+    for (int i = 0; i < end && modCount == expectedModCount; i++) {
+      action.accept(es[i]);
+    }
+    if (modCount != expectedModCount) {
+      throw new ConcurrentModificationException();
+    }
+  }
+
+  /**
+   * Возвращает итератор по элементам контейнера.
+   *
+   * @return Итератор по элементам в порядке их добавления.
+   */
+  @Override
+  public Iterator<T> iterator() {
+    return new Iterator<T>() {
+      private int cursor;
+      private final int expectedModCount = modCount;
+
+      @Override
+      public boolean hasNext() {
+        return cursor < size;
+      }
+
+      @Override
+      public T next() {
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        if (cursor >= size) {
+          throw new NoSuchElementException();
+        }
+        return elements[cursor++];
+      }
+    };
+  }
+
+  /**
+   * Возвращает сплитератор с характеристиками
+   * {@link Spliterator#ORDERED}, {@link Spliterator#SIZED} и
+   * {@link Spliterator#SUBSIZED}. Он делит диапазон индексов пополам, поэтому
+   * параллельный поток получает подзадачи точно известного размера.
+   *
+   * @return Сплитератор по элементам контейнера.
+   */
+  @Override
+  public Spliterator<T> spliterator() {
+    return new ContainerSpliterator(0, -1, 0);
+  }
+
+  /**
+   * Возвращает последовательный поток элементов контейнера.
+   *
+   * @return Поток элементов.
+   */
+  public Stream<T> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  /**
+   * Возвращает параллельный поток элементов контейнера.
+   *
+   * @return Параллельный поток элементов.
+   */
+  public Stream<T> parallelStream() {
+    return StreamSupport.stream(spliterator(), true);
+  }
+
+  /**
+   * Возвращает текущую вместимость контейнера (длину внутреннего массива).
+   *
+   * @return Вместимость контейнера.
+   */
+  public int capacity() {
+    return elements.length;
+  }
+
+  /**
+   * Увеличивает вместимость контейнера так, чтобы в нем поместилось не менее
+   * {@code minCapacity} элементов без дальнейших увеличений массива.
+   *
+   * @param minCapacity Минимально необходимая вместимость.
+   */
+  public void ensureCapacity(int minCapacity) {
+    if (minCapacity > elements.length) {
+      modCount++;
+      grow(minCapacity);
+    }
+  }
+
+  /**
+   * Уменьшает вместимость контейнера до его текущего размера, освобождая
+   * неиспользуемую часть массива.
+   */
+  @SuppressWarnings("unchecked")
+  public void trimToSize() {
+    if (size < elements.length) {
+      modCount++;
+      elements = (T[]) (size == 0 ? EMPTY_ELEMENTS : Arrays.copyOf(elements, size));
+    }
+  }
+
+  /**
+   * Возвращает оценку объема памяти в байтах, занимаемого самим контейнером и
+   * его внутренним массивом (без учета хранящихся элементов).
+   * Оценка рассчитана на 64-битную JVM со сжатыми указателями.
+   *
+   * @return Оценка занимаемой памяти в байтах.
+   */
+  public long memoryFootprint() {
+    // elements, growthPolicy, size, modCount
+    long self = align(OBJECT_HEADER_BYTES + 2L * REFERENCE_BYTES + 2L * Integer.BYTES);
+    long array = elements == EMPTY_ELEMENTS
+        ? 0
+        : align(ARRAY_HEADER_BYTES + (long) elements.length * REFERENCE_BYTES);
+    return self + array;
+  }
+
+  /**
+   * Округляет размер объекта вверх до границы выравнивания.
+   *
+   * @param bytes Размер объекта в байтах.
+   * @return Выровненный размер в байтах.
+   */
+  private static long align(long bytes) {
+    return (bytes + OBJECT_ALIGNMENT - 1) & -OBJECT_ALIGNMENT;
+  }
+
+  /**
+   * Увеличивает размер массива согласно политике {@link #growthPolicy}, но не
+   * меньше чем до {@code minCapacity}.
+   *
+   * @param minCapacity Минимально необходимая вместимость.
+   * @throws OutOfMemoryError Если требуемая вместимость превышает
+   *                          допустимый размер массива.
    */
   @SuppressWarnings("unchecked")
-  private void grow() {
-    int newCapacity = elements.length * 2;
+  private void grow(int minCapacity) {
+    if (minCapacity < 0 || minCapacity > MAX_ARRAY_SIZE) {
+      throw new OutOfMemoryError("Required array length too large");
+    }
+    int proposed = growthPolicy.nextCapacity(elements.length);
+    int newCapacity = Math.max(Math.min(proposed, MAX_ARRAY_SIZE), minCapacity);
     T[] newElements = (T[]) new Object[newCapacity];
     System.arraycopy(elements, 0, newElements, 0, size);
     elements = newElements;
@@ -114,4 +496,172 @@ public class Container<T> {
     }
     System.out.println("]");
   }
+
+  /**
+   * Сплитератор по диапазону индексов внутреннего массива.
+   * Границы диапазона фиксируются при первом обходе или разделении, что
+   * позволяет создавать сплитератор до того, как контейнер будет заполнен.
+   */
+  private final class ContainerSpliterator implements Spliterator<T> {
+    /** Текущий индекс, изменяется при обходе и разделении. */
+    private int index;
+    /** Индекс за последним элементом; -1 до первого использования. */
+    private int fence;
+    /** Значение счетчика изменений, зафиксированное вместе с границей. */
+    private int expectedModCount;
+
+    /**
+     * Создает сплитератор для диапазона [origin, fence).
+     *
+     * @param origin           Начальный индекс.
+     * @param fence            Индекс за последним элементом или -1.
+     * @param expectedModCount Ожидаемое значение счетчика изменений.
+     */
+    ContainerSpliterator(int origin, int fence, int expectedModCount) {
+      this.index = origin;
+      this.fence = fence;
+      this.expectedModCount = expectedModCount;
+    }
+
+    /**
+     * Возвращает границу диапазона, фиксируя ее при первом вызове.
+     *
+     * @return Индекс за последним элементом.
+     */
+    private int getFence() {
+      int hi = fence;
+      if (hi < 0) {
+        expectedModCount = modCount;
+        hi = fence = size;
+      }
+      return hi;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+      int hi = getFence();
+      int lo = index;
+      int mid = (lo + hi) >>> 1;
+      if (lo >= mid) {
+        return null;
+      }
+      index = mid;
+      return new ContainerSpliterator(lo, mid, expectedModCount);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+      Objects.requireNonNull(action);
+      int hi = getFence();
+      int i = index;
+      if (i >= hi) {
+        return false;
+      }
+      index = i + 1;
+      action.accept(elements[i]);
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+      Objects.requireNonNull(action);
+      int hi = getFence();
+      final T[] es = elements;
+      for (int i = index; i < hi; i++) {
+        action.accept(es[i]);
+      }
+      index = hi;
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
+
+    @Override
+    public long estimateSize() {
+      return getFence() - index;
+    }
+
+    @Override
+    public int characteristics() {
+      return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+    }
+  }
+
+  /**
+   * Политика увеличения вместимости контейнера.
+   * Получает текущую вместимость и возвращает предлагаемую новую; если
+   * предложенного значения недостаточно для вставки, контейнер увеличивает
+   * массив ровно до требуемого размера.
+   */
+  @FunctionalInterface
+  public interface GrowthPolicy {
+    /**
+     * Вычисляет новую вместимость массива.
+     *
+     * @param currentCapacity Текущая вместимость.
+     * @return Предлагаемая вместимость.
+     */
+    int nextCapacity(int currentCapacity);
+
+    /**
+     * Возвращает политику удвоения вместимости (поведение по умолчанию).
+     *
+     * @return Политика удвоения.
+     */
+    static GrowthPolicy doubling() {
+      return current -> current <= MAX_ARRAY_SIZE / 2
+          ? Math.max(current * 2, DEFAULT_CAPACITY)
+          : MAX_ARRAY_SIZE;
+    }
+
+    /**
+     * Возвращает политику умножения вместимости на заданный коэффициент.
+     * Например, коэффициент 1.5 дает меньший запас свободного места, чем
+     * удвоение, ценой более частых копирований.
+     *
+     * @param factor Коэффициент увеличения, больше 1.
+     * @return Мультипликативная политика.
+     * @throws IllegalArgumentException Если коэффициент не больше 1.
+     */
+    static GrowthPolicy factor(double factor) {
+      if (!(factor > 1.0)) {
+        throw new IllegalArgumentException("Growth factor must be greater than 1: " + factor);
+      }
+      return current -> (int) Math.min(MAX_ARRAY_SIZE,
+          Math.max(Math.ceil(current * factor), current + 1.0));
+    }
+
+    /**
+     * Возвращает политику увеличения вместимости на фиксированный шаг.
+     *
+     * @param step Шаг увеличения, больше 0.
+     * @return Линейная политика.
+     * @throws IllegalArgumentException Если шаг не положителен.
+     */
+    static GrowthPolicy linear(int step) {
+      if (step <= 0) {
+        throw new IllegalArgumentException("Growth step must be positive: " + step);
+      }
+      return current -> (int) Math.min(MAX_ARRAY_SIZE, (long) current + step);
+    }
+
+    /**
+     * Возвращает политику, ограничивающую прирост вместимости за одно
+     * увеличение. Подходит для больших контейнеров, где удвоение оставляет
+     * слишком много неиспользуемого места.
+     *
+     * @param maxIncrement Наибольший прирост за одно увеличение, больше 0.
+     * @return Политика с ограниченным приростом.
+     * @throws IllegalArgumentException Если прирост не положителен.
+     */
+    default GrowthPolicy withMaxIncrement(int maxIncrement) {
+      if (maxIncrement <= 0) {
+        throw new IllegalArgumentException("Max increment must be positive: " + maxIncrement);
+      }
+      return current -> (int) Math.min(nextCapacity(current), (long) current + maxIncrement);
+    }
+  }
 }
@@ -0,0 +1,390 @@
+package app.gpuslave.first;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Приемник ошибок разбора строк CSV с политикой обработки.
+ * <p>
+ * Методы {@link CSV} сообщают сюда о строках, которые не удалось
+ * преобразовать в {@link CSV.Person}: о слишком коротких строках, неверных
+ * числах и датах. Приемник ничего не выводит: он считает ошибки по типам,
+ * хранит номера первых строк с ошибкой каждого типа и, в зависимости от
+ * политики, прерывает разбор или пропускает строку. Итог выводится методом
+ * {@link #toSummary()}. Приемник потокобезопасен и может использоваться
+ * конвейерным разбором.
+ *
+ * <pre>
+ * CsvErrorSink errors = CsvErrorSink.collect(100);
+ * List&lt;CSV.Person&gt; people = CSV.parseCSV(path, ';', null, errors);
+ * System.out.print(errors.toSummary());
+ * </pre>
+ */
+public class CsvErrorSink {
+
+  /**
+   * Типы ошибок строк.
+   */
+  public enum ErrorType {
+    /** В строке меньше 6 полей. */
+    SHORT_ROW,
+    /** Идентификатор или зарплата не являются целым числом. */
+    BAD_NUMBER,
+    /** Дата рождения не в формате {@code dd.MM.yyyy}. */
+    BAD_DATE
+  }
+
+  /**
+   * Политики обработки ошибочных строк.
+   */
+  public enum Policy {
+    /** Прервать разбор на первой ошибке исключением {@link RowException}. */
+    FAIL_FAST,
+    /** Пропустить строку, сохранив счетчики и номера первых строк. */
+    SKIP,
+    /** Пропустить строку и сохранить подробности первых ошибок. */
+    COLLECT,
+    /**
+     * Сохранить подробности ошибок и прервать разбор исключением
+     * {@link RowException}, когда их станет больше предела.
+     */
+    COLLECT_UP_TO,
+    /** Пропустить строку, сохранив только счетчики. */
+    COUNT_ONLY
+  }
+
+  /**
+   * Количество номеров строк, сохраняемых для каждого типа ошибки.
+   */
+  public static final int SAMPLE_LINES = 10;
+
+  /**
+   * Политика обработки.
+   */
+  private final Policy policy;
+
+  /**
+   * Наибольшее количество подробно сохраняемых ошибок.
+   */
+  private final int collectLimit;
+
+  /**
+   * Счетчики ошибок по типам.
+   */
+  private final Map<ErrorType, LongAdder> counts = new EnumMap<>(ErrorType.class);
+
+  /**
+   * Номера первых строк с ошибкой по типам.
+   */
+  private final Map<ErrorType, List<Long>> samples = new EnumMap<>(ErrorType.class);
+
+  /**
+   * Подробности первых ошибок для политик {@link Policy#COLLECT} и
+   * {@link Policy#COLLECT_UP_TO}.
+   */
+  private final List<RowError> collected = new ArrayList<>();
+
+  private CsvErrorSink(Policy policy, int collectLimit) {
+    this.policy = policy;
+    this.collectLimit = collectLimit;
+    for (ErrorType type : ErrorType.values()) {
+      counts.put(type, new LongAdder());
+      samples.put(type, new ArrayList<>());
+    }
+  }
+
+  /**
+   * Создает приемник, прерывающий разбор на первой ошибке.
+   *
+   * @return приемник
+   */
+  public static CsvErrorSink failFast() {
+    return new CsvErrorSink(Policy.FAIL_FAST, 0);
+  }
+
+  /**
+   * Создает приемник, пропускающий ошибочные строки. Используется методами
+   * {@link CSV} по умолчанию.
+   *
+   * @return приемник
+   */
+  public static CsvErrorSink skip() {
+    return new CsvErrorSink(Policy.SKIP, 0);
+  }
+
+  /**
+   * Создает приемник, пропускающий ошибочные строки и сохраняющий
+   * подробности первых {@code limit} ошибок.
+   *
+   * @param limit наибольшее количество сохраняемых ошибок
+   * @return приемник
+   * @throws IllegalArgumentException если {@code limit} отрицателен
+   */
+  public static CsvErrorSink collect(int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Предел не может быть отрицательным: " + limit);
+    }
+    return new CsvErrorSink(Policy.COLLECT, limit);
+  }
+
+  /**
+   * Создает приемник, пропускающий не более {@code limit} ошибочных строк с
+   * сохранением их подробностей: следующая ошибка прерывает разбор
+   * исключением {@link RowException}.
+   *
+   * @param limit наибольшее количество допустимых ошибок
+   * @return приемник
+   * @throws IllegalArgumentException если {@code limit} отрицателен
+   */
+  public static CsvErrorSink collectUpTo(int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Предел не может быть отрицательным: " + limit);
+    }
+    return new CsvErrorSink(Policy.COLLECT_UP_TO, limit);
+  }
+
+  /**
+   * Создает приемник, пропускающий ошибочные строки и только считающий их.
+   *
+   * @return приемник
+   */
+  public static CsvErrorSink countOnly() {
+    return new CsvErrorSink(Policy.COUNT_ONLY, 0);
+  }
+
+  /**
+   * Регистрирует ошибку строки.
+   *
+   * @param type   тип ошибки
+   * @param line   номер первой строки записи в файле, считая заголовок
+   * @param detail сообщение об ошибке значения
+   * @throws RowException при политике {@link Policy#FAIL_FAST} или при
+   *                      превышении предела политики
+   *                      {@link Policy#COLLECT_UP_TO}
+   */
+  void report(ErrorType type, long line, String detail) {
+    counts.get(type).increment();
+    switch (policy) {
+      case FAIL_FAST:
+        throw new RowException(new RowError(type, line, detail));
+      case COUNT_ONLY:
+        return;
+      case COLLECT:
+        addCollected(new RowError(type, line, detail), false);
+        addSample(type, line);
+        return;
+      case COLLECT_UP_TO:
+        addCollected(new RowError(type, line, detail), true);
+        addSample(type, line);
+        return;
+      default:
+        addSample(type, line);
+    }
+  }
+
+  /**
+   * Сохраняет подробности ошибки, если предел не достигнут.
+   *
+   * @param error ошибка строки
+   * @param fail  прервать ли разбор, если предел достигнут
+   * @throws RowException если предел достигнут и {@code fail} истинно
+   */
+  private void addCollected(RowError error, boolean fail) {
+    synchronized (collected) {
+      if (collected.size() < collectLimit) {
+        collected.add(error);
+      } else if (fail) {
+        throw new RowException(error);
+      }
+    }
+  }
+
+  /**
+   * Сохраняет номер строки с ошибкой, если для типа сохранено меньше
+   * {@value #SAMPLE_LINES} номеров.
+   *
+   * @param type тип ошибки
+   * @param line номер строки файла
+   */
+  private void addSample(ErrorType type, long line) {
+    List<Long> lines = samples.get(type);
+    synchronized (lines) {
+      if (lines.size() < SAMPLE_LINES) {
+        lines.add(line);
+      }
+    }
+  }
+
+  /**
+   * Возвращает политику обработки.
+   *
+   * @return политика
+   */
+  public Policy getPolicy() {
+    return policy;
+  }
+
+  /**
+   * Возвращает количество ошибок типа.
+   *
+   * @param type тип ошибки
+   * @return количество
+   */
+  public long getCount(ErrorType type) {
+    return counts.get(type).sum();
+  }
+
+  /**
+   * Возвращает общее количество ошибок.
+   *
+   * @return количество
+   */
+  public long getTotal() {
+    long total = 0;
+    for (LongAdder count : counts.values()) {
+      total += count.sum();
+    }
+    return total;
+  }
+
+  /**
+   * Возвращает номера первых строк с ошибкой типа в порядке возрастания.
+   * При конвейерном разборе это не обязательно самые первые строки файла.
+   *
+   * @param type тип ошибки
+   * @return не более {@value #SAMPLE_LINES} номеров; пусто для
+   *         {@link Policy#COUNT_ONLY}
+   */
+  public List<Long> getSampleLines(ErrorType type) {
+    List<Long> lines = samples.get(type);
+    List<Long> copy;
+    synchronized (lines) {
+      copy = new ArrayList<>(lines);
+    }
+    Collections.sort(copy);
+    return copy;
+  }
+
+  /**
+   * Возвращает подробности сохраненных ошибок для политик
+   * {@link Policy#COLLECT} и {@link Policy#COLLECT_UP_TO}.
+   *
+   * @return копия списка ошибок
+   */
+  public List<RowError> getCollected() {
+    synchronized (collected) {
+      return new ArrayList<>(collected);
+    }
+  }
+
+  /**
+   * Форматирует итог: количество ошибок по типам и номера первых строк.
+   *
+   * @return текст итога
+   */
+  public String toSummary() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format(Locale.ROOT, "Ошибки разбора CSV: %d (политика %s)%n", getTotal(), policy));
+    for (ErrorType type : ErrorType.values()) {
+      long count = getCount(type);
+      if (count == 0) {
+        continue;
+      }
+      sb.append(String.format(Locale.ROOT, "%-12s %10d", type, count));
+      List<Long> lines = getSampleLines(type);
+      if (!lines.isEmpty()) {
+        sb.append("  строки: ");
+        for (int i = 0; i < lines.size(); i++) {
+          sb.append(i == 0 ? "" : ", ").append(lines.get(i));
+        }
+        if (count > lines.size()) {
+          sb.append(", ...");
+        }
+      }
+      sb.append(System.lineSeparator());
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Ошибка одной строки.
+   */
+  public static final class RowError {
+    /** Тип ошибки. */
+    private final ErrorType type;
+
+    /** Номер строки файла. */
+    private final long line;
+
+    /** Сообщение об ошибке значения. */
+    private final String detail;
+
+    private RowError(ErrorType type, long line, String detail) {
+      this.type = type;
+      this.line = line;
+      this.detail = detail;
+    }
+
+    /**
+     * Возвращает тип ошибки.
+     *
+     * @return тип
+     */
+    public ErrorType getType() {
+      return type;
+    }
+
+    /**
+     * Возвращает номер строки файла, считая заголовок первой строкой.
+     *
+     * @return номер строки
+     */
+    public long getLine() {
+      return line;
+    }
+
+    /**
+     * Возвращает сообщение об ошибке значения.
+     *
+     * @return сообщение
+     */
+    public String getDetail() {
+      return detail;
+    }
+
+    @Override
+    public String toString() {
+      return "строка " + line + ": " + type + " (" + detail + ")";
+    }
+  }
+
+  /**
+   * Исключение политик {@link Policy#FAIL_FAST} и
+   * {@link Policy#COLLECT_UP_TO}.
+   */
+  public static final class RowException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /** Ошибка строки. */
+    private final transient RowError error;
+
+    private RowException(RowError error) {
+      super("Ошибка разбора CSV, " + error);
+      this.error = error;
+    }
+
+    /**
+     * Возвращает ошибку строки.
+     *
+     * @return ошибка
+     */
+    public RowError getError() {
+      return error;
+    }
+  }
+}
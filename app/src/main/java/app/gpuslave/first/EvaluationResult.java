@@ -0,0 +1,132 @@
+package app.gpuslave.first;
+
+/**
+ * Результат вычисления методом
+ * {@link ExpressionEvaluator#evaluateQuietly(String, java.util.Map)}: значение
+ * выражения либо код ошибки и позиция в исходной строке, где она обнаружена.
+ */
+public final class EvaluationResult {
+
+  /**
+   * Коды ошибок вычисления.
+   */
+  public enum Error {
+    /** Символ, не входящий в язык выражений. */
+    UNEXPECTED_CHARACTER("недопустимый символ"),
+    /** Число с несколькими десятичными точками или без цифр. */
+    INVALID_NUMBER("некорректное число"),
+    /** Переменная без значения. */
+    UNKNOWN_VARIABLE("неизвестная переменная"),
+    /** Оператор или закрывающая скобка там, где ожидается операнд. */
+    MISSING_OPERAND("ожидается операнд"),
+    /** Операнд или открывающая скобка там, где ожидается оператор. */
+    MISSING_OPERATOR("ожидается оператор"),
+    /** Скобка без пары. */
+    UNBALANCED_BRACKETS("ошибка в расстановке скобок"),
+    /** Деление на ноль. */
+    DIVISION_BY_ZERO("деление на ноль");
+
+    /**
+     * Описание ошибки.
+     */
+    private final String description;
+
+    Error(String description) {
+      this.description = description;
+    }
+
+    /**
+     * Возвращает описание ошибки.
+     *
+     * @return описание на русском языке
+     */
+    public String getDescription() {
+      return description;
+    }
+  }
+
+  /**
+   * Значение выражения.
+   */
+  private final double value;
+
+  /**
+   * Код ошибки или {@code null} при успехе.
+   */
+  private final Error error;
+
+  /**
+   * Позиция ошибки или -1 при успехе.
+   */
+  private final int position;
+
+  private EvaluationResult(double value, Error error, int position) {
+    this.value = value;
+    this.error = error;
+    this.position = position;
+  }
+
+  /**
+   * Создает успешный результат.
+   *
+   * @param value значение выражения
+   * @return результат
+   */
+  static EvaluationResult success(double value) {
+    return new EvaluationResult(value, null, -1);
+  }
+
+  /**
+   * Создает результат с ошибкой.
+   *
+   * @param error    код ошибки
+   * @param position позиция в исходной строке
+   * @return результат
+   */
+  static EvaluationResult failure(Error error, int position) {
+    return new EvaluationResult(Double.NaN, error, position);
+  }
+
+  /**
+   * Проверяет, вычислено ли выражение.
+   *
+   * @return {@code true}, если ошибки нет
+   */
+  public boolean isSuccess() {
+    return error == null;
+  }
+
+  /**
+   * Возвращает значение выражения.
+   *
+   * @return значение или {@link Double#NaN} при ошибке
+   */
+  public double getValue() {
+    return value;
+  }
+
+  /**
+   * Возвращает код ошибки.
+   *
+   * @return код или {@code null} при успехе
+   */
+  public Error getError() {
+    return error;
+  }
+
+  /**
+   * Возвращает позицию ошибки в исходной строке, считая с нуля; для
+   * незавершенного выражения - длину строки.
+   *
+   * @return позиция или -1 при успехе
+   */
+  public int getPosition() {
+    return position;
+  }
+
+  @Override
+  public String toString() {
+    return isSuccess() ? String.valueOf(value)
+        : "Ошибка в позиции " + position + ": " + error.getDescription();
+  }
+}
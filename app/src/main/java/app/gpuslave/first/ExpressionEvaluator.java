@@ -1,5 +1,6 @@
 package app.gpuslave.first;
 
+import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -17,6 +18,17 @@ import java.util.Stack;
  * а также использование переменных с запросом их значений у пользователя во
  * время выполнения.
  * <p>
+ * Поддерживаются также операции сравнения ({@code < <= > >= == !=}) и
+ * логические операции ({@code && ||}); их результат - 1.0 (истина) или 0.0
+ * (ложь), а любое ненулевое значение считается истиной.
+ * <p>
+ * Для многократного вычисления одного выражения с разными значениями
+ * переменных служит метод {@link #compile(String, List)}: он один раз
+ * разбирает выражение и возвращает {@link CompiledExpression}, в котором
+ * переменные заменены номерами ячеек. Метод
+ * {@link #compile(String, List, int, RoundingMode)} компилирует
+ * выражение для точной денежной арифметики с фиксированной точкой.
+ * <p>
  * Для вычисления используется алгоритм преобразования инфиксной нотации в
  * постфиксную
  * (Обратная Польская запись) с последующим вычислением результата.
@@ -38,17 +50,40 @@ public class ExpressionEvaluator {
   private Map<String, Double> variables;
 
   /**
-   * Сканер для чтения пользовательского ввода при запросе значений переменных.
+   * Сканер для чтения пользовательского ввода при запросе значений переменных;
+   * создается при первом запросе, так что вычислитель, не запрашивающий
+   * значения, не захватывает {@code System.in}.
    */
   private Scanner scanner;
 
+  /**
+   * Получатель сведений об ошибках тихого вычисления или {@code null}.
+   */
+  private DiagnosticsListener diagnosticsListener;
+
+  /**
+   * Получатель сведений об ошибках
+   * {@link ExpressionEvaluator#evaluateQuietly(String, Map) тихого вычисления}.
+   * Вызывается в потоке вычисления и не должен выбрасывать исключения.
+   */
+  @FunctionalInterface
+  public interface DiagnosticsListener {
+    /**
+     * Сообщает об ошибке вычисления.
+     *
+     * @param expression исходное выражение
+     * @param result     результат с кодом и позицией ошибки
+     */
+    void onError(String expression, EvaluationResult result);
+  }
+
   /**
    * Создает новый экземпляр вычислителя выражений.
-   * Инициализирует хранилище переменных и сканер для пользовательского ввода.
+   * Инициализирует хранилище переменных; сканер пользовательского ввода
+   * создается при первом запросе значений переменных.
    */
   public ExpressionEvaluator() {
     variables = new HashMap<>();
-    scanner = new Scanner(System.in);
   }
 
   /**
@@ -61,6 +96,15 @@ public class ExpressionEvaluator {
     }
   }
 
+  /**
+   * Устанавливает получателя сведений об ошибках тихого вычисления.
+   *
+   * @param listener получатель или {@code null}, чтобы отключить уведомления
+   */
+  public void setDiagnosticsListener(DiagnosticsListener listener) {
+    this.diagnosticsListener = listener;
+  }
+
   /**
    * Вычисляет значение математического выражения.
    * <p>
@@ -83,7 +127,7 @@ public class ExpressionEvaluator {
   public double evaluate(String expression) {
     if (!variables.isEmpty()) {
       variables = new HashMap<>();
-      scanner = new Scanner(System.in);
+      scanner = null;
     }
 
     try {
@@ -121,8 +165,129 @@ public class ExpressionEvaluator {
 
     } catch (Exception e) {
       System.err.println("Ошибка: " + e.getMessage());
-      throw new IllegalArgumentException("Некорректное выражение");
+      throw new IllegalArgumentException("Некорректное выражение", e);
+    }
+  }
+
+  /**
+   * Вычисляет выражение без переменных, ничего не выводя и не выбрасывая
+   * исключений.
+   *
+   * @param expression строковое представление выражения
+   * @return значение либо код и позиция ошибки
+   * @see #evaluateQuietly(String, Map)
+   */
+  public EvaluationResult evaluateQuietly(String expression) {
+    return evaluateQuietly(expression, Map.of());
+  }
+
+  /**
+   * Вычисляет выражение, ничего не выводя и не выбрасывая исключений.
+   * <p>
+   * Значения переменных берутся из словаря, а не запрашиваются у
+   * пользователя. Выражение разбирается за один проход алгоритмом
+   * сортировочной станции с немедленным вычислением, и каждая ошибка -
+   * недопустимый символ, некорректное число, неизвестная переменная,
+   * пропущенный операнд или оператор, непарная скобка, деление на ноль -
+   * возвращается как код с позицией в исходной строке. При ошибке вызывается
+   * {@link DiagnosticsListener}, если он установлен.
+   *
+   * @param expression строковое представление выражения
+   * @param values     значения переменных по именам
+   * @return значение либо код и позиция ошибки
+   */
+  public EvaluationResult evaluateQuietly(String expression, Map<String, Double> values) {
+    EvaluationResult result = evaluateSilently(expression, values);
+    DiagnosticsListener listener = diagnosticsListener;
+    if (!result.isSuccess() && listener != null) {
+      listener.onError(expression, result);
+    }
+    return result;
+  }
+
+  /**
+   * Вычисляет выражение так же, как
+   * {@link #evaluateQuietly(String, Map)}, но без экземпляра вычислителя и
+   * без уведомления {@link DiagnosticsListener}. Метод не обращается к
+   * консоли и может вызываться из нескольких потоков одновременно.
+   *
+   * @param expression строковое представление выражения
+   * @param values     значения переменных по именам
+   * @return значение либо код и позиция ошибки
+   */
+  public static EvaluationResult evaluateSilently(String expression, Map<String, Double> values) {
+    return new SilentEvaluation(expression, values).run();
+  }
+
+  /**
+   * Компилирует выражение для многократного вычисления без разбора строки и
+   * без запроса значений переменных. Переменные выражения должны входить в
+   * переданный список; значение переменной при вычислении берется из ячейки
+   * массива с тем же индексом.
+   *
+   * <pre>
+   * CompiledExpression filter = ExpressionEvaluator.compile("salary * 1.1 &gt; 5000", List.of("salary"));
+   * boolean passed = filter.test(4800); // true
+   * </pre>
+   *
+   * @param expression строковое представление выражения
+   * @param variables  имена переменных в порядке ячеек
+   * @return скомпилированное выражение
+   * @throws IllegalArgumentException если выражение содержит синтаксические
+   *                                  ошибки или неизвестную переменную
+   */
+  public static CompiledExpression compile(String expression, List<String> variables) {
+    return compile(expression, variables, CompiledExpression.FLOATING, RoundingMode.UNNECESSARY);
+  }
+
+  /**
+   * Компилирует выражение для вычисления в десятичной арифметике с
+   * фиксированной точкой: значения хранятся как {@code long}, умноженные на
+   * {@code 10^scale}, результаты умножения и деления округляются по
+   * {@code rounding}, а переполнение вызывает {@link ArithmeticException}.
+   * Константы выражения приводятся к масштабу при компиляции.
+   *
+   * <pre>
+   * CompiledExpression raise = ExpressionEvaluator.compile("salary * 1.1", List.of("salary"), 2, RoundingMode.HALF_EVEN);
+   * long result = raise.evaluateScaled(480000); // 528000, то есть 5280.00
+   * </pre>
+   *
+   * @param expression строковое представление выражения
+   * @param variables  имена переменных в порядке ячеек
+   * @param scale      количество десятичных знаков после точки, от 0 до 18
+   * @param rounding   правило округления
+   * @return скомпилированное выражение
+   * @throws IllegalArgumentException если выражение содержит синтаксические
+   *                                  ошибки или неизвестную переменную либо
+   *                                  масштаб вне допустимого диапазона
+   * @throws ArithmeticException      если константа не помещается в масштаб
+   *                                  или требует округления при
+   *                                  {@link RoundingMode#UNNECESSARY}
+   */
+  public static CompiledExpression compile(String expression, List<String> variables, int scale,
+      RoundingMode rounding) {
+    if (!checkBrackets(expression)) {
+      throw new IllegalArgumentException("Некорректное выражение," +
+          " ошибка в расстановке скобок");
+    }
+    List<String> postfixTokens = infixToPostfix(tokenize(expression));
+    return CompiledExpression.fromPostfix(expression, postfixTokens, variables, scale, rounding);
+  }
+
+  /**
+   * Возвращает имена переменных выражения в порядке первого появления.
+   *
+   * @param expression строковое представление выражения
+   * @return имена переменных без повторов
+   */
+  static List<String> variablesOf(String expression) {
+    List<String> names = new ArrayList<>();
+    for (String token : tokenize(expression)) {
+      if (isIdentifier(token) && !names.contains(token)) {
+        names.add(token);
+      }
     }
+    return names;
   }
 
   /**
@@ -163,6 +328,9 @@ public class ExpressionEvaluator {
    *                                  преобразовано в число
    */
   private void promptForVariables() {
+    if (scanner == null) {
+      scanner = new Scanner(System.in);
+    }
     for (String var : variables.keySet()) {
       System.out.print("Введите значение для " + var + ": ");
       try {
@@ -198,7 +366,7 @@ public class ExpressionEvaluator {
    * @return true если все скобки правильно расставлены и сбалансированы, false в
    *         противном случае
    */
-  private boolean checkBrackets(String expression) {
+  private static boolean checkBrackets(String expression) {
     Stack<Character> stack = new Stack<>();
 
     for (char c : expression.toCharArray()) {
@@ -257,14 +425,35 @@ public class ExpressionEvaluator {
   // }
 
   /**
-   * Проверяет, является ли символ арифметическим оператором.
+   * Проверяет, является ли токен оператором.
    *
-   * @param c символ для проверки
-   * @return true если символ является оператором (+, -, *, /), false в противном
-   *         случае
+   * @param token токен для проверки
+   * @return true если токен является арифметическим оператором (+, -, *, /),
+   *         оператором сравнения (&lt;, &lt;=, &gt;, &gt;=, ==, !=) или
+   *         логическим оператором (&amp;&amp;, ||), false в противном случае
+   */
+  static boolean isOperator(String token) {
+    return getPrecedence(token) > 0;
+  }
+
+  /**
+   * Проверяет, является ли токен именем переменной: начинается с буквы или
+   * '_' и содержит только буквы, цифры и '_'.
+   *
+   * @param token токен для проверки
+   * @return true если токен является именем переменной
    */
-  private boolean isOperator(char c) {
-    return c == '+' || c == '-' || c == '*' || c == '/';
+  static boolean isIdentifier(String token) {
+    if (token.isEmpty() || !Character.isLetter(token.charAt(0)) && token.charAt(0) != '_') {
+      return false;
+    }
+    for (int i = 1; i < token.length(); i++) {
+      char ch = token.charAt(i);
+      if (!Character.isLetterOrDigit(ch) && ch != '_') {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
@@ -293,34 +482,47 @@ public class ExpressionEvaluator {
   /**
    * Разбивает строковое выражение на отдельные токены.
    * <p>
-   * Метод идентифицирует числа, операторы и скобки в выражении
-   * и преобразует их в список отдельных токенов.
+   * Метод идентифицирует числа, имена переменных, операторы (в том числе
+   * двухсимвольные, например {@code <=} и {@code &&}) и скобки в выражении
+   * и преобразует их в список отдельных токенов. Прочие символы, в том числе
+   * пробелы, разделяют токены и пропускаются.
    *
    * @param expression строковое представление выражения
-   * @return список токенов (числа, операторы, скобки)
+   * @return список токенов (числа, переменные, операторы, скобки)
    */
-  private List<String> tokenize(String expression) {
+  static List<String> tokenize(String expression) {
     List<String> tokens = new ArrayList<>();
-    StringBuilder numberBuilder = new StringBuilder();
+    int length = expression.length();
+    int i = 0;
 
-    for (int i = 0; i < expression.length(); i++) {
+    while (i < length) {
       char c = expression.charAt(i);
+      int start = i;
 
       if (Character.isDigit(c) || c == '.') {
-        numberBuilder.append(c);
-      } else if (c == '(' || c == ')' || isOperator(c)) {
-        if (numberBuilder.length() > 0) {
-          tokens.add(numberBuilder.toString());
-          numberBuilder = new StringBuilder();
+        while (i < length && (Character.isDigit(expression.charAt(i)) || expression.charAt(i) == '.')) {
+          i++;
+        }
+        tokens.add(expression.substring(start, i));
+      } else if (Character.isLetter(c) || c == '_') {
+        while (i < length && (Character.isLetterOrDigit(expression.charAt(i)) || expression.charAt(i) == '_')) {
+          i++;
         }
+        tokens.add(expression.substring(start, i));
+      } else if (c == '(' || c == ')') {
         tokens.add(String.valueOf(c));
+        i++;
+      } else if (i + 1 < length && isOperator(expression.substring(i, i + 2))) {
+        tokens.add(expression.substring(i, i + 2));
+        i += 2;
+      } else {
+        if (isOperator(String.valueOf(c))) {
+          tokens.add(String.valueOf(c));
+        }
+        i++;
       }
     }
 
-    if (numberBuilder.length() > 0) {
-      tokens.add(numberBuilder.toString());
-    }
-
     return tokens;
   }
 
@@ -337,12 +539,12 @@ public class ExpressionEvaluator {
    * @param infixTokens список токенов в инфиксной нотации
    * @return список токенов в постфиксной нотации
    */
-  private List<String> infixToPostfix(List<String> infixTokens) {
+  static List<String> infixToPostfix(List<String> infixTokens) {
     List<String> postfix = new ArrayList<>();
     Stack<String> operators = new Stack<>();
 
     for (String token : infixTokens) {
-      if (isNumber(token)) {
+      if (isNumber(token) || isIdentifier(token)) {
         postfix.add(token);
       } else if (token.equals("(")) {
         operators.push(token);
@@ -356,7 +558,7 @@ public class ExpressionEvaluator {
         }
       }
 
-      else if (isOperator(token.charAt(0))) {
+      else if (isOperator(token)) {
         while (!operators.isEmpty() &&
             !operators.peek().equals("(") &&
             getPrecedence(operators.peek()) >= getPrecedence(token)) {
@@ -380,36 +582,59 @@ public class ExpressionEvaluator {
    * @return true если строка может быть преобразована в число, false в противном
    *         случае
    */
-  private boolean isNumber(String token) {
-    try {
-      Double.parseDouble(token);
-      return true;
-    } catch (NumberFormatException e) {
-      return false;
+  static boolean isNumber(String token) {
+    boolean digit = false;
+    boolean point = false;
+    for (int i = 0; i < token.length(); i++) {
+      char c = token.charAt(i);
+      if (Character.isDigit(c)) {
+        digit = true;
+      } else if (c == '.' && !point) {
+        point = true;
+      } else {
+        return false;
+      }
     }
+    return digit;
   }
 
   /**
-   * Возвращает приоритет арифметического оператора.
+   * Возвращает приоритет оператора.
    * <p>
    * Метод определяет порядок выполнения операций при вычислении выражений.
    * Операторы с более высоким приоритетом выполняются раньше.
    * <ul>
-   * <li>Умножение (*) и деление (/) имеют приоритет 2</li>
-   * <li>Сложение (+) и вычитание (-) имеют приоритет 1</li>
+   * <li>Умножение (*) и деление (/) имеют приоритет 6</li>
+   * <li>Сложение (+) и вычитание (-) имеют приоритет 5</li>
+   * <li>Сравнения (&lt;, &lt;=, &gt;, &gt;=) имеют приоритет 4</li>
+   * <li>Равенство (==) и неравенство (!=) имеют приоритет 3</li>
+   * <li>Логическое И (&amp;&amp;) имеет приоритет 2</li>
+   * <li>Логическое ИЛИ (||) имеет приоритет 1</li>
    * </ul>
    *
    * @param operator строковое представление оператора
-   * @return числовое значение приоритета оператора
+   * @return числовое значение приоритета оператора или 0, если это не оператор
    */
-  private int getPrecedence(String operator) {
+  static int getPrecedence(String operator) {
     switch (operator) {
+      case "||":
+        return 1;
+      case "&&":
+        return 2;
+      case "==":
+      case "!=":
+        return 3;
+      case "<":
+      case "<=":
+      case ">":
+      case ">=":
+        return 4;
       case "+":
       case "-":
-        return 1;
+        return 5;
       case "*":
       case "/":
-        return 2;
+        return 6;
       default:
         return 0;
     }
@@ -435,13 +660,13 @@ public class ExpressionEvaluator {
    * @throws ArithmeticException      если произошла арифметическая ошибка
    *                                  (например, деление на ноль)
    */
-  private double evaluatePostfix(List<String> postfixTokens) {
+  static double evaluatePostfix(List<String> postfixTokens) {
     Stack<Double> stack = new Stack<>();
 
     for (String token : postfixTokens) {
       if (isNumber(token)) {
         stack.push(Double.parseDouble(token));
-      } else if (isOperator(token.charAt(0))) {
+      } else if (isOperator(token)) {
         if (stack.size() < 2) {
           throw new IllegalArgumentException("Недостаточно операндов для оператора " + token);
         }
@@ -449,23 +674,7 @@ public class ExpressionEvaluator {
         double b = stack.pop();
         double a = stack.pop();
 
-        switch (token) {
-          case "+":
-            stack.push(a + b);
-            break;
-          case "-":
-            stack.push(a - b);
-            break;
-          case "*":
-            stack.push(a * b);
-            break;
-          case "/":
-            if (b == 0) {
-              throw new ArithmeticException("Деление на ноль");
-            }
-            stack.push(a / b);
-            break;
-        }
+        stack.push(apply(token, a, b));
       }
     }
 
@@ -475,4 +684,219 @@ public class ExpressionEvaluator {
 
     return stack.pop();
   }
+
+  /**
+   * Применяет бинарный оператор к операндам.
+   *
+   * @param operator оператор
+   * @param a        левый операнд
+   * @param b        правый операнд
+   * @return результат; для сравнений и логических операций 1.0 или 0.0
+   * @throws ArithmeticException      при делении на ноль
+   * @throws IllegalArgumentException если оператор неизвестен
+   */
+  static double apply(String operator, double a, double b) {
+    switch (operator) {
+      case "+":
+        return a + b;
+      case "-":
+        return a - b;
+      case "*":
+        return a * b;
+      case "/":
+        if (b == 0) {
+          throw new ArithmeticException("Деление на ноль");
+        }
+        return a / b;
+      case "<":
+        return a < b ? 1 : 0;
+      case "<=":
+        return a <= b ? 1 : 0;
+      case ">":
+        return a > b ? 1 : 0;
+      case ">=":
+        return a >= b ? 1 : 0;
+      case "==":
+        return a == b ? 1 : 0;
+      case "!=":
+        return a != b ? 1 : 0;
+      case "&&":
+        return a != 0 && b != 0 ? 1 : 0;
+      case "||":
+        return a != 0 || b != 0 ? 1 : 0;
+      default:
+        throw new IllegalArgumentException("Неизвестный оператор " + operator);
+    }
+  }
+
+  /**
+   * Однопроходное вычисление выражения без исключений и вывода: алгоритм
+   * сортировочной станции, в котором оператор применяется к стеку операндов
+   * сразу при снятии со стека операторов.
+   */
+  private static final class SilentEvaluation {
+    /** Исходное выражение. */
+    private final String expression;
+
+    /** Значения переменных. */
+    private final Map<String, Double> values;
+
+    /** Стек операндов. */
+    private final double[] operands;
+
+    /** Стек операторов и открывающих скобок. */
+    private final String[] operators;
+
+    /** Позиции операторов в выражении. */
+    private final int[] operatorPositions;
+
+    /** Размер стека операндов. */
+    private int operandCount;
+
+    /** Размер стека операторов. */
+    private int operatorCount;
+
+    /** Результат с ошибкой, обнаруженной при применении оператора. */
+    private EvaluationResult failure;
+
+    private SilentEvaluation(String expression, Map<String, Double> values) {
+      this.expression = expression;
+      this.values = values;
+      this.operands = new double[expression.length()];
+      this.operators = new String[expression.length()];
+      this.operatorPositions = new int[expression.length()];
+    }
+
+    /**
+     * Вычисляет выражение.
+     *
+     * @return значение либо код и позиция первой ошибки
+     */
+    private EvaluationResult run() {
+      int length = expression.length();
+      boolean expectOperand = true;
+      int i = 0;
+
+      while (i < length) {
+        char c = expression.charAt(i);
+        int start = i;
+
+        if (Character.isWhitespace(c)) {
+          i++;
+        } else if (Character.isDigit(c) || c == '.') {
+          while (i < length && (Character.isDigit(expression.charAt(i)) || expression.charAt(i) == '.')) {
+            i++;
+          }
+          if (!expectOperand) {
+            return EvaluationResult.failure(EvaluationResult.Error.MISSING_OPERATOR, start);
+          }
+          String token = expression.substring(start, i);
+          if (!isNumber(token)) {
+            return EvaluationResult.failure(EvaluationResult.Error.INVALID_NUMBER, start);
+          }
+          operands[operandCount++] = Double.parseDouble(token);
+          expectOperand = false;
+        } else if (Character.isLetter(c) || c == '_') {
+          while (i < length && (Character.isLetterOrDigit(expression.charAt(i)) || expression.charAt(i) == '_')) {
+            i++;
+          }
+          if (!expectOperand) {
+            return EvaluationResult.failure(EvaluationResult.Error.MISSING_OPERATOR, start);
+          }
+          Double value = values.get(expression.substring(start, i));
+          if (value == null) {
+            return EvaluationResult.failure(EvaluationResult.Error.UNKNOWN_VARIABLE, start);
+          }
+          operands[operandCount++] = value;
+          expectOperand = false;
+        } else if (c == '(') {
+          if (!expectOperand) {
+            return EvaluationResult.failure(EvaluationResult.Error.MISSING_OPERATOR, start);
+          }
+          pushOperator("(", start);
+          i++;
+        } else if (c == ')') {
+          if (expectOperand) {
+            return EvaluationResult.failure(EvaluationResult.Error.MISSING_OPERAND, start);
+          }
+          while (operatorCount > 0 && !operators[operatorCount - 1].equals("(")) {
+            if (!reduce()) {
+              return failure;
+            }
+          }
+          if (operatorCount == 0) {
+            return EvaluationResult.failure(EvaluationResult.Error.UNBALANCED_BRACKETS, start);
+          }
+          operatorCount--;
+          i++;
+        } else {
+          String operator = i + 1 < length && isOperator(expression.substring(i, i + 2))
+              ? expression.substring(i, i + 2)
+              : String.valueOf(c);
+          if (!isOperator(operator)) {
+            return EvaluationResult.failure(EvaluationResult.Error.UNEXPECTED_CHARACTER, start);
+          }
+          if (expectOperand) {
+            return EvaluationResult.failure(EvaluationResult.Error.MISSING_OPERAND, start);
+          }
+          while (operatorCount > 0 && !operators[operatorCount - 1].equals("(")
+              && getPrecedence(operators[operatorCount - 1]) >= getPrecedence(operator)) {
+            if (!reduce()) {
+              return failure;
+            }
+          }
+          pushOperator(operator, start);
+          expectOperand = true;
+          i += operator.length();
+        }
+      }
+
+      if (expectOperand) {
+        return EvaluationResult.failure(EvaluationResult.Error.MISSING_OPERAND, length);
+      }
+      while (operatorCount > 0) {
+        if (operators[operatorCount - 1].equals("(")) {
+          return EvaluationResult.failure(EvaluationResult.Error.UNBALANCED_BRACKETS,
+              operatorPositions[operatorCount - 1]);
+        }
+        if (!reduce()) {
+          return failure;
+        }
+      }
+      return EvaluationResult.success(operands[0]);
+    }
+
+    /**
+     * Кладет оператор или скобку на стек операторов.
+     *
+     * @param operator оператор или "("
+     * @param position позиция в выражении
+     */
+    private void pushOperator(String operator, int position) {
+      operators[operatorCount] = operator;
+      operatorPositions[operatorCount] = position;
+      operatorCount++;
+    }
+
+    /**
+     * Снимает оператор со стека и применяет его к двум верхним операндам.
+     * Проверка грамматики в {@link #run()} гарантирует наличие операндов.
+     *
+     * @return {@code false} при делении на ноль; ошибка сохраняется в
+     *         {@link #failure}
+     */
+    private boolean reduce() {
+      operatorCount--;
+      String operator = operators[operatorCount];
+      double b = operands[--operandCount];
+      double a = operands[operandCount - 1];
+      if (operator.equals("/") && b == 0) {
+        failure = EvaluationResult.failure(EvaluationResult.Error.DIVISION_BY_ZERO,
+            operatorPositions[operatorCount]);
+        return false;
+      }
+      operands[operandCount - 1] = apply(operator, a, b);
+      return true;
+    }
+  }
 }
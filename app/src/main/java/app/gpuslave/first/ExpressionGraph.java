@@ -0,0 +1,396 @@
+package app.gpuslave.first;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Сеть взаимозависимых выражений по принципу электронной таблицы.
+ * <p>
+ * Каждая ячейка графа - либо входное значение, либо формула на языке
+ * {@link ExpressionEvaluator}, переменные которой ссылаются на другие ячейки.
+ * Формула компилируется один раз ({@link CompiledExpression}), а граф
+ * запоминает, какие ячейки она читает. Ячейки упорядочены по уровням:
+ * входы и формулы без переменных имеют уровень 0, формула - на единицу больше
+ * наибольшего уровня своих зависимостей.
+ * <p>
+ * При изменении входа пересчитываются только зависящие от него формулы,
+ * уровень за уровнем; если значение формулы не изменилось, ее зависимые
+ * ячейки не пересчитываются. Формулы одного уровня не зависят друг от друга,
+ * поэтому при заданном {@link #parallel(Executor, int) исполнителе} широкие
+ * уровни вычисляются параллельно.
+ * <p>
+ * Ссылка на неопределенную ячейку создает вход со значением 0. Циклические
+ * зависимости запрещены. Ошибка вычисления формулы (деление на ноль) дает
+ * значение {@link Double#NaN}. Класс не потокобезопасен.
+ *
+ * <pre>
+ * ExpressionGraph graph = new ExpressionGraph();
+ * graph.set("base", 100);
+ * graph.define("tax", "base * 0.2");
+ * graph.define("total", "base + tax");
+ * graph.set("base", 200); // пересчитывает tax и total
+ * double total = graph.get("total"); // 240.0
+ * </pre>
+ */
+public class ExpressionGraph {
+
+  /**
+   * Ячейки по именам в порядке создания.
+   */
+  private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+  /**
+   * Признак актуальности уровней ячеек.
+   */
+  private boolean ordered = true;
+
+  /**
+   * Наибольший уровень ячеек.
+   */
+  private int maxLevel;
+
+  /**
+   * Исполнитель для параллельного пересчета или {@code null}.
+   */
+  private Executor executor;
+
+  /**
+   * Количество формул в одной параллельной задаче.
+   */
+  private int chunkSize = Integer.MAX_VALUE;
+
+  /**
+   * Включает параллельный пересчет: формулы уровня делятся на части по
+   * {@code chunkSize} ячеек, и каждая часть вычисляется отдельной задачей.
+   * Уровень не больше {@code chunkSize} ячеек вычисляется в вызывающем
+   * потоке.
+   *
+   * @param executor  исполнитель задач
+   * @param chunkSize количество формул в одной задаче
+   * @return этот граф
+   * @throws IllegalArgumentException если {@code chunkSize} меньше 1
+   */
+  public ExpressionGraph parallel(Executor executor, int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Размер части должен быть положительным: " + chunkSize);
+    }
+    this.executor = executor;
+    this.chunkSize = chunkSize;
+    return this;
+  }
+
+  /**
+   * Задает формулу ячейки и вычисляет ее и зависящие от нее ячейки. Если
+   * ячейка уже существует, ее прежняя формула или значение заменяются.
+   *
+   * @param name       имя ячейки
+   * @param expression формула
+   * @return количество вычисленных формул
+   * @throws IllegalArgumentException если имя или формула некорректны или
+   *                                  формула создает циклическую зависимость
+   */
+  public int define(String name, String expression) {
+    checkName(name);
+    List<String> variables = ExpressionEvaluator.variablesOf(expression);
+    CompiledExpression compiled = ExpressionEvaluator.compile(expression, variables);
+
+    if (variables.contains(name) || dependsOn(variables, name)) {
+      throw new IllegalArgumentException("Циклическая зависимость: " + name + " = " + expression);
+    }
+
+    Node node = nodes.computeIfAbsent(name, Node::new);
+    List<Node> dependencies = new ArrayList<>(variables.size());
+    for (String variable : variables) {
+      dependencies.add(nodes.computeIfAbsent(variable, Node::new));
+    }
+    node.attach(compiled, dependencies);
+    ordered = false;
+    return recalculate(List.of(node));
+  }
+
+  /**
+   * Задает входное значение ячейки и пересчитывает зависящие от нее формулы.
+   * Если ячейка была формулой, она становится входом.
+   *
+   * @param name  имя ячейки
+   * @param value значение
+   * @return количество вычисленных формул
+   * @throws IllegalArgumentException если имя некорректно
+   */
+  public int set(String name, double value) {
+    return setAll(Map.of(name, value));
+  }
+
+  /**
+   * Задает несколько входных значений и пересчитывает зависящие от них
+   * формулы за один проход, так что общая зависимая формула вычисляется
+   * один раз.
+   *
+   * @param values значения по именам ячеек
+   * @return количество вычисленных формул
+   * @throws IllegalArgumentException если имя некорректно
+   */
+  public int setAll(Map<String, Double> values) {
+    Set<Node> dirty = new HashSet<>();
+    for (Map.Entry<String, Double> entry : values.entrySet()) {
+      checkName(entry.getKey());
+      Node node = nodes.computeIfAbsent(entry.getKey(), Node::new);
+      if (node.expression != null) {
+        node.attach(null, List.of());
+        ordered = false;
+      } else if (Double.compare(node.value, entry.getValue()) == 0) {
+        continue;
+      }
+      node.value = entry.getValue();
+      dirty.addAll(node.dependents);
+    }
+    return recalculate(dirty);
+  }
+
+  /**
+   * Возвращает значение ячейки.
+   *
+   * @param name имя ячейки
+   * @return значение
+   * @throws IllegalArgumentException если ячейки нет
+   */
+  public double get(String name) {
+    Node node = nodes.get(name);
+    if (node == null) {
+      throw new IllegalArgumentException("Неизвестная ячейка: " + name);
+    }
+    return node.value;
+  }
+
+  /**
+   * Возвращает значения всех ячеек в порядке их создания.
+   *
+   * @return копия значений по именам
+   */
+  public Map<String, Double> values() {
+    Map<String, Double> values = new LinkedHashMap<>();
+    for (Node node : nodes.values()) {
+      values.put(node.name, node.value);
+    }
+    return values;
+  }
+
+  /**
+   * Проверяет, что имя ячейки можно использовать как переменную выражения.
+   *
+   * @param name имя ячейки
+   */
+  private static void checkName(String name) {
+    if (!ExpressionEvaluator.isIdentifier(name)) {
+      throw new IllegalArgumentException("Некорректное имя ячейки: " + name);
+    }
+  }
+
+  /**
+   * Проверяет, зависит ли какая-либо из ячеек, прямо или через другие
+   * формулы, от указанной ячейки.
+   *
+   * @param names  имена проверяемых ячеек
+   * @param target имя искомой ячейки
+   * @return {@code true}, если зависимость есть
+   */
+  private boolean dependsOn(List<String> names, String target) {
+    Deque<Node> pending = new ArrayDeque<>();
+    Set<Node> visited = new HashSet<>();
+    for (String name : names) {
+      Node node = nodes.get(name);
+      if (node != null) {
+        pending.push(node);
+      }
+    }
+    while (!pending.isEmpty()) {
+      Node node = pending.pop();
+      if (node.name.equals(target)) {
+        return true;
+      }
+      if (visited.add(node)) {
+        node.dependencies.forEach(pending::push);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Пересчитывает уровни ячеек алгоритмом Кана, если граф изменился.
+   */
+  private void ensureOrder() {
+    if (ordered) {
+      return;
+    }
+    Map<Node, Integer> remaining = new LinkedHashMap<>();
+    Deque<Node> ready = new ArrayDeque<>();
+    for (Node node : nodes.values()) {
+      node.level = 0;
+      remaining.put(node, node.dependencies.size());
+      if (node.dependencies.isEmpty()) {
+        ready.add(node);
+      }
+    }
+    maxLevel = 0;
+    while (!ready.isEmpty()) {
+      Node node = ready.poll();
+      maxLevel = Math.max(maxLevel, node.level);
+      for (Node dependent : node.dependents) {
+        dependent.level = Math.max(dependent.level, node.level + 1);
+        if (remaining.merge(dependent, -1, Integer::sum) == 0) {
+          ready.add(dependent);
+        }
+      }
+    }
+    ordered = true;
+  }
+
+  /**
+   * Вычисляет формулы и, уровень за уровнем, зависящие от них формулы,
+   * значения зависимостей которых изменились.
+   *
+   * @param initial формулы, которые нужно вычислить
+   * @return количество вычисленных формул
+   */
+  private int recalculate(Collection<Node> initial) {
+    if (initial.isEmpty()) {
+      return 0;
+    }
+    ensureOrder();
+    List<List<Node>> levels = new ArrayList<>(maxLevel + 1);
+    for (int i = 0; i <= maxLevel; i++) {
+      levels.add(new ArrayList<>());
+    }
+    for (Node node : initial) {
+      node.mark(levels);
+    }
+
+    int count = 0;
+    for (List<Node> level : levels) {
+      if (level.isEmpty()) {
+        continue;
+      }
+      evaluate(level);
+      count += level.size();
+      for (Node node : level) {
+        node.dirty = false;
+        if (node.changed) {
+          for (Node dependent : node.dependents) {
+            dependent.mark(levels);
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Вычисляет формулы одного уровня, параллельно, если уровень шире части.
+   *
+   * @param level формулы уровня
+   */
+  private void evaluate(List<Node> level) {
+    if (executor == null || level.size() <= chunkSize) {
+      level.forEach(Node::evaluate);
+      return;
+    }
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    for (int from = 0; from < level.size(); from += chunkSize) {
+      List<Node> chunk = level.subList(from, Math.min(level.size(), from + chunkSize));
+      futures.add(CompletableFuture.runAsync(() -> chunk.forEach(Node::evaluate), executor));
+    }
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+  }
+
+  /**
+   * Ячейка графа.
+   */
+  private static final class Node {
+    /** Имя ячейки. */
+    private final String name;
+
+    /** Формула или {@code null} для входа. */
+    private CompiledExpression expression;
+
+    /** Ячейки, которые читает формула, в порядке ее переменных. */
+    private List<Node> dependencies = List.of();
+
+    /** Формулы, читающие эту ячейку. */
+    private final Set<Node> dependents = new HashSet<>();
+
+    /** Значения зависимостей для вычисления формулы. */
+    private double[] arguments = new double[0];
+
+    /** Значение ячейки. */
+    private double value;
+
+    /** Уровень ячейки. */
+    private int level;
+
+    /** Признак ожидания пересчета. */
+    private boolean dirty;
+
+    /** Признак изменения значения при последнем вычислении. */
+    private boolean changed;
+
+    private Node(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Заменяет формулу ячейки и связи с зависимостями.
+     *
+     * @param expression   формула или {@code null} для входа
+     * @param dependencies ячейки в порядке переменных формулы
+     */
+    private void attach(CompiledExpression expression, List<Node> dependencies) {
+      for (Node dependency : this.dependencies) {
+        dependency.dependents.remove(this);
+      }
+      this.expression = expression;
+      this.dependencies = dependencies;
+      this.arguments = new double[dependencies.size()];
+      for (Node dependency : dependencies) {
+        dependency.dependents.add(this);
+      }
+    }
+
+    /**
+     * Ставит формулу в очередь пересчета ее уровня.
+     *
+     * @param levels очереди по уровням
+     */
+    private void mark(List<List<Node>> levels) {
+      if (!dirty && expression != null) {
+        dirty = true;
+        levels.get(level).add(this);
+      }
+    }
+
+    /**
+     * Вычисляет формулу по текущим значениям зависимостей.
+     */
+    private void evaluate() {
+      for (int i = 0; i < arguments.length; i++) {
+        arguments[i] = dependencies.get(i).value;
+      }
+      double result;
+      try {
+        result = expression.evaluate(arguments);
+      } catch (ArithmeticException e) {
+        result = Double.NaN;
+      }
+      changed = Double.compare(result, value) != 0;
+      value = result;
+    }
+  }
+}
@@ -0,0 +1,334 @@
+package app.gpuslave.first;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Сетевая служба вычисления выражений на основе {@link ServerSocket}.
+ * Каждое соединение обслуживается отдельным виртуальным потоком.
+ * <p>
+ * Протокол строковый, в кодировке UTF-8. Запрос - одна строка: выражение и
+ * необязательные значения переменных через точку с запятой:
+ *
+ * <pre>
+ * salary * 1.1 &gt; 5000; salary=4800
+ * (a + b) / 2; a=1; b=2
+ * </pre>
+ *
+ * Ответ - одна строка: {@code OK <значение>} или
+ * {@code ERR <код> <позиция>}, где код - имя
+ * {@link EvaluationResult.Error}, {@code BAD_REQUEST} для некорректного
+ * значения переменной или {@code INTERNAL} для непредвиденной ошибки службы
+ * (с позицией 0), а позиция отсчитывается от начала строки запроса. Ошибка
+ * в запросе не закрывает соединение.
+ * <p>
+ * Клиент может отправить пакет запросов, не дожидаясь ответов: ответы
+ * приходят в порядке запросов, а служба сбрасывает буфер вывода, только когда
+ * ей нужно ждать новых данных из сокета, так что пакет отвечается одной
+ * записью в сокет. Скомпилированные выражения хранятся в общем для всех соединений
+ * кэше; при ошибке выражение вычисляется тихо, чтобы вернуть код и позицию.
+ */
+public class ExpressionService implements AutoCloseable {
+
+  /**
+   * Порт по умолчанию для {@link #main(String[])}.
+   */
+  public static final int DEFAULT_PORT = 7070;
+
+  /**
+   * Наибольшее количество выражений в кэше; после его заполнения новые
+   * выражения компилируются при каждом запросе.
+   */
+  static final int CACHE_CAPACITY = 10_000;
+
+  /**
+   * Серверный сокет.
+   */
+  private final ServerSocket serverSocket;
+
+  /**
+   * Скомпилированные выражения по тексту.
+   */
+  private final Map<String, CompiledExpression> cache = new ConcurrentHashMap<>();
+
+  /**
+   * Открытые соединения.
+   */
+  private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Поток приема соединений или {@code null}, если служба не запущена.
+   */
+  private Thread acceptor;
+
+  /**
+   * Открывает серверный сокет на локальном адресе.
+   *
+   * @param port порт или 0 для выбора свободного порта
+   * @throws IOException если сокет не удалось открыть
+   */
+  public ExpressionService(int port) throws IOException {
+    this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+  }
+
+  /**
+   * Запускает прием соединений.
+   *
+   * @return эта служба
+   * @throws IllegalStateException если служба уже запущена
+   */
+  public synchronized ExpressionService start() {
+    if (acceptor != null) {
+      throw new IllegalStateException("Служба уже запущена");
+    }
+    acceptor = Thread.ofVirtual().name("expression-service-accept").start(this::acceptLoop);
+    return this;
+  }
+
+  /**
+   * Возвращает порт, на котором служба принимает соединения.
+   *
+   * @return номер порта
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Возвращает количество выражений в кэше.
+   *
+   * @return размер кэша
+   */
+  public int getCacheSize() {
+    return cache.size();
+  }
+
+  /**
+   * Останавливает прием соединений и закрывает открытые соединения.
+   *
+   * @throws IOException при ошибке закрытия серверного сокета
+   */
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    for (Socket socket : connections) {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // соединение уже закрыто клиентом
+      }
+    }
+  }
+
+  /**
+   * Принимает соединения, пока серверный сокет открыт.
+   */
+  private void acceptLoop() {
+    long number = 0;
+    while (!serverSocket.isClosed()) {
+      Socket socket;
+      try {
+        socket = serverSocket.accept();
+      } catch (IOException e) {
+        return;
+      }
+      connections.add(socket);
+      Thread.ofVirtual().name("expression-service-" + ++number).start(() -> serve(socket));
+    }
+  }
+
+  /**
+   * Обслуживает соединение: отвечает на запросы по порядку до закрытия
+   * входного потока.
+   *
+   * @param socket сокет соединения
+   */
+  private void serve(Socket socket) {
+    try (socket;
+        Writer out = new BufferedWriter(
+            new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+            new FlushingInputStream(socket.getInputStream(), out), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = in.readLine()) != null) {
+        String response;
+        try {
+          response = handle(line);
+        } catch (RuntimeException e) {
+          response = "ERR INTERNAL 0";
+        }
+        out.write(response);
+        out.write('\n');
+      }
+    } catch (IOException e) {
+      // клиент разорвал соединение
+    } finally {
+      connections.remove(socket);
+    }
+  }
+
+  /**
+   * Входной поток соединения, который сбрасывает накопленные ответы перед
+   * тем, как ждать новых данных из сокета. Ответы на пакет запросов уходят
+   * одной записью, а клиент, отправивший часть следующей строки, не ждет
+   * ответов на уже полученные запросы.
+   */
+  private static final class FlushingInputStream extends FilterInputStream {
+
+    /**
+     * Буферизованный вывод ответов.
+     */
+    private final Flushable output;
+
+    /**
+     * Создает поток.
+     *
+     * @param in     входной поток сокета
+     * @param output вывод ответов
+     */
+    FlushingInputStream(InputStream in, Flushable output) {
+      super(in);
+      this.output = output;
+    }
+
+    @Override
+    public int read() throws IOException {
+      flushIfWaiting();
+      return super.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      flushIfWaiting();
+      return super.read(b, off, len);
+    }
+
+    /**
+     * Сбрасывает вывод, если чтение заблокируется в ожидании данных.
+     *
+     * @throws IOException при ошибке записи в сокет
+     */
+    private void flushIfWaiting() throws IOException {
+      if (in.available() == 0) {
+        output.flush();
+      }
+    }
+  }
+
+  /**
+   * Обрабатывает одну строку запроса.
+   *
+   * @param line строка запроса
+   * @return строка ответа без перевода строки
+   */
+  String handle(String line) {
+    String[] parts = line.split(";");
+    String expression = parts[0];
+    Map<String, Double> values = new HashMap<>();
+    int offset = expression.length() + 1;
+    for (int i = 1; i < parts.length; i++) {
+      String part = parts[i];
+      if (part.isBlank()) {
+        offset += part.length() + 1;
+        continue;
+      }
+      int equals = part.indexOf('=');
+      String name = equals < 0 ? "" : part.substring(0, equals).trim();
+      String value = equals < 0 ? "" : part.substring(equals + 1).trim();
+      String digits = value.startsWith("-") ? value.substring(1) : value;
+      if (name.isEmpty() || !ExpressionEvaluator.isNumber(digits)) {
+        return "ERR BAD_REQUEST " + offset;
+      }
+      values.put(name, Double.parseDouble(value));
+      offset += part.length() + 1;
+    }
+
+    CompiledExpression compiled = compiled(expression);
+    if (compiled != null) {
+      double[] slots = new double[compiled.getVariables().size()];
+      boolean bound = true;
+      for (int i = 0; i < slots.length && bound; i++) {
+        Double value = values.get(compiled.getVariables().get(i));
+        bound = value != null;
+        slots[i] = bound ? value : 0;
+      }
+      if (bound) {
+        try {
+          return "OK " + compiled.evaluate(slots);
+        } catch (ArithmeticException e) {
+          // код и позиция ошибки определяются тихим вычислением ниже
+        }
+      }
+    }
+
+    EvaluationResult result = ExpressionEvaluator.evaluateSilently(expression, values);
+    return result.isSuccess() ? "OK " + result.getValue()
+        : "ERR " + result.getError() + " " + result.getPosition();
+  }
+
+  /**
+   * Возвращает скомпилированное выражение из кэша, компилируя его при
+   * первом обращении. Перед компиляцией синтаксис проверяется тихим
+   * вычислением со всеми переменными, равными 1, так что некорректное
+   * выражение не компилируется и не попадает в кэш. Деление на ноль при
+   * проверке не отличает синтаксическую ошибку после него (например,
+   * {@code 1/0 +}), поэтому такое выражение компилируется, а отказ
+   * компиляции тоже означает некорректное выражение.
+   *
+   * @param expression текст выражения
+   * @return скомпилированное выражение или {@code null}, если выражение
+   *         некорректно
+   */
+  private CompiledExpression compiled(String expression) {
+    CompiledExpression compiled = cache.get(expression);
+    if (compiled != null) {
+      return compiled;
+    }
+    Map<String, Double> ones = new HashMap<>();
+    for (String variable : ExpressionEvaluator.variablesOf(expression)) {
+      ones.put(variable, 1.0);
+    }
+    EvaluationResult check = ExpressionEvaluator.evaluateSilently(expression, ones);
+    if (!check.isSuccess() && check.getError() != EvaluationResult.Error.DIVISION_BY_ZERO) {
+      return null;
+    }
+    try {
+      compiled = ExpressionEvaluator.compile(expression, ExpressionEvaluator.variablesOf(expression));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    if (cache.size() < CACHE_CAPACITY) {
+      cache.putIfAbsent(expression, compiled);
+    }
+    return compiled;
+  }
+
+  /**
+   * Запускает службу и ждет ее остановки.
+   *
+   * @param args необязательный номер порта, по умолчанию
+   *             {@value #DEFAULT_PORT}
+   * @throws Exception при ошибке запуска службы
+   */
+  public static void main(String[] args) throws Exception {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+    ExpressionService service = new ExpressionService(port).start();
+    System.out.println("Служба вычисления выражений слушает порт " + service.getPort());
+    service.acceptor.join();
+  }
+}
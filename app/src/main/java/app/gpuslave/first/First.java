@@ -71,21 +71,16 @@ public class First {
     System.out.println(eval.evaluate("1+(2)*(300)"));
 
     System.out.println("----------THIRD--LAB------------");
-    Compare cmpr = new Compare();
-    System.out.println("Сравнение производительности ArrayList и LinkedList");
-    System.out.println("Количество операций для каждого метода: " + Compare.ITERATIONS);
-    System.out.println("Размер коллекций: " + Compare.LIST_SIZE);
+    Compare cmpr = new Compare()
+        .addCollection("ArrayList", ArrayList::new)
+        .addCollection("LinkedList", LinkedList::new)
+        .addCollection("Container", Compare::containerList);
+    System.out.println("Сравнение производительности реализаций списков");
+    System.out.println("Количество операций для каждого метода: " + cmpr.getIter());
+    System.out.println("Размер коллекций: " + cmpr.getListSize());
     System.out.println("\n");
 
-    ArrayList<Integer> arrayList = new ArrayList<>();
-    LinkedList<Integer> linkedList = new LinkedList<>();
-
-    for (int i = 0; i < Compare.LIST_SIZE; i++) {
-      arrayList.add(i);
-      linkedList.add(i);
-    }
-
-    cmpr.runTests(arrayList, linkedList);
+    System.out.print(cmpr.run().toTable());
 
     System.out.println("----------FOURTH-LAB------------");
     System.out.println("Чтение и обработка данных из CSV файла");
@@ -0,0 +1,79 @@
+package app.gpuslave.first;
+
+import java.util.function.Supplier;
+
+import app.gpuslave.first.AutoInjectable.Scope;
+
+/**
+ * Контракт внедрителя, сгенерированного на этапе компиляции процессором
+ * аннотаций {@code AutoInjectableProcessor} для класса с полями
+ * {@link AutoInjectable}.
+ * <p>
+ * Сгенерированный класс называется {@code <двоичное имя бина>$$Injector},
+ * лежит в пакете бина и присваивает поля без рефлексии: доступные из пакета
+ * поля напрямую, приватные - через {@link java.lang.invoke.VarHandle},
+ * полученный один раз при загрузке класса.
+ * Экземпляры реализаций он получает через {@link Context}, поэтому
+ * сопоставление интерфейсов, области видимости и отложенное создание
+ * работают так же, как при внедрении через рефлексию. {@link Injector}
+ * использует сгенерированный класс, если он есть, и рефлексию в противном
+ * случае.
+ *
+ * @param <T> тип бина
+ */
+public interface GeneratedInjector<T> {
+
+  /**
+   * Суффикс имени сгенерированного класса.
+   */
+  String SUFFIX = "$$Injector";
+
+  /**
+   * Внедряет зависимости в бин.
+   *
+   * @param bean    бин
+   * @param context источник экземпляров реализаций
+   * @throws Exception при ошибке внедрения
+   */
+  void inject(T bean, Context context) throws Exception;
+
+  /**
+   * Источник экземпляров реализаций, предоставляемый {@link Injector}.
+   * Область {@link Scope#DEFAULT} означает область из файла свойств.
+   */
+  interface Context {
+
+    /**
+     * Возвращает экземпляр реализации интерфейса.
+     *
+     * @param <X>   тип интерфейса
+     * @param type  интерфейс
+     * @param scope область видимости
+     * @return экземпляр реализации
+     * @throws Exception при ошибке создания экземпляра
+     */
+    <X> X instance(Class<X> type, Scope scope) throws Exception;
+
+    /**
+     * Возвращает прокси, создающий реализацию при первом вызове метода.
+     *
+     * @param <X>   тип интерфейса
+     * @param type  интерфейс
+     * @param scope область видимости
+     * @return прокси
+     * @throws Exception при ошибке разрешения привязки
+     */
+    <X> X lazyProxy(Class<X> type, Scope scope) throws Exception;
+
+    /**
+     * Возвращает поставщика, создающего реализацию при первом обращении.
+     *
+     * @param <X>   тип интерфейса
+     * @param type  интерфейс
+     * @param scope область видимости
+     * @return поставщик
+     * @throws Exception при ошибке разрешения привязки
+     */
+    <X> Supplier<X> lazySupplier(Class<X> type, Scope scope) throws Exception;
+  }
+}
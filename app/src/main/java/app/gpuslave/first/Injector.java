@@ -0,0 +1,1293 @@
+package app.gpuslave.first;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import app.gpuslave.first.AutoInjectable.Scope;
+
+/**
+ * Класс, реализующий механизм внедрения зависимостей через рефлексию.
+ * Находит поля, помеченные аннотацией {@link AutoInjectable}, и инициализирует их
+ * экземплярами классов, указанных в файле свойств.
+ * <p>
+ * Файл свойств должен содержать пары "интерфейс = реализация" в формате:
+ * <pre>
+ * пакет.ИмяИнтерфейса=пакет.ИмяРеализации
+ * пакет.ИмяИнтерфейса.scope=singleton
+ * </pre>
+ * Необязательный ключ {@code .scope} задает область видимости экземпляров
+ * ({@code prototype}, {@code singleton}, {@code thread} или {@code request},
+ * см. {@link Scope}); атрибут {@link AutoInjectable#scope()} поля имеет
+ * приоритет над файлом свойств. По умолчанию каждое внедрение создает новый
+ * экземпляр.
+ * <p>
+ * Поля с {@link AutoInjectable#lazy()} получают прокси интерфейса или
+ * {@link Supplier}, которые создают реализацию при первом обращении.
+ * <p>
+ * Зависимости разрешаются рекурсивно: в созданные реализации также
+ * внедряются их поля {@link AutoInjectable}, а если у реализации есть
+ * конструктор с этой аннотацией, его параметры получают экземпляры
+ * реализаций своих интерфейсов. Циклическая зависимость приводит к
+ * {@link IllegalStateException} с цепочкой интерфейсов; разорвать цикл можно
+ * отложенным внедрением. Метод {@link #startEager(Executor)} заранее
+ * создает singleton-экземпляры, параллельно для независимых привязок.
+ * <p>
+ * Сопоставление можно не читать из рабочего каталога, а собрать из индексов
+ * {@value #INDEX_RESOURCE} на пути классов ({@link #fromClasspath()}); сборка
+ * копирует туда корневой {@code injection.properties}. Метод
+ * {@link #preload()} при запуске проверяет все привязки, заранее загружает
+ * классы реализаций и сообщает время разрешения каждой привязки.
+ * <p>
+ * Внедрения, создание реализаций и построение планов публикуются событиями
+ * JFR ({@link InjectorEvents}) и, если подключен
+ * {@link #withMetrics(InjectorMetrics)}, передаются получателю метрик.
+ * <p>
+ * Поиск аннотированных полей, загрузка классов реализаций и проверки доступа
+ * выполняются один раз для каждого класса: результат сохраняется в плане
+ * внедрения, который содержит готовые
+ * {@link MethodHandle} конструкторов реализаций и сеттеров полей. Повторное
+ * внедрение в объект того же класса сводится к прямым вызовам этих
+ * дескрипторов. Если для класса на этапе компиляции сгенерирован
+ * {@link GeneratedInjector}, план использует его вместо рефлексии.
+ */
+public class Injector {
+
+  /**
+   * Суффикс ключа файла свойств, задающего область видимости.
+   */
+  private static final String SCOPE_SUFFIX = ".scope";
+
+  /**
+   * Путь к индексам сопоставления на пути классов.
+   */
+  public static final String INDEX_RESOURCE = "META-INF/injection.properties";
+
+  /**
+   * Тип дескриптора конструктора реализации после приведения: аргументы
+   * передаются массивом.
+   */
+  private static final MethodType FACTORY_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+  /**
+   * Тип дескриптора сеттера поля после приведения.
+   */
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+  /**
+   * Файл свойств, содержащий сопоставление интерфейсов и их реализаций.
+   */
+  private final Properties properties;
+
+  /**
+   * Загрузчик классов реализаций.
+   */
+  private final ClassLoader classLoader;
+
+  /**
+   * Привязки интерфейсов к реализациям. Привязка хранит экземпляры
+   * областей singleton и thread, поэтому одна привязка используется всеми
+   * полями данного интерфейса.
+   */
+  private final Map<String, Binding> bindings = new ConcurrentHashMap<>();
+
+  /**
+   * Экземпляры области запроса, открытой в текущем потоке, или {@code null},
+   * если область не открыта.
+   */
+  private final ThreadLocal<Map<Binding, Object>> requestInstances = new ThreadLocal<>();
+
+  /**
+   * Интерфейсы, реализации которых создаются в текущем потоке, в порядке
+   * вложенности; используется для обнаружения циклических зависимостей.
+   */
+  private final ThreadLocal<Deque<String>> creationPath = ThreadLocal.withInitial(ArrayDeque::new);
+
+  /**
+   * Получатель метрик.
+   */
+  private volatile InjectorMetrics metrics = InjectorMetrics.NOOP;
+
+  /**
+   * Источник экземпляров для сгенерированных внедрителей.
+   */
+  private final GeneratedInjector.Context context = new GeneratedContext();
+
+  /**
+   * Планы внедрения, вычисляемые один раз для каждого класса. Планы зависят
+   * от сопоставления в файле свойств, поэтому кэш принадлежит инжектору и
+   * освобождается вместе с ним.
+   */
+  private final Map<Class<?>, InjectionPlan> plans = new ConcurrentHashMap<>();
+
+
+  /**
+   * Создает инжектор, используя путь к файлу свойств по умолчанию "injection.properties".
+   *
+   * @throws IOException при ошибке чтения файла свойств
+   */
+  public Injector() throws IOException {
+    this("injection.properties");
+  }
+
+  /**
+   * Создает инжектор, используя указанный путь к файлу свойств.
+   *
+   * @param propertiesPath путь к файлу свойств
+   * @throws IOException при ошибке чтения файла свойств
+   */
+  public Injector(String propertiesPath) throws IOException {
+    this.properties = new Properties();
+    this.classLoader = Injector.class.getClassLoader();
+    try (InputStream is = new FileInputStream(propertiesPath)) {
+      properties.load(is);
+    }
+  }
+
+  /**
+   * Создает инжектор с готовым сопоставлением интерфейсов и реализаций.
+   *
+   * @param properties сопоставление в формате файла свойств; копируется
+   */
+  public Injector(Properties properties) {
+    this(properties, Injector.class.getClassLoader());
+  }
+
+  /**
+   * Создает инжектор с готовым сопоставлением и загрузчиком классов
+   * реализаций.
+   *
+   * @param properties  сопоставление в формате файла свойств; копируется
+   * @param classLoader загрузчик классов реализаций
+   */
+  private Injector(Properties properties, ClassLoader classLoader) {
+    this.properties = new Properties();
+    this.properties.putAll(properties);
+    this.classLoader = classLoader;
+  }
+
+  /**
+   * Создает инжектор по индексам {@value #INDEX_RESOURCE}, найденным на пути
+   * классов загрузчика этого класса.
+   *
+   * @return инжектор
+   * @throws IOException           при ошибке чтения индекса
+   * @throws IllegalStateException если индексы задают разные значения для
+   *                               одного ключа
+   */
+  public static Injector fromClasspath() throws IOException {
+    return fromClasspath(Injector.class.getClassLoader());
+  }
+
+  /**
+   * Создает инжектор по всем индексам {@value #INDEX_RESOURCE}, найденным
+   * загрузчиком классов. Индексы объединяются; одинаковые значения ключа в
+   * разных индексах допускаются, разные считаются ошибкой конфигурации.
+   *
+   * @param classLoader загрузчик, в котором ищутся индексы и классы реализаций
+   * @return инжектор
+   * @throws IOException           при ошибке чтения индекса
+   * @throws IllegalStateException если индексы задают разные значения для
+   *                               одного ключа
+   */
+  public static Injector fromClasspath(ClassLoader classLoader) throws IOException {
+    Properties merged = new Properties();
+    Map<String, URL> sources = new HashMap<>();
+    Enumeration<URL> indexes = classLoader.getResources(INDEX_RESOURCE);
+    while (indexes.hasMoreElements()) {
+      URL index = indexes.nextElement();
+      Properties properties = new Properties();
+      try (InputStream is = index.openStream()) {
+        properties.load(is);
+      }
+      for (String key : properties.stringPropertyNames()) {
+        String value = properties.getProperty(key).trim();
+        String previous = merged.getProperty(key);
+        if (previous != null && !previous.equals(value)) {
+          throw new IllegalStateException("Conflicting injection mapping for " + key + ": " + previous
+              + " (" + sources.get(key) + ") and " + value + " (" + index + ")");
+        }
+        merged.setProperty(key, value);
+        sources.put(key, index);
+      }
+    }
+    return new Injector(merged, classLoader);
+  }
+
+  /**
+   * Внедряет зависимости в переданный объект.
+   * Метод ищет все поля, помеченные аннотацией {@link AutoInjectable},
+   * и инициализирует их экземплярами классов, указанных в файле свойств,
+   * с учетом области видимости каждого поля.
+   *
+   * @param <T>    тип объекта
+   * @param object объект, в который внедряются зависимости
+   * @return объект с внедренными зависимостями
+   * @throws Exception при ошибке внедрения:
+   *                   - если не найдена реализация для интерфейса
+   *                   - если возникла ошибка создания экземпляра класса
+   *                   - если возникла ошибка доступа к полю
+   *                   - если поле с областью запроса внедряется вне
+   *                   {@link #openRequestScope()}
+   */
+  public <T> T inject(T object) throws Exception {
+    InjectorEvents.Injection event = new InjectorEvents.Injection();
+    event.begin();
+    InjectorMetrics m = metrics;
+    long start = m == InjectorMetrics.NOOP ? 0 : System.nanoTime();
+
+    injectFields(object);
+
+    if (m != InjectorMetrics.NOOP) {
+      m.injected(object.getClass(), System.nanoTime() - start);
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.beanType = object.getClass();
+      event.commit();
+    }
+    return object;
+  }
+
+  /**
+   * Подключает получатель метрик. Без него инжектор не измеряет время и
+   * публикует только события JFR.
+   *
+   * @param metrics получатель метрик или {@link InjectorMetrics#NOOP}
+   * @return этот инжектор
+   */
+  public Injector withMetrics(InjectorMetrics metrics) {
+    this.metrics = metrics == null ? InjectorMetrics.NOOP : metrics;
+    return this;
+  }
+
+  /**
+   * Заранее создает singleton-экземпляры всех привязок, для которых в файле
+   * свойств указана область {@code singleton}. Привязки создаются на
+   * переданном исполнителе в порядке графа зависимостей: экземпляр создается
+   * после всех singleton-экземпляров, от которых он зависит (в том числе через
+   * привязки других областей), а независимые привязки создаются
+   * параллельно. Метод ждет завершения и пробрасывает первую ошибку.
+   *
+   * @param executor исполнитель, на котором создаются экземпляры
+   * @throws Exception при ошибке разрешения привязки или создания экземпляра,
+   *                   а также при циклической зависимости
+   */
+  public void startEager(Executor executor) throws Exception {
+    Map<String, CompletableFuture<Void>> scheduled = new HashMap<>();
+    List<CompletableFuture<Void>> singletons = new ArrayList<>();
+    try {
+      for (String key : properties.stringPropertyNames()) {
+        if (key.endsWith(SCOPE_SUFFIX)) {
+          String interfaceName = key.substring(0, key.length() - SCOPE_SUFFIX.length());
+          if (binding(interfaceName).configuredScope == Scope.SINGLETON) {
+            singletons.add(schedule(interfaceName, scheduled, new ArrayDeque<>(), executor));
+          }
+        }
+      }
+    } catch (PlanException e) {
+      throw e.getCause();
+    }
+
+    try {
+      CompletableFuture.allOf(singletons.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof PlanException) {
+        throw ((PlanException) cause).getCause();
+      }
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Планирует создание singleton-экземпляра привязки после ее зависимостей.
+   * Для привязок других областей задача только ждет их зависимостей.
+   *
+   * @param interfaceName имя интерфейса
+   * @param scheduled     уже запланированные задачи по именам интерфейсов
+   * @param path          цепочка интерфейсов от корня обхода
+   * @param executor      исполнитель
+   * @return задача, завершающаяся после создания экземпляра
+   * @throws IllegalStateException при циклической зависимости
+   */
+  private CompletableFuture<Void> schedule(String interfaceName, Map<String, CompletableFuture<Void>> scheduled,
+      Deque<String> path, Executor executor) {
+    CompletableFuture<Void> future = scheduled.get(interfaceName);
+    if (future != null) {
+      return future;
+    }
+    if (path.contains(interfaceName)) {
+      throw new IllegalStateException("Dependency cycle: " + cycle(path, interfaceName));
+    }
+
+    path.addLast(interfaceName);
+    Binding binding = binding(interfaceName);
+    List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+    for (String dependency : binding.dependencies()) {
+      dependencies.add(schedule(dependency, scheduled, path, executor));
+    }
+    path.removeLast();
+
+    future = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]));
+    if (binding.configuredScope == Scope.SINGLETON) {
+      future = future.thenRunAsync(() -> {
+        try {
+          binding.singleton();
+        } catch (RuntimeException | Error e) {
+          throw e;
+        } catch (Throwable t) {
+          throw new CompletionException(t);
+        }
+      }, executor);
+    }
+    scheduled.put(interfaceName, future);
+    return future;
+  }
+
+  /**
+   * Форматирует цепочку циклической зависимости.
+   *
+   * @param path          цепочка интерфейсов
+   * @param interfaceName интерфейс, замыкающий цикл
+   * @return цепочка вида {@code A -> B -> A}
+   */
+  private static String cycle(Deque<String> path, String interfaceName) {
+    StringBuilder sb = new StringBuilder();
+    boolean inCycle = false;
+    for (String name : path) {
+      inCycle |= name.equals(interfaceName);
+      if (inCycle) {
+        sb.append(name).append(" -> ");
+      }
+    }
+    return sb.append(interfaceName).toString();
+  }
+
+  /**
+   * Внедряет зависимости в поля объекта по плану его класса.
+   *
+   * @param object объект
+   * @throws Exception при ошибке внедрения
+   */
+  private void injectFields(Object object) throws Exception {
+    InjectionPlan plan;
+    try {
+      plan = plan(object.getClass());
+      metrics.planRequested(object.getClass());
+    } catch (PlanException e) {
+      throw e.getCause();
+    }
+
+    if (plan.generated != null) {
+      plan.generated.inject(object, context);
+      return;
+    }
+
+    try {
+      for (FieldInjection injection : plan.injections) {
+        injection.setter.invokeExact(object,
+            value(injection.binding, injection.scope, injection.lazy, injection.proxyInterface));
+      }
+    } catch (Exception | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  /**
+   * Открывает в текущем потоке область запроса: пока она открыта, поля с
+   * областью {@link Scope#REQUEST} получают один и тот же экземпляр
+   * реализации. Области могут быть вложенными; закрытие вложенной области
+   * восстанавливает внешнюю.
+   *
+   * <pre>
+   * try (Injector.RequestScope scope = injector.openRequestScope()) {
+   *   injector.inject(handler);
+   * }
+   * </pre>
+   *
+   * @return открытая область запроса
+   */
+  public RequestScope openRequestScope() {
+    RequestScope scope = new RequestScope(requestInstances.get());
+    requestInstances.set(new HashMap<>());
+    return scope;
+  }
+
+  /**
+   * Проверяет и заранее разрешает все привязки сопоставления: загружает и
+   * инициализирует классы интерфейсов и реализаций, проверяет, что
+   * реализация совместима с интерфейсом и имеет подходящий конструктор, и
+   * проверяет область видимости. Вызывается один раз при запуске, чтобы
+   * ошибки конфигурации проявились сразу, а загрузка классов не происходила
+   * при первом внедрении.
+   *
+   * @return время разрешения каждой привязки
+   * @throws IllegalStateException со списком всех некорректных привязок
+   */
+  public PreloadReport preload() {
+    Map<String, Long> timings = new LinkedHashMap<>();
+    List<String> errors = new ArrayList<>();
+    for (String interfaceName : new TreeSet<>(properties.stringPropertyNames())) {
+      if (interfaceName.endsWith(SCOPE_SUFFIX)) {
+        continue;
+      }
+      long start = System.nanoTime();
+      try {
+        Class<?> interfaceClass = Class.forName(interfaceName, true, classLoader);
+        Binding binding = binding(interfaceName);
+        if (!interfaceClass.isAssignableFrom(binding.implementationClass)) {
+          throw new IllegalStateException(binding.implementationClass.getName() + " is not a " + interfaceName);
+        }
+      } catch (ClassNotFoundException e) {
+        errors.add(interfaceName + ": interface not found");
+        continue;
+      } catch (PlanException e) {
+        errors.add(interfaceName + ": " + e.getCause());
+        continue;
+      } catch (RuntimeException | LinkageError e) {
+        errors.add(interfaceName + ": " + e.getMessage());
+        continue;
+      }
+      timings.put(interfaceName, System.nanoTime() - start);
+    }
+    if (!errors.isEmpty()) {
+      throw new IllegalStateException("Invalid injection bindings:" + System.lineSeparator() + "  "
+          + String.join(System.lineSeparator() + "  ", errors));
+    }
+    return new PreloadReport(timings);
+  }
+
+  /**
+   * Проверяет, использует ли инжектор для класса внедритель, сгенерированный
+   * на этапе компиляции.
+   *
+   * @param type класс бина
+   * @return {@code true}, если используется {@link GeneratedInjector}
+   * @throws Exception при ошибке построения плана внедрения
+   */
+  boolean isGenerated(Class<?> type) throws Exception {
+    try {
+      return plan(type).generated != null;
+    } catch (PlanException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Возвращает значение для поля: экземпляр реализации или, для отложенного
+   * внедрения, прокси либо поставщик.
+   *
+   * @param binding        привязка интерфейса
+   * @param scope          область видимости
+   * @param lazy           признак отложенного создания
+   * @param proxyInterface интерфейс прокси или {@code null} для поставщика
+   * @return значение поля
+   * @throws Throwable при ошибке создания экземпляра
+   */
+  private Object value(Binding binding, Scope scope, boolean lazy, Class<?> proxyInterface) throws Throwable {
+    if (!lazy) {
+      return instance(binding, scope);
+    }
+    LazyReference reference = new LazyReference(binding, scope);
+    if (proxyInterface == null) {
+      return reference;
+    }
+    return Proxy.newProxyInstance(proxyInterface.getClassLoader(), new Class<?>[] { proxyInterface }, reference);
+  }
+
+  /**
+   * Возвращает экземпляр реализации в заданной области видимости.
+   *
+   * @param binding привязка интерфейса
+   * @param scope   область видимости
+   * @return экземпляр реализации
+   * @throws Throwable при ошибке создания экземпляра
+   */
+  private Object instance(Binding binding, Scope scope) throws Throwable {
+    switch (scope) {
+      case SINGLETON:
+        return binding.singleton();
+      case THREAD:
+        return binding.perThread();
+      case REQUEST:
+        Map<Binding, Object> instances = requestInstances.get();
+        if (instances == null) {
+          throw new IllegalStateException("No request scope is open for " + binding.interfaceName);
+        }
+        Object instance = instances.get(binding);
+        if (instance == null) {
+          instance = binding.create();
+          instances.put(binding, instance);
+        }
+        return instance;
+      default:
+        return binding.create();
+    }
+  }
+
+  /**
+   * Создает новый экземпляр реализации: разрешает параметры конструктора,
+   * вызывает его и внедряет зависимости в поля созданного объекта.
+   *
+   * @param binding привязка интерфейса
+   * @return экземпляр
+   * @throws Throwable при ошибке создания экземпляра
+   * @throws IllegalStateException при циклической зависимости
+   */
+  private Object create(Binding binding) throws Throwable {
+    Deque<String> path = creationPath.get();
+    if (path.contains(binding.interfaceName)) {
+      throw new IllegalStateException("Dependency cycle: " + cycle(path, binding.interfaceName));
+    }
+
+    path.addLast(binding.interfaceName);
+    InjectorEvents.Creation event = new InjectorEvents.Creation();
+    event.begin();
+    InjectorMetrics m = metrics;
+    long start = m == InjectorMetrics.NOOP ? 0 : System.nanoTime();
+    try {
+      Object[] arguments = new Object[binding.parameterTypes.length];
+      for (int i = 0; i < arguments.length; i++) {
+        Binding parameter;
+        try {
+          parameter = binding(binding.parameterTypes[i].getName());
+        } catch (PlanException e) {
+          throw e.getCause();
+        }
+        arguments[i] = instance(parameter, parameter.configuredScope);
+      }
+      Object instance = (Object) binding.factory.invokeExact(arguments);
+      injectFields(instance);
+
+      if (m != InjectorMetrics.NOOP) {
+        m.created(binding.interfaceName, binding.implementationClass, System.nanoTime() - start);
+      }
+      event.end();
+      if (event.shouldCommit()) {
+        event.interfaceName = binding.interfaceName;
+        event.implementationClass = binding.implementationClass;
+        event.commit();
+      }
+      return instance;
+    } finally {
+      path.removeLast();
+    }
+  }
+
+  /**
+   * Возвращает план внедрения класса, строя его при первом обращении.
+   *
+   * @param type класс бина
+   * @return план внедрения
+   * @throws PlanException при ошибке рефлексии
+   */
+  private InjectionPlan plan(Class<?> type) {
+    InjectionPlan plan = plans.get(type);
+    if (plan != null) {
+      return plan;
+    }
+
+    InjectorEvents.Plan event = new InjectorEvents.Plan();
+    event.begin();
+    InjectorMetrics m = metrics;
+    long start = m == InjectorMetrics.NOOP ? 0 : System.nanoTime();
+    plan = createPlan(type);
+    if (m != InjectorMetrics.NOOP) {
+      m.planCreated(type, plan.generated != null, System.nanoTime() - start);
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.beanType = type;
+      event.generated = plan.generated != null;
+      event.commit();
+    }
+
+    // При одновременном построении остается первый план, как и у привязок
+    InjectionPlan existing = plans.putIfAbsent(type, plan);
+    return existing != null ? existing : plan;
+  }
+
+  /**
+   * Строит план внедрения для класса: находит аннотированные поля, определяет
+   * их области видимости и создает дескрипторы сеттеров полей.
+   *
+   * @param type класс, в объекты которого внедряются зависимости
+   * @return план внедрения
+   * @throws IllegalStateException если не найдена реализация для интерфейса,
+   *                               область видимости указана неверно или
+   *                               аннотированное поле статическое или final
+   * @throws PlanException         при ошибке загрузки класса или доступа
+   */
+  private InjectionPlan createPlan(Class<?> type) {
+    GeneratedInjector<Object> generated = generatedInjector(type);
+    if (generated != null) {
+      return new InjectionPlan(new FieldInjection[0], generated);
+    }
+
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    List<FieldInjection> injections = new ArrayList<>();
+
+    for (Field field : type.getDeclaredFields()) {
+      AutoInjectable annotation = field.getAnnotation(AutoInjectable.class);
+      if (annotation != null) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)) {
+          throw new IllegalStateException("Static or final field cannot be injected: " + field);
+        }
+        field.setAccessible(true);
+
+        Class<?> fieldType = field.getType();
+        Class<?> proxyInterface = null;
+        if (annotation.lazy()) {
+          if (fieldType == Supplier.class) {
+            fieldType = supplierArgument(field);
+          } else if (fieldType.isInterface()) {
+            proxyInterface = fieldType;
+          } else {
+            throw new IllegalStateException(
+                "Lazy injection requires an interface or Supplier field: " + field);
+          }
+        }
+
+        String interfaceName = fieldType.getName();
+        Binding binding = binding(interfaceName);
+        Scope scope = binding.scope(annotation.scope());
+
+        try {
+          MethodHandle setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+          injections.add(new FieldInjection(binding, scope, setter, annotation.lazy(), proxyInterface));
+        } catch (IllegalAccessException e) {
+          throw new PlanException(e);
+        }
+      }
+    }
+
+    return new InjectionPlan(injections.toArray(new FieldInjection[0]), null);
+  }
+
+  /**
+   * Загружает внедритель, сгенерированный для класса процессором аннотаций.
+   *
+   * @param type класс бина
+   * @return внедритель или {@code null}, если он не сгенерирован
+   * @throws PlanException при ошибке создания внедрителя
+   */
+  @SuppressWarnings("unchecked")
+  private static GeneratedInjector<Object> generatedInjector(Class<?> type) {
+    Class<?> generatedClass;
+    try {
+      generatedClass = Class.forName(type.getName() + GeneratedInjector.SUFFIX, true, type.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+    if (!GeneratedInjector.class.isAssignableFrom(generatedClass)) {
+      return null;
+    }
+    try {
+      return (GeneratedInjector<Object>) generatedClass.getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new PlanException(e);
+    }
+  }
+
+  /**
+   * Определяет тип, который поставляет поле {@code Supplier<X>}.
+   *
+   * @param field поле типа {@link Supplier}
+   * @return класс {@code X}
+   * @throws IllegalStateException если аргумент типа не является классом
+   */
+  private static Class<?> supplierArgument(Field field) {
+    Type type = field.getGenericType();
+    if (type instanceof ParameterizedType) {
+      Type argument = ((ParameterizedType) type).getActualTypeArguments()[0];
+      if (argument instanceof Class) {
+        return (Class<?>) argument;
+      }
+    }
+    throw new IllegalStateException("Lazy Supplier field must declare a concrete type argument: " + field);
+  }
+
+  /**
+   * Возвращает привязку интерфейса, создавая ее при первом обращении.
+   *
+   * @param interfaceName имя интерфейса
+   * @return привязка
+   * @throws IllegalStateException если не найдена реализация для интерфейса
+   * @throws PlanException         при ошибке загрузки класса или доступа
+   */
+  private Binding binding(String interfaceName) {
+    Binding binding = bindings.get(interfaceName);
+    if (binding != null) {
+      return binding;
+    }
+
+    String implementationClassName = properties.getProperty(interfaceName);
+    if (implementationClassName == null) {
+      throw new IllegalStateException("No implementation found for " + interfaceName);
+    }
+
+    try {
+      Class<?> implementationClass = Class.forName(implementationClassName.trim(), true, classLoader);
+      Constructor<?> constructor = injectionConstructor(implementationClass);
+      constructor.setAccessible(true);
+      MethodHandle factory = MethodHandles.lookup()
+          .unreflectConstructor(constructor)
+          .asSpreader(Object[].class, constructor.getParameterCount())
+          .asType(FACTORY_TYPE);
+      binding = new Binding(interfaceName, implementationClass, constructor.getParameterTypes(), factory,
+          configuredScope(interfaceName));
+    } catch (ReflectiveOperationException e) {
+      throw new PlanException(e);
+    }
+
+    // При одновременном построении планов остается первая привязка, чтобы
+    // singleton-экземпляр был единственным
+    Binding existing = bindings.putIfAbsent(interfaceName, binding);
+    return existing != null ? existing : binding;
+  }
+
+  /**
+   * Выбирает конструктор реализации: конструктор с аннотацией
+   * {@link AutoInjectable} или, если его нет, конструктор без параметров.
+   *
+   * @param implementationClass класс реализации
+   * @return конструктор
+   * @throws NoSuchMethodException если подходящего конструктора нет
+   * @throws IllegalStateException если аннотированных конструкторов несколько
+   */
+  private static Constructor<?> injectionConstructor(Class<?> implementationClass) throws NoSuchMethodException {
+    Constructor<?> selected = null;
+    for (Constructor<?> constructor : implementationClass.getDeclaredConstructors()) {
+      if (constructor.isAnnotationPresent(AutoInjectable.class)) {
+        if (selected != null) {
+          throw new IllegalStateException(
+              "Multiple @AutoInjectable constructors in " + implementationClass.getName());
+        }
+        selected = constructor;
+      }
+    }
+    return selected != null ? selected : implementationClass.getDeclaredConstructor();
+  }
+
+  /**
+   * Возвращает область видимости интерфейса из файла свойств.
+   *
+   * @param interfaceName имя интерфейса
+   * @return область видимости или {@link Scope#PROTOTYPE}, если она не указана
+   * @throws IllegalStateException если область видимости указана неверно
+   */
+  private Scope configuredScope(String interfaceName) {
+    String value = properties.getProperty(interfaceName + SCOPE_SUFFIX);
+    if (value == null) {
+      return Scope.PROTOTYPE;
+    }
+    try {
+      Scope scope = Scope.valueOf(value.trim().toUpperCase(Locale.ROOT));
+      if (scope != Scope.DEFAULT) {
+        return scope;
+      }
+    } catch (IllegalArgumentException e) {
+      // Сообщение об ошибке формируется ниже
+    }
+    throw new IllegalStateException("Unknown scope '" + value + "' for " + interfaceName);
+  }
+
+  /**
+   * Отчет о предварительном разрешении привязок, см. {@link #preload()}.
+   */
+  public static final class PreloadReport {
+    /**
+     * Время разрешения по именам интерфейсов в наносекундах.
+     */
+    private final Map<String, Long> timings;
+
+    /**
+     * Создает отчет.
+     *
+     * @param timings время разрешения по именам интерфейсов
+     */
+    PreloadReport(Map<String, Long> timings) {
+      this.timings = Map.copyOf(timings);
+    }
+
+    /**
+     * Возвращает время разрешения каждой привязки.
+     *
+     * @return время в наносекундах по именам интерфейсов
+     */
+    public Map<String, Long> getTimings() {
+      return timings;
+    }
+
+    /**
+     * Возвращает суммарное время разрешения.
+     *
+     * @return время в наносекундах
+     */
+    public long getTotalNanos() {
+      long total = 0;
+      for (long nanos : timings.values()) {
+        total += nanos;
+      }
+      return total;
+    }
+
+    /**
+     * Форматирует отчет в виде таблицы, самые медленные привязки первыми.
+     *
+     * @return текст таблицы
+     */
+    public String toTable() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(String.format(Locale.ROOT, "%-70s %12s%n", "Привязка", "время, мкс"));
+      timings.entrySet().stream()
+          .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+          .forEach(entry -> sb.append(String.format(Locale.ROOT, "%-70s %12.1f%n",
+              entry.getKey(), entry.getValue() / 1000.0)));
+      sb.append(String.format(Locale.ROOT, "%-70s %12.1f%n", "Всего", getTotalNanos() / 1000.0));
+      return sb.toString();
+    }
+  }
+
+  /**
+   * Область запроса, открытая методом {@link #openRequestScope()}. Закрытие
+   * освобождает экземпляры области и восстанавливает внешнюю область.
+   */
+  public final class RequestScope implements AutoCloseable {
+    /**
+     * Экземпляры внешней области или {@code null}.
+     */
+    private final Map<Binding, Object> outer;
+
+    /**
+     * Создает область запроса.
+     *
+     * @param outer экземпляры внешней области или {@code null}
+     */
+    private RequestScope(Map<Binding, Object> outer) {
+      this.outer = outer;
+    }
+
+    /**
+     * Закрывает область запроса в текущем потоке.
+     */
+    @Override
+    public void close() {
+      if (outer == null) {
+        requestInstances.remove();
+      } else {
+        requestInstances.set(outer);
+      }
+    }
+  }
+
+  /**
+   * Источник экземпляров для сгенерированных внедрителей: разрешает привязки
+   * и области видимости так же, как план внедрения через рефлексию.
+   */
+  private final class GeneratedContext implements GeneratedInjector.Context {
+
+    @Override
+    public <X> X instance(Class<X> type, Scope scope) throws Exception {
+      return type.cast(resolve(type, scope, false, null));
+    }
+
+    @Override
+    public <X> X lazyProxy(Class<X> type, Scope scope) throws Exception {
+      return type.cast(resolve(type, scope, true, type));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <X> Supplier<X> lazySupplier(Class<X> type, Scope scope) throws Exception {
+      return (Supplier<X>) resolve(type, scope, true, null);
+    }
+
+    /**
+     * Разрешает привязку интерфейса и возвращает значение для поля.
+     *
+     * @param type           интерфейс
+     * @param scope          область видимости из аннотации
+     * @param lazy           признак отложенного создания
+     * @param proxyInterface интерфейс прокси или {@code null}
+     * @return значение поля
+     * @throws Exception при ошибке разрешения привязки или создания экземпляра
+     */
+    private Object resolve(Class<?> type, Scope scope, boolean lazy, Class<?> proxyInterface) throws Exception {
+      Binding binding;
+      try {
+        binding = binding(type.getName());
+      } catch (PlanException e) {
+        throw e.getCause();
+      }
+      try {
+        return value(binding, binding.scope(scope), lazy, proxyInterface);
+      } catch (Exception | Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new IllegalStateException(t);
+      }
+    }
+  }
+
+  /**
+   * Отложенная ссылка на реализацию для полей с {@link AutoInjectable#lazy()}.
+   * Реализация создается при первом вызове {@link #get()} или метода прокси
+   * (блокировка с двойной проверкой) и затем переиспользуется.
+   */
+  private final class LazyReference implements Supplier<Object>, InvocationHandler {
+    /**
+     * Привязка интерфейса.
+     */
+    private final Binding binding;
+
+    /**
+     * Область видимости, в которой создается реализация.
+     */
+    private final Scope scope;
+
+    /**
+     * Реализация или {@code null}, если она еще не создана.
+     */
+    private volatile Object target;
+
+    /**
+     * Создает отложенную ссылку.
+     *
+     * @param binding привязка интерфейса
+     * @param scope   область видимости
+     */
+    LazyReference(Binding binding, Scope scope) {
+      this.binding = binding;
+      this.scope = scope;
+    }
+
+    /**
+     * Возвращает реализацию, создавая ее при первом обращении.
+     *
+     * @return реализация
+     * @throws IllegalStateException если при создании возникло проверяемое
+     *                               исключение
+     */
+    @Override
+    public Object get() {
+      Object instance = target;
+      if (instance == null) {
+        synchronized (this) {
+          instance = target;
+          if (instance == null) {
+            try {
+              instance = instance(binding, scope);
+            } catch (RuntimeException | Error e) {
+              throw e;
+            } catch (Throwable t) {
+              throw new IllegalStateException("Failed to create " + binding.interfaceName, t);
+            }
+            target = instance;
+          }
+        }
+      }
+      return instance;
+    }
+
+    /**
+     * Перенаправляет вызов метода прокси реализации. Методы
+     * {@code equals} и {@code hashCode} сравнивают сами прокси и не создают
+     * реализацию.
+     */
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if (method.getDeclaringClass() == Object.class) {
+        switch (method.getName()) {
+          case "equals":
+            return proxy == args[0];
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          default:
+            break;
+        }
+      }
+      try {
+        return method.invoke(get(), args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+  }
+
+  /**
+   * Привязка интерфейса к реализации: конструктор реализации и экземпляры
+   * областей singleton и thread.
+   */
+  private final class Binding {
+    /**
+     * Имя интерфейса.
+     */
+    private final String interfaceName;
+
+    /**
+     * Класс реализации.
+     */
+    private final Class<?> implementationClass;
+
+    /**
+     * Типы параметров конструктора реализации.
+     */
+    private final Class<?>[] parameterTypes;
+
+    /**
+     * Конструктор реализации, приведенный к типу {@code (Object[])Object}.
+     */
+    private final MethodHandle factory;
+
+    /**
+     * Область видимости из файла свойств.
+     */
+    private final Scope configuredScope;
+
+    /**
+     * Экземпляры области thread.
+     */
+    private final ThreadLocal<Object> threadInstance = new ThreadLocal<>();
+
+    /**
+     * Экземпляр области singleton или {@code null}, если он еще не создан.
+     */
+    private volatile Object singletonInstance;
+
+    /**
+     * Создает привязку.
+     *
+     * @param interfaceName       имя интерфейса
+     * @param implementationClass класс реализации
+     * @param parameterTypes      типы параметров конструктора реализации
+     * @param factory             конструктор реализации
+     * @param configuredScope     область видимости из файла свойств
+     */
+    Binding(String interfaceName, Class<?> implementationClass, Class<?>[] parameterTypes, MethodHandle factory,
+        Scope configuredScope) {
+      this.interfaceName = interfaceName;
+      this.implementationClass = implementationClass;
+      this.parameterTypes = parameterTypes;
+      this.factory = factory;
+      this.configuredScope = configuredScope;
+    }
+
+    /**
+     * Возвращает интерфейсы, экземпляры которых нужны для создания
+     * реализации: параметры конструктора и поля {@link AutoInjectable} без
+     * отложенного создания.
+     *
+     * @return имена интерфейсов
+     */
+    Set<String> dependencies() {
+      Set<String> dependencies = new LinkedHashSet<>();
+      for (Class<?> parameterType : parameterTypes) {
+        dependencies.add(parameterType.getName());
+      }
+      for (Field field : implementationClass.getDeclaredFields()) {
+        AutoInjectable annotation = field.getAnnotation(AutoInjectable.class);
+        if (annotation != null && !annotation.lazy()) {
+          dependencies.add(field.getType().getName());
+        }
+      }
+      return dependencies;
+    }
+
+    /**
+     * Определяет действующую область видимости поля.
+     *
+     * @param requested область из аннотации поля
+     * @return область из аннотации или, если она не задана, из файла свойств
+     */
+    Scope scope(Scope requested) {
+      return requested != Scope.DEFAULT ? requested : configuredScope;
+    }
+
+    /**
+     * Создает новый экземпляр реализации.
+     *
+     * @return экземпляр
+     * @throws Throwable при ошибке в конструкторе
+     */
+    Object create() throws Throwable {
+      return Injector.this.create(this);
+    }
+
+    /**
+     * Возвращает единственный экземпляр, создавая его при первом обращении
+     * (блокировка с двойной проверкой).
+     *
+     * @return экземпляр
+     * @throws Throwable при ошибке в конструкторе
+     */
+    Object singleton() throws Throwable {
+      Object instance = singletonInstance;
+      if (instance == null) {
+        synchronized (this) {
+          instance = singletonInstance;
+          if (instance == null) {
+            instance = create();
+            singletonInstance = instance;
+          }
+        }
+      }
+      return instance;
+    }
+
+    /**
+     * Возвращает экземпляр текущего потока, создавая его при первом
+     * обращении.
+     *
+     * @return экземпляр
+     * @throws Throwable при ошибке в конструкторе
+     */
+    Object perThread() throws Throwable {
+      Object instance = threadInstance.get();
+      if (instance == null) {
+        instance = create();
+        threadInstance.set(instance);
+      }
+      return instance;
+    }
+  }
+
+  /**
+   * План внедрения зависимостей в объекты одного класса.
+   */
+  private static final class InjectionPlan {
+    /**
+     * Внедрения в поля в порядке их объявления.
+     */
+    private final FieldInjection[] injections;
+
+    /**
+     * Сгенерированный внедритель или {@code null}, если используется
+     * рефлексия.
+     */
+    private final GeneratedInjector<Object> generated;
+
+    /**
+     * Создает план внедрения.
+     *
+     * @param injections внедрения в поля
+     * @param generated  сгенерированный внедритель или {@code null}
+     */
+    InjectionPlan(FieldInjection[] injections, GeneratedInjector<Object> generated) {
+      this.injections = injections;
+      this.generated = generated;
+    }
+  }
+
+  /**
+   * Внедрение в одно поле: привязка интерфейса, область видимости, сеттер
+   * поля и способ отложенного создания.
+   */
+  private static final class FieldInjection {
+    /**
+     * Привязка интерфейса поля.
+     */
+    private final Binding binding;
+
+    /**
+     * Область видимости внедряемого экземпляра.
+     */
+    private final Scope scope;
+
+    /**
+     * Сеттер поля, приведенный к типу {@code (Object, Object)void}.
+     */
+    private final MethodHandle setter;
+
+    /**
+     * Признак отложенного создания.
+     */
+    private final boolean lazy;
+
+    /**
+     * Интерфейс прокси для отложенного создания или {@code null}, если в
+     * поле внедряется {@link Supplier}.
+     */
+    private final Class<?> proxyInterface;
+
+    /**
+     * Создает внедрение в поле.
+     *
+     * @param binding        привязка интерфейса
+     * @param scope          область видимости
+     * @param setter         сеттер поля
+     * @param lazy           признак отложенного создания
+     * @param proxyInterface интерфейс прокси или {@code null}
+     */
+    FieldInjection(Binding binding, Scope scope, MethodHandle setter, boolean lazy, Class<?> proxyInterface) {
+      this.binding = binding;
+      this.scope = scope;
+      this.setter = setter;
+      this.lazy = lazy;
+      this.proxyInterface = proxyInterface;
+    }
+  }
+
+  /**
+   * Непроверяемая обертка для ошибок рефлексии при построении плана;
+   * исходное исключение пробрасывается из {@link #inject(Object)}.
+   */
+  private static final class PlanException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Создает обертку.
+     *
+     * @param cause исходное исключение
+     */
+    PlanException(ReflectiveOperationException cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized ReflectiveOperationException getCause() {
+      return (ReflectiveOperationException) super.getCause();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package app.gpuslave.first;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * События JFR, которые публикует {@link Injector}. Пока запись JFR не
+ * включена, события не записываются и почти ничего не стоят.
+ * <pre>
+ * java -XX:StartFlightRecording:filename=injector.jfr ...
+ * jfr print --categories Injector injector.jfr
+ * </pre>
+ */
+final class InjectorEvents {
+
+  /**
+   * Закрытый конструктор: класс только группирует события.
+   */
+  private InjectorEvents() {
+  }
+
+  /**
+   * Внедрение зависимостей в объект.
+   */
+  @Name("app.gpuslave.Injection")
+  @Label("Injection")
+  @Category({ "gpuslave", "Injector" })
+  @Description("Injector.inject call")
+  static final class Injection extends Event {
+    /**
+     * Класс объекта.
+     */
+    @Label("Bean Type")
+    Class<?> beanType;
+  }
+
+  /**
+   * Создание экземпляра реализации.
+   */
+  @Name("app.gpuslave.InjectionCreation")
+  @Label("Implementation Creation")
+  @Category({ "gpuslave", "Injector" })
+  @Description("Construction of an implementation, including its own dependencies")
+  static final class Creation extends Event {
+    /**
+     * Имя интерфейса привязки.
+     */
+    @Label("Interface")
+    String interfaceName;
+
+    /**
+     * Класс реализации.
+     */
+    @Label("Implementation")
+    Class<?> implementationClass;
+  }
+
+  /**
+   * Построение плана внедрения для класса.
+   */
+  @Name("app.gpuslave.InjectionPlan")
+  @Label("Injection Plan")
+  @Category({ "gpuslave", "Injector" })
+  @Description("Injection plan built on a plan cache miss")
+  static final class Plan extends Event {
+    /**
+     * Класс, для которого построен план.
+     */
+    @Label("Bean Type")
+    Class<?> beanType;
+
+    /**
+     * Признак использования сгенерированного внедрителя.
+     */
+    @Label("Generated")
+    boolean generated;
+  }
+}
@@ -0,0 +1,67 @@
+package app.gpuslave.first;
+
+/**
+ * Получатель метрик {@link Injector}: количество внедрений по классам бинов,
+ * время создания реализаций и обращения к кэшу планов внедрения.
+ * Подключается методом {@link Injector#withMetrics(InjectorMetrics)}; все
+ * методы по умолчанию ничего не делают, поэтому реализация может
+ * переопределить только нужные. Методы вызываются из потоков, выполняющих
+ * внедрение, и должны быть потокобезопасными.
+ * <p>
+ * Те же сведения публикуются событиями JFR (категория
+ * {@code gpuslave / Injector}), которые записываются без подключения метрик.
+ *
+ * @see SimpleInjectorMetrics
+ */
+public interface InjectorMetrics {
+
+  /**
+   * Получатель, не собирающий метрики. Используется по умолчанию; с ним
+   * инжектор не измеряет время.
+   */
+  InjectorMetrics NOOP = new InjectorMetrics() {
+  };
+
+  /**
+   * Вызывается после внедрения зависимостей в объект методом
+   * {@link Injector#inject(Object)}.
+   *
+   * @param beanType класс объекта
+   * @param nanos    время внедрения в наносекундах, включая создание
+   *                 реализаций
+   */
+  default void injected(Class<?> beanType, long nanos) {
+  }
+
+  /**
+   * Вызывается после создания экземпляра реализации.
+   *
+   * @param interfaceName       имя интерфейса привязки
+   * @param implementationClass класс реализации
+   * @param nanos               время вызова конструктора и внедрения в
+   *                            поля созданного объекта, включая создание его
+   *                            зависимостей, в наносекундах
+   */
+  default void created(String interfaceName, Class<?> implementationClass, long nanos) {
+  }
+
+  /**
+   * Вызывается при каждом обращении к кэшу планов внедрения.
+   *
+   * @param beanType класс, для которого запрашивается план
+   */
+  default void planRequested(Class<?> beanType) {
+  }
+
+  /**
+   * Вызывается после построения плана внедрения, то есть при промахе кэша
+   * планов.
+   *
+   * @param beanType  класс, для которого построен план
+   * @param generated {@code true}, если план использует сгенерированный
+   *                  внедритель
+   * @param nanos     время построения плана в наносекундах
+   */
+  default void planCreated(Class<?> beanType, boolean generated, long nanos) {
+  }
+}
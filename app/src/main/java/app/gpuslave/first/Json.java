@@ -0,0 +1,308 @@
+package app.gpuslave.first;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Минимальный разбор и формирование JSON без внешних зависимостей.
+ * Используется для чтения и записи файлов, которые формирует само приложение
+ * (например, эталонов производительности {@link PerformanceBaseline} и
+ * отчетов {@link Compare}).
+ * <p>
+ * Разбор возвращает {@link Map} (с сохранением порядка ключей), {@link List},
+ * {@link String}, {@link Double}, {@link Boolean} или {@code null}.
+ */
+final class Json {
+
+  /**
+   * Разбираемый текст.
+   */
+  private final String text;
+
+  /**
+   * Текущая позиция в тексте.
+   */
+  private int pos;
+
+  /**
+   * Создает разборщик для текста.
+   *
+   * @param text текст JSON
+   */
+  private Json(String text) {
+    this.text = text;
+  }
+
+  /**
+   * Разбирает текст JSON.
+   *
+   * @param text текст JSON
+   * @return значение верхнего уровня
+   * @throws IllegalArgumentException если текст не является корректным JSON
+   */
+  static Object parse(String text) {
+    Json json = new Json(text);
+    Object value = json.readValue();
+    json.skipWhitespace();
+    if (json.pos != text.length()) {
+      throw json.error("Лишние символы после значения");
+    }
+    return value;
+  }
+
+  /**
+   * Форматирует строку как строковый литерал JSON.
+   *
+   * @param value строка
+   * @return литерал в кавычках с экранированными символами
+   */
+  static String quote(String value) {
+    StringBuilder sb = new StringBuilder("\"");
+    for (int i = 0; i < value.length(); i++) {
+      char ch = value.charAt(i);
+      switch (ch) {
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        default:
+          if (ch < 0x20) {
+            sb.append(String.format("\\u%04x", (int) ch));
+          } else {
+            sb.append(ch);
+          }
+      }
+    }
+    return sb.append('"').toString();
+  }
+
+  /**
+   * Читает значение, начиная с текущей позиции.
+   *
+   * @return значение
+   */
+  private Object readValue() {
+    skipWhitespace();
+    if (pos >= text.length()) {
+      throw error("Неожиданный конец текста");
+    }
+    char ch = text.charAt(pos);
+    switch (ch) {
+      case '{':
+        return readObject();
+      case '[':
+        return readArray();
+      case '"':
+        return readString();
+      case 't':
+        expect("true");
+        return Boolean.TRUE;
+      case 'f':
+        expect("false");
+        return Boolean.FALSE;
+      case 'n':
+        expect("null");
+        return null;
+      default:
+        return readNumber();
+    }
+  }
+
+  /**
+   * Читает объект.
+   *
+   * @return ключи и значения в порядке следования
+   */
+  private Map<String, Object> readObject() {
+    Map<String, Object> object = new LinkedHashMap<>();
+    pos++;
+    skipWhitespace();
+    if (peek() == '}') {
+      pos++;
+      return object;
+    }
+    while (true) {
+      skipWhitespace();
+      if (peek() != '"') {
+        throw error("Ожидался ключ объекта");
+      }
+      String key = readString();
+      skipWhitespace();
+      if (peek() != ':') {
+        throw error("Ожидалось ':'");
+      }
+      pos++;
+      object.put(key, readValue());
+      skipWhitespace();
+      char ch = peek();
+      pos++;
+      if (ch == '}') {
+        return object;
+      }
+      if (ch != ',') {
+        throw error("Ожидалось ',' или '}'");
+      }
+    }
+  }
+
+  /**
+   * Читает массив.
+   *
+   * @return элементы массива
+   */
+  private List<Object> readArray() {
+    List<Object> array = new ArrayList<>();
+    pos++;
+    skipWhitespace();
+    if (peek() == ']') {
+      pos++;
+      return array;
+    }
+    while (true) {
+      array.add(readValue());
+      skipWhitespace();
+      char ch = peek();
+      pos++;
+      if (ch == ']') {
+        return array;
+      }
+      if (ch != ',') {
+        throw error("Ожидалось ',' или ']'");
+      }
+    }
+  }
+
+  /**
+   * Читает строковый литерал.
+   *
+   * @return строка без кавычек и экранирования
+   */
+  private String readString() {
+    StringBuilder sb = new StringBuilder();
+    pos++;
+    while (true) {
+      if (pos >= text.length()) {
+        throw error("Незакрытая строка");
+      }
+      char ch = text.charAt(pos++);
+      if (ch == '"') {
+        return sb.toString();
+      }
+      if (ch != '\\') {
+        sb.append(ch);
+        continue;
+      }
+      if (pos >= text.length()) {
+        throw error("Незакрытая строка");
+      }
+      char escaped = text.charAt(pos++);
+      switch (escaped) {
+        case 'n':
+          sb.append('\n');
+          break;
+        case 'r':
+          sb.append('\r');
+          break;
+        case 't':
+          sb.append('\t');
+          break;
+        case 'b':
+          sb.append('\b');
+          break;
+        case 'f':
+          sb.append('\f');
+          break;
+        case 'u':
+          if (pos + 4 > text.length()) {
+            throw error("Неверная escape-последовательность");
+          }
+          try {
+            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+          } catch (NumberFormatException e) {
+            throw error("Неверная escape-последовательность");
+          }
+          pos += 4;
+          break;
+        default:
+          sb.append(escaped);
+      }
+    }
+  }
+
+  /**
+   * Читает число.
+   *
+   * @return число
+   */
+  private Double readNumber() {
+    int start = pos;
+    while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+      pos++;
+    }
+    if (start == pos) {
+      throw error("Неожиданный символ '" + text.charAt(pos) + "'");
+    }
+    try {
+      return Double.valueOf(text.substring(start, pos));
+    } catch (NumberFormatException e) {
+      throw error("Неверное число");
+    }
+  }
+
+  /**
+   * Проверяет, что с текущей позиции следует заданное слово, и пропускает
+   * его.
+   *
+   * @param word ожидаемое слово
+   */
+  private void expect(String word) {
+    if (!text.startsWith(word, pos)) {
+      throw error("Ожидалось " + word);
+    }
+    pos += word.length();
+  }
+
+  /**
+   * Возвращает текущий символ.
+   *
+   * @return символ
+   */
+  private char peek() {
+    if (pos >= text.length()) {
+      throw error("Неожиданный конец текста");
+    }
+    return text.charAt(pos);
+  }
+
+  /**
+   * Пропускает пробельные символы.
+   */
+  private void skipWhitespace() {
+    while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+      pos++;
+    }
+  }
+
+  /**
+   * Создает исключение с указанием позиции.
+   *
+   * @param message описание ошибки
+   * @return исключение
+   */
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException(message + " (позиция " + pos + ")");
+  }
+}
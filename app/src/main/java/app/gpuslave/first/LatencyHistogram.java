@@ -0,0 +1,330 @@
+package app.gpuslave.first;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Гистограмма задержек с наносекундным разрешением в духе HdrHistogram.
+ * <p>
+ * Значения раскладываются по логарифмически-линейным корзинам: значения
+ * меньше {@value #SUB_BUCKET_COUNT} хранятся точно, а каждый следующий
+ * диапазон [2<sup>k</sup>, 2<sup>k+1</sup>) делится на
+ * {@code SUB_BUCKET_COUNT / 2} равных корзин. Относительная погрешность
+ * любого значения поэтому не превышает {@code 2 / SUB_BUCKET_COUNT} (около
+ * 1.6%) во всем диапазоне {@code long}, а запись сводится к нескольким
+ * битовым операциям и увеличению счетчика в массиве без выделения памяти.
+ * <p>
+ * Экземпляр не потокобезопасен: каждый поток записывает в собственную
+ * гистограмму, а результаты объединяются методом {@link #add(LatencyHistogram)}.
+ */
+public final class LatencyHistogram {
+
+  /**
+   * Количество бит, задающих точность внутри диапазона одной степени двойки.
+   */
+  private static final int SUB_BUCKET_BITS = 7;
+
+  /**
+   * Количество точно хранимых значений и удвоенное число корзин в каждом
+   * следующем диапазоне.
+   */
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * Количество корзин в диапазоне одной степени двойки.
+   */
+  private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+
+  /**
+   * Общее количество корзин, покрывающее все неотрицательные значения
+   * {@code long}.
+   */
+  private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+  /**
+   * Процентили, выводимые в сводке.
+   */
+  private static final double[] SUMMARY_PERCENTILES = { 50, 90, 99, 99.9 };
+
+  /**
+   * Счетчики значений по корзинам.
+   */
+  private final long[] counts = new long[BUCKET_COUNT];
+
+  /**
+   * Общее количество записанных значений.
+   */
+  private long totalCount;
+
+  /**
+   * Сумма записанных значений для вычисления среднего.
+   */
+  private double sum;
+
+  /**
+   * Наименьшее записанное значение (точное).
+   */
+  private long min = Long.MAX_VALUE;
+
+  /**
+   * Наибольшее записанное значение (точное).
+   */
+  private long max;
+
+  /**
+   * Создает пустую гистограмму.
+   */
+  public LatencyHistogram() {
+    // Счетчики инициализируются нулями
+  }
+
+  /**
+   * Записывает одно значение задержки. Отрицательные значения считаются
+   * нулевыми.
+   *
+   * @param nanos задержка в наносекундах
+   */
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    counts[indexOf(value)]++;
+    totalCount++;
+    sum += value;
+    if (value < min) {
+      min = value;
+    }
+    if (value > max) {
+      max = value;
+    }
+  }
+
+  /**
+   * Добавляет к этой гистограмме все значения другой.
+   *
+   * @param other гистограмма, значения которой добавляются
+   */
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] += other.counts[i];
+    }
+    totalCount += other.totalCount;
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  /**
+   * Удаляет все записанные значения.
+   */
+  public void reset() {
+    Arrays.fill(counts, 0);
+    totalCount = 0;
+    sum = 0;
+    min = Long.MAX_VALUE;
+    max = 0;
+  }
+
+  /**
+   * Возвращает количество записанных значений.
+   *
+   * @return количество значений
+   */
+  public long getCount() {
+    return totalCount;
+  }
+
+  /**
+   * Возвращает наименьшее записанное значение.
+   *
+   * @return значение в наносекундах или 0, если гистограмма пуста
+   */
+  public long getMin() {
+    return totalCount == 0 ? 0 : min;
+  }
+
+  /**
+   * Возвращает наибольшее записанное значение.
+   *
+   * @return значение в наносекундах или 0, если гистограмма пуста
+   */
+  public long getMax() {
+    return max;
+  }
+
+  /**
+   * Возвращает среднее значение.
+   *
+   * @return среднее в наносекундах или 0, если гистограмма пуста
+   */
+  public double getMean() {
+    return totalCount == 0 ? 0 : sum / totalCount;
+  }
+
+  /**
+   * Возвращает значение процентиля: наибольшее значение корзины, в которую
+   * попадает заданная доля записанных значений. Результат не превышает
+   * {@link #getMax()}.
+   *
+   * @param percentile процентиль от 0 до 100
+   * @return значение в наносекундах или 0, если гистограмма пуста
+   * @throws IllegalArgumentException если процентиль вне диапазона
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Процентиль должен быть от 0 до 100: " + percentile);
+    }
+    if (totalCount == 0) {
+      return 0;
+    }
+    // Поправка не дает погрешности округления (99.9 / 100 * 10000 = 9990.000000000002)
+    // сдвинуть порог на следующее значение
+    long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount - 1e-9));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts[i];
+      if (seen >= target) {
+        return Math.min(highestValueOf(i), max);
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Возвращает краткую сводку: количество, среднее, p50, p90, p99, p99.9 и
+   * максимум.
+   *
+   * @return сводка в одну строку
+   */
+  public String summary() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format(Locale.ROOT, "count=%d mean=%.1f", totalCount, getMean()));
+    for (double p : SUMMARY_PERCENTILES) {
+      sb.append(String.format(Locale.ROOT, " p%s=%d", formatPercentile(p), getValueAtPercentile(p)));
+    }
+    sb.append(" max=").append(max);
+    return sb.toString();
+  }
+
+  /**
+   * Выгружает непустые корзины в CSV для последующего сравнения.
+   * Каждая строка содержит границы корзины в наносекундах (включительно) и
+   * количество значений в ней. Последняя строка {@code #max} хранит точный
+   * максимум.
+   *
+   * @return CSV с заголовком {@code lower_ns,upper_ns,count}
+   */
+  public String toCsv() {
+    StringBuilder sb = new StringBuilder("lower_ns,upper_ns,count\n");
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      if (counts[i] != 0) {
+        sb.append(lowestValueOf(i)).append(',')
+            .append(highestValueOf(i)).append(',')
+            .append(counts[i]).append('\n');
+      }
+    }
+    sb.append("#max,").append(max).append(",0\n");
+    return sb.toString();
+  }
+
+  /**
+   * Восстанавливает гистограмму из CSV, полученного методом {@link #toCsv()}.
+   * Значения внутри корзины восстанавливаются по ее нижней границе, поэтому
+   * среднее и минимум совпадают с исходными с точностью до ширины корзины.
+   *
+   * @param csv текст CSV
+   * @return восстановленная гистограмма
+   * @throws IllegalArgumentException если текст имеет неверный формат
+   */
+  public static LatencyHistogram fromCsv(String csv) {
+    LatencyHistogram histogram = new LatencyHistogram();
+    long exactMax = -1;
+    String[] lines = csv.split("\n");
+    for (int i = 1; i < lines.length; i++) {
+      String line = lines[i].trim();
+      if (line.isEmpty()) {
+        continue;
+      }
+      String[] fields = line.split(",");
+      if (fields.length != 3) {
+        throw new IllegalArgumentException("Неверная строка гистограммы: " + line);
+      }
+      try {
+        if (fields[0].equals("#max")) {
+          exactMax = Long.parseLong(fields[1]);
+          continue;
+        }
+        long lower = Long.parseLong(fields[0]);
+        long count = Long.parseLong(fields[2]);
+        histogram.counts[indexOf(lower)] += count;
+        histogram.totalCount += count;
+        histogram.sum += (double) lower * count;
+        histogram.min = Math.min(histogram.min, lower);
+        histogram.max = Math.max(histogram.max, Long.parseLong(fields[1]));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Неверная строка гистограммы: " + line, e);
+      }
+    }
+    if (exactMax >= 0) {
+      histogram.max = exactMax;
+    }
+    return histogram;
+  }
+
+  /**
+   * Вычисляет номер корзины для неотрицательного значения.
+   *
+   * @param value значение
+   * @return номер корзины
+   */
+  private static int indexOf(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+    int subBucket = (int) (value >>> shift);
+    return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (subBucket - SUB_BUCKET_HALF);
+  }
+
+  /**
+   * Возвращает наименьшее значение, попадающее в корзину.
+   *
+   * @param index номер корзины
+   * @return нижняя граница корзины
+   */
+  private static long lowestValueOf(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int offset = index - SUB_BUCKET_COUNT;
+    int shift = offset / SUB_BUCKET_HALF + 1;
+    long subBucket = offset % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+    return subBucket << shift;
+  }
+
+  /**
+   * Возвращает наибольшее значение, попадающее в корзину.
+   *
+   * @param index номер корзины
+   * @return верхняя граница корзины
+   */
+  private static long highestValueOf(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    if (index == BUCKET_COUNT - 1) {
+      return Long.MAX_VALUE;
+    }
+    return lowestValueOf(index + 1) - 1;
+  }
+
+  /**
+   * Форматирует процентиль для подписи: 50 - "50", 99.9 - "99.9".
+   *
+   * @param percentile процентиль
+   * @return подпись
+   */
+  private static String formatPercentile(double percentile) {
+    return percentile == Math.rint(percentile)
+        ? String.valueOf((long) percentile)
+        : String.valueOf(percentile);
+  }
+}
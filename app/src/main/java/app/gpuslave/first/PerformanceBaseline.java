@@ -0,0 +1,505 @@
+package app.gpuslave.first;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Класс {@code PerformanceBaseline} сохраняет результаты набора замеров
+ * производительности в машиночитаемом виде и сравнивает новый запуск с
+ * сохраненным эталоном.
+ * <p>
+ * Каждый запуск записывается в JSON-файл вместе с метаданными окружения
+ * (версия и поставщик JVM, объем кучи, количество процессоров, модель
+ * процессора, операционная система). При проверке каждая операция
+ * сравнивается с эталоном по медиане средних задержек из нескольких прогонов; если она выросла больше чем на
+ * заданный порог, операция считается регрессией.
+ * <p>
+ * Запускается задачами Gradle {@code perfBaseline} (записать эталон) и
+ * {@code perfCheck} (сравнить с эталоном). Аргументы командной строки:
+ * <pre>
+ * record --baseline ФАЙЛ [--output-dir КАТАЛОГ]
+ * check  --baseline ФАЙЛ [--output-dir КАТАЛОГ] [--threshold 0.25] [--fail-on-regression true]
+ * </pre>
+ * Эталон зависит от машины, поэтому сравнивать имеет смысл только запуски в
+ * одинаковом окружении; при расхождении метаданных выводится предупреждение.
+ */
+public class PerformanceBaseline {
+
+  /**
+   * Допустимый относительный рост задержки по умолчанию (25%).
+   */
+  public static final double DEFAULT_THRESHOLD = 0.25;
+
+  /**
+   * Количество прогревочных прогонов набора, результаты которых
+   * отбрасываются.
+   */
+  private static final int WARMUP_RUNS = 3;
+
+  /**
+   * Количество измеряемых прогонов; для каждой операции берется медиана.
+   */
+  private static final int MEASURED_RUNS = 5;
+
+  /**
+   * Количество итераций каждой операции в одном прогоне.
+   */
+  private static final int ITERATIONS = 2000;
+
+  /**
+   * Размер списков в наборе.
+   */
+  private static final int LIST_SIZE = 10000;
+
+  /**
+   * Количество вычислений каждого замера выражений в одном прогоне.
+   */
+  private static final int EXPRESSION_ITERATIONS = 20000;
+
+  /**
+   * Выражение для замеров {@link ExpressionEvaluator}: фильтр с
+   * переменными, скобками, сравнениями и логической операцией.
+   */
+  static final String EXPRESSION = "salary * 1.1 > 5000 && (birthYear - 1900) / 10 < 9";
+
+  /**
+   * Переменные выражения для замеров в порядке ячеек.
+   */
+  private static final List<String> EXPRESSION_VARIABLES = List.of("salary", "birthYear");
+
+  /**
+   * Приемник результатов вычислений, не позволяющий JIT удалить их как
+   * неиспользуемые.
+   */
+  private static volatile double sink;
+
+  /**
+   * Метаданные окружения, которые должны совпадать для корректного сравнения.
+   */
+  private static final List<String> COMPARABLE_METADATA = List.of(
+      "javaVersion", "vmName", "availableProcessors", "maxHeapBytes", "cpu", "os");
+
+  /**
+   * Метаданные окружения запуска.
+   */
+  private final Map<String, Object> metadata;
+
+  /**
+   * Результаты: имя замера и медиана задержки в наносекундах.
+   */
+  private final Map<String, Double> results;
+
+  /**
+   * Создает результат запуска.
+   *
+   * @param metadata метаданные окружения
+   * @param results  имя замера и медиана задержки в наносекундах
+   */
+  PerformanceBaseline(Map<String, Object> metadata, Map<String, Double> results) {
+    this.metadata = new LinkedHashMap<>(metadata);
+    this.results = new LinkedHashMap<>(results);
+  }
+
+  /**
+   * Возвращает метаданные окружения.
+   *
+   * @return метаданные
+   */
+  public Map<String, Object> getMetadata() {
+    return metadata;
+  }
+
+  /**
+   * Возвращает результаты замеров.
+   *
+   * @return имя замера и медиана задержки в наносекундах
+   */
+  public Map<String, Double> getResults() {
+    return results;
+  }
+
+  /**
+   * Выполняет набор замеров: сравнение списков {@link Compare} для
+   * ArrayList, LinkedList и {@link Container} и фазы
+   * {@link ExpressionEvaluator} (см. {@link #measureExpressions(int)}). После
+   * прогревочных прогонов для каждой операции берется медиана средних
+   * значений по измеряемым прогонам, что снижает влияние выбросов.
+   *
+   * @return результат запуска с метаданными текущего окружения
+   */
+  public static PerformanceBaseline measure() {
+    Map<String, double[]> samples = new LinkedHashMap<>();
+    for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+      Compare.Report report = new Compare(ITERATIONS, LIST_SIZE)
+          .addCollection("ArrayList", ArrayList::new)
+          .addCollection("LinkedList", LinkedList::new)
+          .addCollection("Container", Compare::containerList)
+          .run();
+      if (run < WARMUP_RUNS) {
+        continue;
+      }
+      for (String collection : report.getCollections()) {
+        for (Compare.Operation operation : report.getOperations()) {
+          LatencyHistogram histogram = report.histogram(operation, collection);
+          if (histogram != null) {
+            samples.computeIfAbsent("compare/" + collection + "/" + operation.name(),
+                key -> new double[MEASURED_RUNS])[run - WARMUP_RUNS] = histogram.getMean();
+          }
+        }
+      }
+      for (Map.Entry<String, Double> entry : measureExpressions(EXPRESSION_ITERATIONS).entrySet()) {
+        samples.computeIfAbsent(entry.getKey(), key -> new double[MEASURED_RUNS])[run - WARMUP_RUNS] =
+            entry.getValue();
+      }
+    }
+    Map<String, Double> results = new LinkedHashMap<>();
+    for (Map.Entry<String, double[]> entry : samples.entrySet()) {
+      double[] values = entry.getValue().clone();
+      Arrays.sort(values);
+      results.put(entry.getKey(), values[values.length / 2]);
+    }
+    return new PerformanceBaseline(currentMetadata(), results);
+  }
+
+  /**
+   * Замеряет один прогон фаз {@link ExpressionEvaluator} на выражении
+   * {@link #EXPRESSION}: разбор строки с подставленными значениями в
+   * постфиксную запись и ее вычисление, компиляцию, вычисление
+   * скомпилированного выражения и тихое вычисление со словарем переменных.
+   *
+   * @param iterations количество вычислений каждого замера
+   * @return имя замера и средняя задержка в наносекундах
+   */
+  static Map<String, Double> measureExpressions(int iterations) {
+    String substituted = EXPRESSION.replace("salary", "4800").replace("birthYear", "1985");
+    Map<String, Double> values = Map.of("salary", 4800.0, "birthYear", 1985.0);
+    double[] slots = { 4800, 1985 };
+    CompiledExpression compiled = ExpressionEvaluator.compile(EXPRESSION, EXPRESSION_VARIABLES);
+    ExpressionEvaluator evaluator = new ExpressionEvaluator();
+    Map<String, Double> results = new LinkedHashMap<>();
+    double checksum = 0;
+
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      checksum += ExpressionEvaluator.evaluatePostfix(
+          ExpressionEvaluator.infixToPostfix(ExpressionEvaluator.tokenize(substituted)));
+    }
+    results.put("expression/parseAndEvaluate", (System.nanoTime() - start) / (double) iterations);
+
+    start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      checksum += ExpressionEvaluator.compile(EXPRESSION, EXPRESSION_VARIABLES).getVariables().size();
+    }
+    results.put("expression/compile", (System.nanoTime() - start) / (double) iterations);
+
+    start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      slots[0] = 4800 + (i & 1);
+      checksum += compiled.evaluate(slots);
+    }
+    results.put("expression/evaluateCompiled", (System.nanoTime() - start) / (double) iterations);
+
+    start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      checksum += evaluator.evaluateQuietly(EXPRESSION, values).getValue();
+    }
+    results.put("expression/evaluateQuietly", (System.nanoTime() - start) / (double) iterations);
+
+    sink = checksum;
+    return results;
+  }
+
+  /**
+   * Собирает метаданные текущего окружения.
+   *
+   * @return метаданные
+   */
+  static Map<String, Object> currentMetadata() {
+    Map<String, Object> metadata = new LinkedHashMap<>();
+    metadata.put("timestamp", DateTimeFormatter.ISO_INSTANT.format(Instant.now()));
+    metadata.put("javaVersion", System.getProperty("java.version"));
+    metadata.put("vmName", System.getProperty("java.vm.name"));
+    metadata.put("vmVendor", System.getProperty("java.vm.vendor"));
+    metadata.put("jvmArguments", String.join(" ", ManagementFactory.getRuntimeMXBean().getInputArguments()));
+    metadata.put("availableProcessors", (double) Runtime.getRuntime().availableProcessors());
+    metadata.put("maxHeapBytes", (double) Runtime.getRuntime().maxMemory());
+    metadata.put("cpu", cpuModel());
+    metadata.put("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+    return metadata;
+  }
+
+  /**
+   * Определяет модель процессора по {@code /proc/cpuinfo}; если файл
+   * недоступен, возвращает архитектуру.
+   *
+   * @return модель процессора
+   */
+  private static String cpuModel() {
+    Path cpuinfo = Paths.get("/proc/cpuinfo");
+    if (Files.isReadable(cpuinfo)) {
+      try (Stream<String> lines = Files.lines(cpuinfo)) {
+        return lines.filter(line -> line.startsWith("model name"))
+            .map(line -> line.substring(line.indexOf(':') + 1).trim())
+            .findFirst()
+            .orElse(System.getProperty("os.arch"));
+      } catch (IOException e) {
+        // Модель процессора необязательна
+      }
+    }
+    return System.getProperty("os.arch");
+  }
+
+  /**
+   * Форматирует результат запуска в JSON.
+   *
+   * @return JSON-объект с полями {@code metadata} и {@code results}
+   */
+  public String toJson() {
+    StringBuilder sb = new StringBuilder("{\n  \"metadata\": {");
+    boolean first = true;
+    for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+      sb.append(first ? "\n" : ",\n");
+      first = false;
+      sb.append("    ").append(Json.quote(entry.getKey())).append(": ").append(jsonValue(entry.getValue()));
+    }
+    sb.append("\n  },\n  \"results\": {");
+    first = true;
+    for (Map.Entry<String, Double> entry : results.entrySet()) {
+      sb.append(first ? "\n" : ",\n");
+      first = false;
+      sb.append("    ").append(Json.quote(entry.getKey())).append(": ")
+          .append(String.format(Locale.ROOT, "%.3f", entry.getValue()));
+    }
+    sb.append("\n  }\n}\n");
+    return sb.toString();
+  }
+
+  /**
+   * Разбирает результат запуска из JSON, полученного методом {@link #toJson()}.
+   *
+   * @param json текст JSON
+   * @return результат запуска
+   * @throws IllegalArgumentException если текст имеет неверный формат
+   */
+  @SuppressWarnings("unchecked")
+  public static PerformanceBaseline fromJson(String json) {
+    Object root = Json.parse(json);
+    if (!(root instanceof Map) || !(((Map<String, Object>) root).get("results") instanceof Map)) {
+      throw new IllegalArgumentException("Файл эталона не содержит объекта results");
+    }
+    Map<String, Object> object = (Map<String, Object>) root;
+    Map<String, Object> metadata = object.get("metadata") instanceof Map
+        ? (Map<String, Object>) object.get("metadata")
+        : Map.of();
+    Map<String, Double> results = new LinkedHashMap<>();
+    for (Map.Entry<String, Object> entry : ((Map<String, Object>) object.get("results")).entrySet()) {
+      if (!(entry.getValue() instanceof Double)) {
+        throw new IllegalArgumentException("Нечисловой результат для " + entry.getKey());
+      }
+      results.put(entry.getKey(), (Double) entry.getValue());
+    }
+    return new PerformanceBaseline(metadata, results);
+  }
+
+  /**
+   * Сравнивает этот запуск с эталоном.
+   *
+   * @param baseline  эталон
+   * @param threshold допустимый относительный рост задержки, например 0.25
+   * @return результат сравнения
+   */
+  public Comparison compareTo(PerformanceBaseline baseline, double threshold) {
+    List<String> lines = new ArrayList<>();
+    List<String> regressions = new ArrayList<>();
+    List<String> warnings = new ArrayList<>();
+
+    for (String key : COMPARABLE_METADATA) {
+      Object expected = baseline.metadata.get(key);
+      Object actual = metadata.get(key);
+      if (expected != null && !expected.equals(actual)) {
+        warnings.add("Окружение отличается от эталона: " + key + " = " + actual + " (эталон: " + expected + ")");
+      }
+    }
+
+    for (Map.Entry<String, Double> entry : results.entrySet()) {
+      Double reference = baseline.results.get(entry.getKey());
+      if (reference == null) {
+        lines.add(String.format(Locale.ROOT, "%-50s %12s %12.1f  новый замер",
+            entry.getKey(), "-", entry.getValue()));
+        continue;
+      }
+      double change = reference > 0 ? entry.getValue() / reference - 1 : 0;
+      boolean regressed = change > threshold;
+      String line = String.format(Locale.ROOT, "%-50s %12.1f %12.1f %+8.1f%%%s",
+          entry.getKey(), reference, entry.getValue(), change * 100, regressed ? "  РЕГРЕССИЯ" : "");
+      lines.add(line);
+      if (regressed) {
+        regressions.add(line);
+      }
+    }
+    for (String key : baseline.results.keySet()) {
+      if (!results.containsKey(key)) {
+        warnings.add("Замер из эталона отсутствует в текущем запуске: " + key);
+      }
+    }
+    return new Comparison(threshold, lines, regressions, warnings);
+  }
+
+  /**
+   * Форматирует значение метаданных для JSON.
+   *
+   * @param value строка или число
+   * @return литерал JSON
+   */
+  private static String jsonValue(Object value) {
+    if (value instanceof Number) {
+      double number = ((Number) value).doubleValue();
+      return number == Math.rint(number)
+          ? String.valueOf((long) number)
+          : String.format(Locale.ROOT, "%.3f", number);
+    }
+    return value == null ? "null" : Json.quote(value.toString());
+  }
+
+  /**
+   * Результат сравнения запуска с эталоном.
+   */
+  public static final class Comparison {
+    /** Допустимый относительный рост задержки. */
+    private final double threshold;
+    /** Строки отчета по всем замерам. */
+    private final List<String> lines;
+    /** Строки отчета по замерам с регрессией. */
+    private final List<String> regressions;
+    /** Предупреждения о несопоставимости. */
+    private final List<String> warnings;
+
+    /**
+     * Создает результат сравнения.
+     *
+     * @param threshold   допустимый относительный рост задержки
+     * @param lines       строки отчета по всем замерам
+     * @param regressions строки отчета по замерам с регрессией
+     * @param warnings    предупреждения
+     */
+    Comparison(double threshold, List<String> lines, List<String> regressions, List<String> warnings) {
+      this.threshold = threshold;
+      this.lines = List.copyOf(lines);
+      this.regressions = List.copyOf(regressions);
+      this.warnings = List.copyOf(warnings);
+    }
+
+    /**
+     * Проверяет, есть ли регрессии.
+     *
+     * @return {@code true}, если хотя бы один замер превысил порог
+     */
+    public boolean hasRegressions() {
+      return !regressions.isEmpty();
+    }
+
+    /**
+     * Возвращает строки отчета по замерам с регрессией.
+     *
+     * @return строки отчета
+     */
+    public List<String> getRegressions() {
+      return regressions;
+    }
+
+    /**
+     * Возвращает предупреждения о несопоставимости запусков.
+     *
+     * @return предупреждения
+     */
+    public List<String> getWarnings() {
+      return warnings;
+    }
+
+    /**
+     * Форматирует отчет о сравнении.
+     *
+     * @return текст отчета
+     */
+    public String toText() {
+      StringBuilder sb = new StringBuilder();
+      for (String warning : warnings) {
+        sb.append("Предупреждение: ").append(warning).append(System.lineSeparator());
+      }
+      sb.append(String.format(Locale.ROOT, "%-50s %12s %12s %9s%n", "Замер (нс/оп)", "эталон", "сейчас", "изм."));
+      for (String line : lines) {
+        sb.append(line).append(System.lineSeparator());
+      }
+      sb.append(String.format(Locale.ROOT, "Регрессий (порог %.0f%%): %d%n", threshold * 100, regressions.size()));
+      return sb.toString();
+    }
+  }
+
+  /**
+   * Точка входа для задач Gradle {@code perfBaseline} и {@code perfCheck}.
+   * Каждый запуск сохраняется в выходной каталог как
+   * {@code run-<время>.json}. Режим {@code record} перезаписывает эталон;
+   * режим {@code check} сравнивает с ним и, если эталона еще нет, создает его.
+   * При регрессии в режиме {@code check} с {@code --fail-on-regression true}
+   * процесс завершается с кодом 1.
+   *
+   * @param args режим и параметры, см. описание класса
+   * @throws IOException при ошибке чтения или записи файлов
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0 || !(args[0].equals("record") || args[0].equals("check"))) {
+      System.err.println("Использование: record|check --baseline ФАЙЛ [--output-dir КАТАЛОГ]"
+          + " [--threshold 0.25] [--fail-on-regression true|false]");
+      System.exit(2);
+      return;
+    }
+    Map<String, String> options = new LinkedHashMap<>();
+    for (int i = 1; i + 1 < args.length; i += 2) {
+      options.put(args[i], args[i + 1]);
+    }
+    Path baselinePath = Paths.get(options.getOrDefault("--baseline", "perf/baseline.json"));
+    Path outputDir = Paths.get(options.getOrDefault("--output-dir", "build/perf"));
+    double threshold = Double.parseDouble(options.getOrDefault("--threshold", String.valueOf(DEFAULT_THRESHOLD)));
+    boolean failOnRegression = Boolean.parseBoolean(options.getOrDefault("--fail-on-regression", "false"));
+
+    PerformanceBaseline current = measure();
+    Files.createDirectories(outputDir);
+    String stamp = current.metadata.get("timestamp").toString().replace(':', '-');
+    Path runFile = outputDir.resolve("run-" + stamp + ".json");
+    Files.writeString(runFile, current.toJson());
+    System.out.println("Результаты запуска сохранены в " + runFile);
+
+    if (args[0].equals("record") || !Files.exists(baselinePath)) {
+      if (baselinePath.getParent() != null) {
+        Files.createDirectories(baselinePath.getParent());
+      }
+      Files.writeString(baselinePath, current.toJson());
+      System.out.println("Эталон записан в " + baselinePath);
+      return;
+    }
+
+    PerformanceBaseline baseline = fromJson(Files.readString(baselinePath));
+    Comparison comparison = current.compareTo(baseline, threshold);
+    System.out.print(comparison.toText());
+    if (comparison.hasRegressions()) {
+      if (failOnRegression) {
+        System.err.println("Обнаружены регрессии производительности относительно " + baselinePath);
+        System.exit(1);
+      }
+      System.err.println("Предупреждение: обнаружены регрессии производительности относительно " + baselinePath);
+    }
+  }
+}
@@ -0,0 +1,349 @@
+package app.gpuslave.first;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Запись сотрудников в CSV файл в формате, который читает
+ * {@link CSV#parseCSV(String, char)}: заголовок
+ * {@code id;name;gender;BirtDate;Division;Salary}, пол {@code Male} или
+ * {@code Female}, дата рождения {@code dd.MM.yyyy} в часовом поясе по
+ * умолчанию.
+ * <p>
+ * Строки кодируются напрямую в байты одного переиспользуемого буфера: числа
+ * и дата записываются цифрами без промежуточных строк, а ASCII-строки - по
+ * символу. Заполненный буфер записывается в {@link FileChannel}, при
+ * включенном сжатии - через {@link GZIPOutputStream}. Поля с разделителем,
+ * кавычкой или переводом строки заключаются в кавычки. Класс не
+ * потокобезопасен.
+ *
+ * <pre>
+ * try (PersonCsvWriter writer = new PersonCsvWriter(Path.of("export.csv.gz"), ';', true)) {
+ *   writer.writeAll(people);
+ * }
+ * </pre>
+ */
+public final class PersonCsvWriter implements Closeable {
+
+  /**
+   * Заголовок файла без разделителей.
+   */
+  private static final String[] HEADER = { "id", "name", "gender", "BirtDate", "Division", "Salary" };
+
+  /**
+   * Размер буфера по умолчанию.
+   */
+  private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Канал, в который записывается буфер.
+   */
+  private final WritableByteChannel channel;
+
+  /**
+   * Буфер строк.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * Разделитель полей.
+   */
+  private final byte separator;
+
+  /**
+   * Часовой пояс для даты рождения.
+   */
+  private final ZoneId zone = ZoneId.systemDefault();
+
+  /**
+   * Количество записанных сотрудников.
+   */
+  private long rowsWritten;
+
+  /**
+   * Создает файл (или заменяет существующий) и записывает заголовок.
+   *
+   * @param path      путь к файлу
+   * @param separator разделитель полей, ASCII-символ
+   * @param gzip      сжимать ли файл gzip
+   * @throws IOException              при ошибке открытия файла
+   * @throws IllegalArgumentException если разделитель не ASCII-символ
+   */
+  public PersonCsvWriter(Path path, char separator, boolean gzip) throws IOException {
+    this(path, separator, gzip, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Создает файл (или заменяет существующий) и записывает заголовок.
+   *
+   * @param path       путь к файлу
+   * @param separator  разделитель полей, ASCII-символ
+   * @param gzip       сжимать ли файл gzip
+   * @param bufferSize размер буфера в байтах, не меньше 64
+   * @throws IOException              при ошибке открытия файла
+   * @throws IllegalArgumentException если разделитель не ASCII-символ или
+   *                                  буфер слишком мал
+   */
+  public PersonCsvWriter(Path path, char separator, boolean gzip, int bufferSize) throws IOException {
+    if (separator >= 0x80 || separator == '"' || separator == '\n' || separator == '\r') {
+      throw new IllegalArgumentException("Недопустимый разделитель: " + separator);
+    }
+    if (bufferSize < 64) {
+      throw new IllegalArgumentException("Размер буфера должен быть не меньше 64: " + bufferSize);
+    }
+    this.channel = open(path, gzip, bufferSize);
+    this.buffer = ByteBuffer.allocate(bufferSize);
+    this.separator = (byte) separator;
+
+    for (int i = 0; i < HEADER.length; i++) {
+      if (i > 0) {
+        put(this.separator);
+      }
+      putText(HEADER[i]);
+    }
+    put((byte) '\n');
+  }
+
+  /**
+   * Открывает файл для записи. Если не удалось создать сжимающий поток,
+   * файл закрывается.
+   *
+   * @param path       путь к файлу
+   * @param gzip       сжимать ли файл gzip
+   * @param bufferSize размер буфера сжатия
+   * @return канал записи
+   * @throws IOException при ошибке открытия файла
+   */
+  private static WritableByteChannel open(Path path, boolean gzip, int bufferSize) throws IOException {
+    FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    if (!gzip) {
+      return file;
+    }
+    try {
+      return Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(file), bufferSize));
+    } catch (IOException | RuntimeException e) {
+      try {
+        file.close();
+      } catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Записывает сотрудника.
+   *
+   * @param person сотрудник
+   * @throws IOException при ошибке записи
+   */
+  public void write(CSV.Person person) throws IOException {
+    putInt(person.getId());
+    put(separator);
+    putText(person.getName());
+    put(separator);
+    putText(person.getGender() == 'M' ? "Male" : "Female");
+    put(separator);
+    putDate(person.getDateOfBirth().getTime());
+    put(separator);
+    putText(person.getDivision().getTitle());
+    put(separator);
+    putInt(person.getSalary());
+    put((byte) '\n');
+    rowsWritten++;
+  }
+
+  /**
+   * Записывает сотрудников по порядку.
+   *
+   * @param people сотрудники
+   * @throws IOException при ошибке записи
+   */
+  public void writeAll(Iterable<CSV.Person> people) throws IOException {
+    for (CSV.Person person : people) {
+      write(person);
+    }
+  }
+
+  /**
+   * Возвращает количество записанных сотрудников.
+   *
+   * @return количество строк без заголовка
+   */
+  public long getRowsWritten() {
+    return rowsWritten;
+  }
+
+  /**
+   * Записывает буфер в канал.
+   *
+   * @throws IOException при ошибке записи
+   */
+  public void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Записывает остаток буфера и закрывает файл; при сжатии также
+   * дописывает завершение gzip.
+   *
+   * @throws IOException при ошибке записи
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Освобождает в буфере место под {@code length} байт.
+   *
+   * @param length количество байт, не больше емкости буфера
+   * @throws IOException при ошибке записи
+   */
+  private void ensure(int length) throws IOException {
+    if (buffer.remaining() < length) {
+      flush();
+    }
+  }
+
+  /**
+   * Записывает байт.
+   *
+   * @param b байт
+   * @throws IOException при ошибке записи
+   */
+  private void put(byte b) throws IOException {
+    ensure(1);
+    buffer.put(b);
+  }
+
+  /**
+   * Записывает целое число десятичными цифрами.
+   *
+   * @param value число
+   * @throws IOException при ошибке записи
+   */
+  private void putInt(int value) throws IOException {
+    ensure(11);
+    long v = value;
+    if (v < 0) {
+      buffer.put((byte) '-');
+      v = -v;
+    }
+    int start = buffer.position();
+    do {
+      buffer.put((byte) ('0' + v % 10));
+      v /= 10;
+    } while (v != 0);
+    // цифры записаны с конца, переставляем их
+    for (int i = start, j = buffer.position() - 1; i < j; i++, j--) {
+      byte t = buffer.get(i);
+      buffer.put(i, buffer.get(j));
+      buffer.put(j, t);
+    }
+  }
+
+  /**
+   * Записывает число двумя цифрами.
+   *
+   * @param value число от 0 до 99
+   */
+  private void putTwoDigits(int value) {
+    buffer.put((byte) ('0' + value / 10));
+    buffer.put((byte) ('0' + value % 10));
+  }
+
+  /**
+   * Записывает дату в формате {@code dd.MM.yyyy}.
+   *
+   * @param epochMillis дата в миллисекундах от начала эпохи
+   * @throws IOException при ошибке записи
+   */
+  private void putDate(long epochMillis) throws IOException {
+    LocalDate date = LocalDate.ofInstant(Instant.ofEpochMilli(epochMillis), zone);
+    int year = date.getYear();
+    if (year < 0 || year > 9999) {
+      putText(date.toString());
+      return;
+    }
+    ensure(10);
+    putTwoDigits(date.getDayOfMonth());
+    buffer.put((byte) '.');
+    putTwoDigits(date.getMonthValue());
+    buffer.put((byte) '.');
+    putTwoDigits(year / 100);
+    putTwoDigits(year % 100);
+  }
+
+  /**
+   * Записывает строковое поле в UTF-8, заключая его в кавычки при
+   * необходимости.
+   *
+   * @param text строка
+   * @throws IOException при ошибке записи
+   */
+  private void putText(String text) throws IOException {
+    boolean ascii = true;
+    boolean quote = false;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      ascii &= c < 0x80;
+      quote |= c == separator || c == '"' || c == '\n' || c == '\r';
+    }
+    if (quote) {
+      text = '"' + text.replace("\"", "\"\"") + '"';
+    }
+    if (!ascii) {
+      putBytes(text.getBytes(StandardCharsets.UTF_8));
+      return;
+    }
+    if (text.length() > buffer.capacity()) {
+      putBytes(text.getBytes(StandardCharsets.US_ASCII));
+      return;
+    }
+    ensure(text.length());
+    for (int i = 0; i < text.length(); i++) {
+      buffer.put((byte) text.charAt(i));
+    }
+  }
+
+  /**
+   * Записывает массив байт через буфер или, если он больше буфера, прямо в
+   * канал.
+   *
+   * @param bytes байты
+   * @throws IOException при ошибке записи
+   */
+  private void putBytes(byte[] bytes) throws IOException {
+    if (bytes.length <= buffer.capacity()) {
+      ensure(bytes.length);
+      buffer.put(bytes);
+      return;
+    }
+    flush();
+    ByteBuffer large = ByteBuffer.wrap(bytes);
+    while (large.hasRemaining()) {
+      channel.write(large);
+    }
+  }
+}
@@ -0,0 +1,609 @@
+package app.gpuslave.first;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Внешняя сортировка сотрудников из CSV, не помещающихся в память.
+ * <p>
+ * Сотрудники читаются конвейером {@link CSV#parseCSVPipelined} и собираются
+ * в серии, размер которых ограничен долей бюджета памяти. Заполненная серия
+ * сортируется в отдельном потоке и сбрасывается во временный файл в
+ * компактном двоичном виде, пока следующая серия заполняется. Затем серии
+ * сливаются k-путевым слиянием через {@link PriorityQueue}, и сотрудники по
+ * одному передаются потребителю. Если серий больше, чем можно открыть
+ * одновременно в пределах бюджета (у каждой открытой серии свой буфер
+ * чтения), слияние идет в несколько проходов: группы серий сливаются в
+ * промежуточные файлы, пока их не останется достаточно мало. Если все данные
+ * поместились в одну серию, временные файлы не создаются.
+ * <p>
+ * Сортировка устойчива: сотрудники с равным ключом выдаются в порядке файла.
+ * Сотрудники, прочитанные из файлов серий, создаются заново, но ссылаются
+ * на исходные объекты {@link CSV.Division}.
+ * Память оценивается приблизительно по размеру объекта и длине имени; в
+ * бюджет входят и пакеты, которые конвейер разбора держит в работе.
+ *
+ * <pre>
+ * PersonExternalSorter sorter = new PersonExternalSorter(PersonExternalSorter.SortKey.SALARY)
+ *     .memoryBudget(64 &lt;&lt; 20)
+ *     .tempDirectory(Path.of("/var/tmp"));
+ * sorter.sort(in, ';', Path.of("sorted.csv.gz"), true);
+ * </pre>
+ */
+public class PersonExternalSorter {
+
+  /**
+   * Ключи сортировки.
+   */
+  public enum SortKey {
+    /** По зарплате. */
+    SALARY(Comparator.comparingInt(CSV.Person::getSalary)),
+    /** По названию отдела. */
+    DIVISION(Comparator.comparing(person -> person.getDivision().getTitle())),
+    /** По дате рождения. */
+    BIRTH_DATE(Comparator.comparingLong(person -> person.getDateOfBirth().getTime()));
+
+    /** Порядок сотрудников по ключу. */
+    private final Comparator<CSV.Person> comparator;
+
+    SortKey(Comparator<CSV.Person> comparator) {
+      this.comparator = comparator;
+    }
+
+    /**
+     * Возвращает порядок сотрудников по ключу.
+     *
+     * @return компаратор
+     */
+    public Comparator<CSV.Person> comparator() {
+      return comparator;
+    }
+  }
+
+  /**
+   * Бюджет памяти по умолчанию, байт.
+   */
+  public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+  /**
+   * Оценка размера объекта Person без символов имени, байт.
+   */
+  static final int PERSON_OVERHEAD = 120;
+
+  /**
+   * Размер буфера чтения и записи файла серии.
+   */
+  private static final int RUN_BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Наименьшее количество одновременно сливаемых серий.
+   */
+  private static final int MIN_FAN_IN = 2;
+
+  /**
+   * Ключ сортировки.
+   */
+  private final SortKey key;
+
+  /**
+   * Бюджет памяти для серий, байт.
+   */
+  private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+
+  /**
+   * Папка временных файлов или {@code null} для системной.
+   */
+  private Path tempDirectory;
+
+  /**
+   * Количество потоков разбора и сортировки серий.
+   */
+  private int workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+  /**
+   * Наибольшее количество одновременно сливаемых серий, заданное явно.
+   */
+  private int maxFanIn = Integer.MAX_VALUE;
+
+  /**
+   * Количество файлов серий последней сортировки.
+   */
+  private int lastRunCount;
+
+  /**
+   * Количество проходов слияния последней сортировки.
+   */
+  private int lastMergePasses;
+
+  /**
+   * Создает сортировщик с бюджетом памяти по умолчанию и системной папкой
+   * временных файлов.
+   *
+   * @param key ключ сортировки
+   */
+  public PersonExternalSorter(SortKey key) {
+    this.key = key;
+  }
+
+  /**
+   * Задает бюджет памяти. Из него вычитается оценка пакетов, которые держит
+   * в работе конвейер разбора ({@link #pipelineReserve()}), а остаток
+   * делится между заполняемой серией и сериями, которые сортируются в это
+   * время, поэтому серия занимает не более
+   * {@code (budget - pipelineReserve()) / (workers + 1)} байт. При слиянии
+   * бюджет ограничивает количество одновременно открытых серий.
+   *
+   * @param budget бюджет в байтах
+   * @return этот сортировщик
+   * @throws IllegalArgumentException если бюджет не положителен
+   */
+  public PersonExternalSorter memoryBudget(long budget) {
+    if (budget <= 0) {
+      throw new IllegalArgumentException("Бюджет памяти должен быть положительным: " + budget);
+    }
+    this.memoryBudget = budget;
+    return this;
+  }
+
+  /**
+   * Задает папку временных файлов серий.
+   *
+   * @param directory существующая папка
+   * @return этот сортировщик
+   */
+  public PersonExternalSorter tempDirectory(Path directory) {
+    this.tempDirectory = directory;
+    return this;
+  }
+
+  /**
+   * Задает количество потоков разбора и сортировки серий.
+   *
+   * @param workers количество потоков
+   * @return этот сортировщик
+   * @throws IllegalArgumentException если количество не положительно
+   */
+  public PersonExternalSorter workers(int workers) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("Количество потоков должно быть положительным: " + workers);
+    }
+    this.workers = workers;
+    return this;
+  }
+
+  /**
+   * Ограничивает количество серий, сливаемых за один проход. Действует
+   * меньшее из этого значения и количества, допускаемого бюджетом памяти.
+   *
+   * @param fanIn наибольшее количество серий, не меньше 2
+   * @return этот сортировщик
+   * @throws IllegalArgumentException если значение меньше 2
+   */
+  public PersonExternalSorter maxFanIn(int fanIn) {
+    if (fanIn < MIN_FAN_IN) {
+      throw new IllegalArgumentException("Количество сливаемых серий должно быть не меньше " + MIN_FAN_IN
+          + ": " + fanIn);
+    }
+    this.maxFanIn = fanIn;
+    return this;
+  }
+
+  /**
+   * Возвращает оценку памяти пакетов, которые конвейер разбора держит в
+   * работе: до {@value CSV#PIPELINE_BATCHES_PER_WORKER} пакетов по
+   * {@value CSV#PIPELINE_BATCH_SIZE} сотрудников на поток.
+   *
+   * @return оценка в байтах
+   */
+  public long pipelineReserve() {
+    return (long) CSV.PIPELINE_BATCHES_PER_WORKER * workers * CSV.PIPELINE_BATCH_SIZE * PERSON_OVERHEAD;
+  }
+
+  /**
+   * Возвращает количество серий, сливаемых за один проход: каждой открытой
+   * серии и файлу промежуточного результата нужен буфер
+   * {@value #RUN_BUFFER_SIZE} байт.
+   *
+   * @return количество серий, не меньше 2
+   */
+  int fanIn() {
+    long byBudget = Math.max(MIN_FAN_IN, memoryBudget / RUN_BUFFER_SIZE - 1);
+    return (int) Math.min(maxFanIn, byBudget);
+  }
+
+  /**
+   * Возвращает количество проходов слияния последней сортировки.
+   *
+   * @return количество проходов, 0 если данные поместились в память
+   */
+  public int getLastMergePasses() {
+    return lastMergePasses;
+  }
+
+  /**
+   * Возвращает количество файлов серий, созданных последней сортировкой.
+   *
+   * @return количество файлов, 0 если данные поместились в память
+   */
+  public int getLastRunCount() {
+    return lastRunCount;
+  }
+
+  /**
+   * Сортирует сотрудников из CSV потока и записывает их в CSV файл.
+   *
+   * @param in        Поток с данными CSV в кодировке UTF-8
+   * @param separator Разделитель полей
+   * @param output    путь к файлу результата
+   * @param gzip      сжимать ли результат gzip
+   * @return количество записанных сотрудников
+   * @throws IOException при ошибке записи результата
+   * @see PersonCsvWriter
+   */
+  public long sort(InputStream in, char separator, Path output, boolean gzip) throws IOException {
+    try (PersonCsvWriter writer = new PersonCsvWriter(output, separator, gzip)) {
+      return sort(in, separator, person -> {
+        try {
+          writer.write(person);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Сортирует сотрудников из CSV потока и передает их потребителю по
+   * порядку. Ошибочные строки пропускаются, как в
+   * {@link CSV#parseCSVPipelined(InputStream, char, int, Consumer)}. Поток
+   * читается до конца и закрывается, временные файлы удаляются.
+   *
+   * @param in        Поток с данными CSV в кодировке UTF-8
+   * @param separator Разделитель полей
+   * @param consumer  потребитель отсортированных сотрудников
+   * @return количество переданных сотрудников
+   * @throws IllegalStateException если бюджет памяти не больше
+   *                               {@link #pipelineReserve()}
+   */
+  public long sort(InputStream in, char separator, Consumer<? super CSV.Person> consumer) {
+    long runMemory = memoryBudget - pipelineReserve();
+    if (runMemory <= 0) {
+      throw new IllegalStateException("Бюджет памяти " + memoryBudget + " не покрывает пакеты конвейера разбора ("
+          + pipelineReserve() + " байт для " + workers + " потоков)");
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(workers);
+    Runs runs = new Runs(Math.max(1, runMemory / (workers + 1)), executor);
+    List<Path> merged = new ArrayList<>();
+    try {
+      CSV.parseCSVPipelined(in, separator, workers, runs);
+
+      if (runs.files.isEmpty()) {
+        lastRunCount = 0;
+        lastMergePasses = 0;
+        runs.current.sort(key.comparator());
+        runs.current.forEach(consumer);
+        return runs.current.size();
+      }
+      runs.spill();
+      lastRunCount = runs.files.size();
+      for (Future<?> spill : runs.spills) {
+        spill.get();
+      }
+
+      // серии сливаются группами подряд, поэтому порядок промежуточных
+      // файлов сохраняет порядок исходных и сортировка остается устойчивой
+      int fanIn = fanIn();
+      int passes = 1;
+      List<Path> level = runs.files;
+      while (level.size() > fanIn) {
+        List<Path> next = new ArrayList<>();
+        for (int from = 0; from < level.size(); from += fanIn) {
+          List<Path> group = level.subList(from, Math.min(from + fanIn, level.size()));
+          if (group.size() == 1) {
+            next.add(group.get(0));
+            continue;
+          }
+          Path file = createRunFile();
+          merged.add(file);
+          mergeToFile(group, runs.divisions, file);
+          for (Path done : group) {
+            Files.delete(done);
+          }
+          next.add(file);
+        }
+        level = next;
+        passes++;
+      }
+      lastMergePasses = passes;
+      return merge(level, runs.divisions, consumer);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Сортировка прервана", e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Ошибка при записи серии: " + e.getCause().getMessage(), e.getCause());
+    } catch (IOException e) {
+      throw new RuntimeException("Ошибка при слиянии серий: " + e.getMessage(), e);
+    } finally {
+      executor.shutdownNow();
+      try {
+        // прерванные задачи записи должны закрыть файлы серий до их удаления
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      List<Path> temporary = new ArrayList<>(runs.files);
+      temporary.addAll(merged);
+      for (Path file : temporary) {
+        try {
+          Files.deleteIfExists(file);
+        } catch (IOException e) {
+          // файл останется во временной папке
+        }
+      }
+    }
+  }
+
+  /**
+   * Создает пустой временный файл серии.
+   *
+   * @return путь к файлу
+   */
+  private Path createRunFile() {
+    try {
+      return tempDirectory == null
+          ? Files.createTempFile("persons-run", ".bin")
+          : Files.createTempFile(tempDirectory, "persons-run", ".bin");
+    } catch (IOException e) {
+      throw new UncheckedIOException("Не удалось создать временный файл серии", e);
+    }
+  }
+
+  /**
+   * Сборщик серий: накапливает сотрудников в памяти и, когда оценка
+   * размера серии достигает бюджета, отдает ее на сортировку и запись в пул
+   * потоков. Вызывается только из потока, выполняющего сортировку.
+   */
+  private final class Runs implements Consumer<CSV.Person> {
+    /** Бюджет одной серии, байт. */
+    private final long budget;
+
+    /** Пул потоков сортировки серий. */
+    private final ExecutorService executor;
+
+    /** Ограничение количества сортируемых серий. */
+    private final Semaphore sorting = new Semaphore(workers);
+
+    /** Файлы серий в порядке создания. */
+    private final List<Path> files = new ArrayList<>();
+
+    /** Задачи записи серий. */
+    private final List<Future<?>> spills = new ArrayList<>();
+
+    /** Отделы исходных сотрудников по названию. */
+    private final Map<String, CSV.Division> divisions = new HashMap<>();
+
+    /** Заполняемая серия. */
+    private List<CSV.Person> current = new ArrayList<>();
+
+    /** Оценка размера заполняемой серии, байт. */
+    private long bytes;
+
+    private Runs(long budget, ExecutorService executor) {
+      this.budget = budget;
+      this.executor = executor;
+    }
+
+    @Override
+    public void accept(CSV.Person person) {
+      current.add(person);
+      divisions.putIfAbsent(person.getDivision().getTitle(), person.getDivision());
+      bytes += PERSON_OVERHEAD + 2L * person.getName().length();
+      if (bytes >= budget) {
+        spill();
+      }
+    }
+
+    /**
+     * Отдает заполняемую серию на сортировку и запись. Ждет, пока
+     * сортируется меньше {@code workers} серий, чтобы память оставалась в
+     * пределах бюджета.
+     */
+    private void spill() {
+      if (current.isEmpty()) {
+        return;
+      }
+      Path file = createRunFile();
+      files.add(file);
+      List<CSV.Person> run = current;
+      current = new ArrayList<>();
+      bytes = 0;
+      sorting.acquireUninterruptibly();
+      spills.add(executor.submit(() -> {
+        try {
+          run.sort(key.comparator());
+          writeRun(run, file);
+          return null;
+        } finally {
+          sorting.release();
+        }
+      }));
+    }
+  }
+
+  /**
+   * Записывает серию в двоичном виде: идентификатор, имя, пол, дата
+   * рождения в миллисекундах, название отдела и зарплата.
+   *
+   * @param run  отсортированная серия
+   * @param file файл серии
+   * @throws IOException при ошибке записи
+   */
+  static void writeRun(List<CSV.Person> run, Path file) throws IOException {
+    try (DataOutputStream out = openRun(file)) {
+      for (CSV.Person person : run) {
+        writePerson(out, person);
+      }
+    }
+  }
+
+  /**
+   * Открывает файл серии для записи.
+   *
+   * @param file файл серии
+   * @return поток записи
+   * @throws IOException при ошибке открытия
+   */
+  private static DataOutputStream openRun(Path file) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), RUN_BUFFER_SIZE));
+  }
+
+  /**
+   * Записывает сотрудника в файл серии.
+   *
+   * @param out    поток записи серии
+   * @param person сотрудник
+   * @throws IOException при ошибке записи
+   */
+  private static void writePerson(DataOutputStream out, CSV.Person person) throws IOException {
+    out.writeInt(person.getId());
+    out.writeUTF(person.getName());
+    out.writeByte(person.getGender());
+    out.writeLong(person.getDateOfBirth().getTime());
+    out.writeUTF(person.getDivision().getTitle());
+    out.writeInt(person.getSalary());
+  }
+
+  /**
+   * Сливает группу серий в промежуточный файл серии.
+   *
+   * @param runFiles  файлы отсортированных серий в порядке их создания
+   * @param divisions отделы исходных сотрудников по названию
+   * @param file      файл результата
+   * @throws IOException при ошибке чтения или записи серии
+   */
+  private void mergeToFile(List<Path> runFiles, Map<String, CSV.Division> divisions, Path file)
+      throws IOException {
+    try (DataOutputStream out = openRun(file)) {
+      merge(runFiles, divisions, person -> {
+        try {
+          writePerson(out, person);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Сливает файлы серий и передает сотрудников потребителю.
+   *
+   * @param runFiles  файлы отсортированных серий в порядке их создания
+   * @param divisions отделы исходных сотрудников по названию
+   * @param consumer  потребитель
+   * @return количество переданных сотрудников
+   * @throws IOException при ошибке чтения серии
+   */
+  private long merge(List<Path> runFiles, Map<String, CSV.Division> divisions,
+      Consumer<? super CSV.Person> consumer) throws IOException {
+    // при равных ключах первой идет более ранняя серия, что сохраняет
+    // порядок файла
+    PriorityQueue<RunCursor> heap = new PriorityQueue<>(runFiles.size(),
+        Comparator.comparing((RunCursor cursor) -> cursor.current, key.comparator())
+            .thenComparingInt(cursor -> cursor.index));
+    List<RunCursor> cursors = new ArrayList<>();
+    try {
+      for (int i = 0; i < runFiles.size(); i++) {
+        RunCursor cursor = new RunCursor(i, runFiles.get(i), divisions);
+        cursors.add(cursor);
+        if (cursor.advance()) {
+          heap.add(cursor);
+        }
+      }
+      long count = 0;
+      while (!heap.isEmpty()) {
+        RunCursor cursor = heap.poll();
+        consumer.accept(cursor.current);
+        count++;
+        if (cursor.advance()) {
+          heap.add(cursor);
+        }
+      }
+      return count;
+    } finally {
+      for (RunCursor cursor : cursors) {
+        cursor.in.close();
+      }
+    }
+  }
+
+  /**
+   * Позиция чтения файла серии.
+   */
+  private static final class RunCursor {
+    /** Номер серии. */
+    private final int index;
+
+    /** Поток файла серии. */
+    private final DataInputStream in;
+
+    /** Отделы исходных сотрудников по названию. */
+    private final Map<String, CSV.Division> divisions;
+
+    /** Текущий сотрудник или {@code null} в конце серии. */
+    private CSV.Person current;
+
+    private RunCursor(int index, Path file, Map<String, CSV.Division> divisions) throws IOException {
+      this.index = index;
+      this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), RUN_BUFFER_SIZE));
+      this.divisions = divisions;
+    }
+
+    /**
+     * Читает следующего сотрудника серии.
+     *
+     * @return {@code false}, если серия закончилась
+     * @throws IOException при ошибке чтения
+     */
+    private boolean advance() throws IOException {
+      int id;
+      try {
+        id = in.readInt();
+      } catch (EOFException e) {
+        current = null;
+        return false;
+      }
+      String name = in.readUTF();
+      char gender = (char) in.readByte();
+      Date dateOfBirth = new Date(in.readLong());
+      CSV.Division division = divisions.computeIfAbsent(in.readUTF(), CSV.Division::new);
+      current = new CSV.Person(id, name, gender, dateOfBirth, division, in.readInt());
+      return true;
+    }
+  }
+}
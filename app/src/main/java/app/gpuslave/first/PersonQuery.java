@@ -0,0 +1,290 @@
+package app.gpuslave.first;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Запрос к CSV файлу сотрудников: условие отбора и вычисляемые столбцы на
+ * языке {@link ExpressionEvaluator}.
+ * <p>
+ * Выражения ссылаются на столбцы строки по именам из {@link #COLUMNS} и
+ * компилируются один раз. При чтении файла методами
+ * {@link CSV#parseCSV(String, char, PersonQuery)} и
+ * {@link CSV#queryCSV(String, char, PersonQuery)} условие проверяется на
+ * исходной строке до создания {@link CSV.Person}, даты и отдела, причем
+ * разбираются только столбцы, на которые ссылаются выражения. Отклоненные
+ * строки не создают объектов.
+ *
+ * <pre>
+ * PersonQuery query = PersonQuery.where("salary * 1.1 &gt; 5000 &amp;&amp; birthYear &gt;= 1980")
+ *     .select("raise", "salary * 0.1");
+ * List&lt;CSV.Person&gt; people = CSV.parseCSV(path, ';', query);
+ * List&lt;PersonQuery.Row&gt; rows = CSV.queryCSV(path, ';', query);
+ * </pre>
+ */
+public class PersonQuery {
+
+  /**
+   * Имена столбцов, доступных в выражениях:
+   * <ul>
+   * <li>{@code id} - идентификатор сотрудника</li>
+   * <li>{@code salary} - зарплата</li>
+   * <li>{@code birthYear}, {@code birthMonth}, {@code birthDay} - части даты
+   * рождения; строка с неверной датой считается ошибочной</li>
+   * <li>{@code male} - 1 для мужского пола, 0 для женского</li>
+   * </ul>
+   */
+  public static final List<String> COLUMNS = List.of("id", "salary", "birthYear", "birthMonth", "birthDay", "male");
+
+  /**
+   * Номер ячейки идентификатора.
+   */
+  private static final int ID = 0;
+
+  /**
+   * Номер ячейки зарплаты.
+   */
+  private static final int SALARY = 1;
+
+  /**
+   * Номер ячейки года рождения; за ним следуют месяц и день.
+   */
+  private static final int BIRTH_YEAR = 2;
+
+  /**
+   * Номер ячейки пола.
+   */
+  private static final int MALE = 5;
+
+  /**
+   * Условие отбора или {@code null}, если отбираются все строки.
+   */
+  private final CompiledExpression filter;
+
+  /**
+   * Имена вычисляемых столбцов.
+   */
+  private final List<String> names = new ArrayList<>();
+
+  /**
+   * Неизменяемая копия {@link #names}, общая для всех строк результата.
+   */
+  private List<String> columns = List.of();
+
+  /**
+   * Выражения вычисляемых столбцов.
+   */
+  private final List<CompiledExpression> projections = new ArrayList<>();
+
+  /**
+   * Признаки столбцов, на которые ссылаются выражения запроса.
+   */
+  private final boolean[] used = new boolean[COLUMNS.size()];
+
+  private PersonQuery(String filter) {
+    this.filter = filter == null ? null : compile(filter);
+  }
+
+  /**
+   * Создает запрос, отбирающий строки по условию.
+   *
+   * @param filter условие; строка отбирается, если его значение не равно нулю
+   * @return запрос
+   * @throws IllegalArgumentException если условие некорректно или ссылается на
+   *                                  неизвестный столбец
+   */
+  public static PersonQuery where(String filter) {
+    return new PersonQuery(filter);
+  }
+
+  /**
+   * Создает запрос, отбирающий все строки.
+   *
+   * @return запрос
+   */
+  public static PersonQuery all() {
+    return new PersonQuery(null);
+  }
+
+  /**
+   * Добавляет вычисляемый столбец в результат
+   * {@link CSV#queryCSV(String, char, PersonQuery)}.
+   *
+   * @param name       имя столбца
+   * @param expression выражение
+   * @return этот запрос
+   * @throws IllegalArgumentException если выражение некорректно или ссылается
+   *                                  на неизвестный столбец
+   */
+  public PersonQuery select(String name, String expression) {
+    projections.add(compile(expression));
+    names.add(name);
+    columns = List.copyOf(names);
+    return this;
+  }
+
+  /**
+   * Возвращает имена вычисляемых столбцов в порядке добавления.
+   *
+   * @return имена столбцов
+   */
+  public List<String> getSelectedColumns() {
+    return columns;
+  }
+
+  /**
+   * Компилирует выражение и отмечает столбцы, на которые оно ссылается.
+   *
+   * @param expression выражение
+   * @return скомпилированное выражение
+   */
+  private CompiledExpression compile(String expression) {
+    CompiledExpression compiled = ExpressionEvaluator.compile(expression, COLUMNS);
+    for (int i = 0; i < COLUMNS.size(); i++) {
+      used[i] |= compiled.uses(i);
+    }
+    return compiled;
+  }
+
+  /**
+   * Создает массив ячеек для значений столбцов. Массив переиспользуется
+   * для всех строк одного чтения.
+   *
+   * @return массив ячеек
+   */
+  double[] newSlots() {
+    return new double[COLUMNS.size()];
+  }
+
+  /**
+   * Разбирает нужные столбцы исходной строки и проверяет условие отбора.
+   *
+   * @param row   поля строки CSV
+   * @param slots массив ячеек, заполняемый значениями столбцов
+   * @return {@code true}, если строка отобрана
+   * @throws NumberFormatException если числовой столбец некорректен
+   * @throws ParseException        если дата рождения некорректна
+   */
+  boolean accept(String[] row, double[] slots) throws ParseException {
+    if (used[ID]) {
+      slots[ID] = Integer.parseInt(row[0]);
+    }
+    if (used[SALARY]) {
+      slots[SALARY] = Integer.parseInt(row[5]);
+    }
+    if (used[BIRTH_YEAR] || used[BIRTH_YEAR + 1] || used[BIRTH_YEAR + 2]) {
+      bindDate(row[3], slots);
+    }
+    if (used[MALE]) {
+      slots[MALE] = row[2].equalsIgnoreCase("Male") ? 1 : 0;
+    }
+    return filter == null || filter.test(slots);
+  }
+
+  /**
+   * Записывает год, месяц и день из даты в формате {@code dd.MM.yyyy}.
+   *
+   * @param date  дата
+   * @param slots массив ячеек
+   * @throws ParseException если дата не в формате {@code dd.MM.yyyy}
+   */
+  private static void bindDate(String date, double[] slots) throws ParseException {
+    int first = date.indexOf('.');
+    int second = date.indexOf('.', first + 1);
+    if (first < 0 || second < 0) {
+      throw new ParseException("Unparseable date: \"" + date + "\"", 0);
+    }
+    try {
+      slots[BIRTH_YEAR] = Integer.parseInt(date.substring(second + 1));
+      slots[BIRTH_YEAR + 1] = Integer.parseInt(date.substring(first + 1, second));
+      slots[BIRTH_YEAR + 2] = Integer.parseInt(date.substring(0, first));
+    } catch (NumberFormatException e) {
+      throw new ParseException("Unparseable date: \"" + date + "\"", 0);
+    }
+  }
+
+  /**
+   * Вычисляет вычисляемые столбцы отобранной строки. Вызывается после
+   * {@link #accept(String[], double[])} с тем же массивом ячеек.
+   *
+   * @param row   поля строки CSV
+   * @param slots массив ячеек со значениями столбцов
+   * @return строка результата
+   */
+  Row project(String[] row, double[] slots) {
+    double[] values = new double[projections.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = projections.get(i).evaluate(slots);
+    }
+    return new Row(Integer.parseInt(row[0]), row[1], columns, values);
+  }
+
+  /**
+   * Строка результата запроса: идентификатор и имя сотрудника и значения
+   * вычисляемых столбцов.
+   */
+  public static class Row {
+    /** Идентификатор сотрудника. */
+    private final int id;
+
+    /** Имя сотрудника. */
+    private final String name;
+
+    /** Имена вычисляемых столбцов. */
+    private final List<String> columns;
+
+    /** Значения вычисляемых столбцов. */
+    private final double[] values;
+
+    private Row(int id, String name, List<String> columns, double[] values) {
+      this.id = id;
+      this.name = name;
+      this.columns = columns;
+      this.values = values;
+    }
+
+    /**
+     * Возвращает идентификатор сотрудника.
+     *
+     * @return Идентификатор сотрудника
+     */
+    public int getId() {
+      return id;
+    }
+
+    /**
+     * Возвращает имя сотрудника.
+     *
+     * @return Имя сотрудника
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Возвращает значение вычисляемого столбца.
+     *
+     * @param column имя столбца
+     * @return значение
+     * @throws IllegalArgumentException если столбца нет в запросе
+     */
+    public double get(String column) {
+      int index = columns.indexOf(column);
+      if (index < 0 || index >= values.length) {
+        throw new IllegalArgumentException("Столбец не выбран в запросе: " + column);
+      }
+      return values[index];
+    }
+
+    /**
+     * Возвращает значения вычисляемых столбцов в порядке добавления.
+     *
+     * @return копия значений
+     */
+    public double[] getValues() {
+      return Arrays.copyOf(values, values.length);
+    }
+  }
+}
@@ -87,13 +87,14 @@ public class ReflectionExample {
   /**
    * Демонстрация работы внедрения зависимостей с использованием класса {@link Injector}.
    * Создает экземпляр класса SomeBean, внедряет в него зависимости на основе файла
-   * конфигурации и вызывает метод, использующий эти зависимости.
+   * конфигурации (индекса {@value Injector#INDEX_RESOURCE} на пути классов) и
+   * вызывает метод, использующий эти зависимости.
    * 
    * @param args аргументы командной строки (не используются)
    * @throws Exception при ошибке внедрения зависимостей
    */
   public static void main(String[] args) throws Exception {
-    SomeBean sb = new Injector("injection.properties").inject(new SomeBean());
+    SomeBean sb = Injector.fromClasspath().inject(new SomeBean());
     sb.foo();
   }
 }
\ No newline at end of file
@@ -0,0 +1,164 @@
+package app.gpuslave.first;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Простая потокобезопасная реализация {@link InjectorMetrics} на счетчиках
+ * {@link LongAdder}: количество внедрений по классам бинов, количество,
+ * суммарное и наибольшее время создания по привязкам, промахи и попадания
+ * кэша планов. Отчет {@link #toTable()} выводит самые дорогие привязки
+ * первыми.
+ */
+public class SimpleInjectorMetrics implements InjectorMetrics {
+
+  /**
+   * Количество внедрений по классам бинов.
+   */
+  private final Map<Class<?>, LongAdder> injections = new ConcurrentHashMap<>();
+
+  /**
+   * Статистика создания по именам интерфейсов.
+   */
+  private final Map<String, CreationStats> creations = new ConcurrentHashMap<>();
+
+  /**
+   * Количество обращений к кэшу планов.
+   */
+  private final LongAdder planRequests = new LongAdder();
+
+  /**
+   * Количество построенных планов.
+   */
+  private final LongAdder plansCreated = new LongAdder();
+
+  /**
+   * Суммарное время построения планов в наносекундах.
+   */
+  private final LongAdder planNanos = new LongAdder();
+
+  @Override
+  public void injected(Class<?> beanType, long nanos) {
+    injections.computeIfAbsent(beanType, type -> new LongAdder()).increment();
+  }
+
+  @Override
+  public void created(String interfaceName, Class<?> implementationClass, long nanos) {
+    CreationStats stats = creations.computeIfAbsent(interfaceName, name -> new CreationStats());
+    stats.count.increment();
+    stats.totalNanos.add(nanos);
+    stats.maxNanos.accumulate(nanos);
+  }
+
+  @Override
+  public void planRequested(Class<?> beanType) {
+    planRequests.increment();
+  }
+
+  @Override
+  public void planCreated(Class<?> beanType, boolean generated, long nanos) {
+    plansCreated.increment();
+    planNanos.add(nanos);
+  }
+
+  /**
+   * Возвращает количество внедрений в объекты класса.
+   *
+   * @param beanType класс бина
+   * @return количество вызовов {@link Injector#inject(Object)}
+   */
+  public long getInjectionCount(Class<?> beanType) {
+    LongAdder count = injections.get(beanType);
+    return count == null ? 0 : count.sum();
+  }
+
+  /**
+   * Возвращает количество созданных экземпляров реализации интерфейса.
+   *
+   * @param interfaceName имя интерфейса
+   * @return количество экземпляров
+   */
+  public long getCreationCount(String interfaceName) {
+    CreationStats stats = creations.get(interfaceName);
+    return stats == null ? 0 : stats.count.sum();
+  }
+
+  /**
+   * Возвращает суммарное время создания экземпляров реализации интерфейса.
+   *
+   * @param interfaceName имя интерфейса
+   * @return время в наносекундах
+   */
+  public long getCreationNanos(String interfaceName) {
+    CreationStats stats = creations.get(interfaceName);
+    return stats == null ? 0 : stats.totalNanos.sum();
+  }
+
+  /**
+   * Возвращает количество попаданий в кэш планов внедрения.
+   *
+   * @return количество обращений, для которых план уже был построен
+   */
+  public long getPlanCacheHits() {
+    return Math.max(0, planRequests.sum() - plansCreated.sum());
+  }
+
+  /**
+   * Возвращает количество промахов кэша планов внедрения.
+   *
+   * @return количество построенных планов
+   */
+  public long getPlanCacheMisses() {
+    return plansCreated.sum();
+  }
+
+  /**
+   * Форматирует отчет: привязки по убыванию суммарного времени создания,
+   * затем внедрения по классам и статистика кэша планов.
+   *
+   * @return текст отчета
+   */
+  public String toTable() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format(Locale.ROOT, "%-70s %8s %12s %12s%n", "Привязка", "создано", "всего, мкс", "макс, мкс"));
+    List<Map.Entry<String, CreationStats>> entries = new ArrayList<>(creations.entrySet());
+    entries.sort((a, b) -> Long.compare(b.getValue().totalNanos.sum(), a.getValue().totalNanos.sum()));
+    for (Map.Entry<String, CreationStats> entry : entries) {
+      CreationStats stats = entry.getValue();
+      sb.append(String.format(Locale.ROOT, "%-70s %8d %12.1f %12.1f%n", entry.getKey(), stats.count.sum(),
+          stats.totalNanos.sum() / 1000.0, stats.maxNanos.get() / 1000.0));
+    }
+    sb.append(String.format(Locale.ROOT, "%n%-70s %8s%n", "Класс бина", "внедрений"));
+    for (Map.Entry<Class<?>, LongAdder> entry : injections.entrySet()) {
+      sb.append(String.format(Locale.ROOT, "%-70s %8d%n", entry.getKey().getName(), entry.getValue().sum()));
+    }
+    sb.append(String.format(Locale.ROOT, "%nКэш планов: попаданий %d, промахов %d, построение %.1f мкс%n",
+        getPlanCacheHits(), getPlanCacheMisses(), planNanos.sum() / 1000.0));
+    return sb.toString();
+  }
+
+  /**
+   * Статистика создания экземпляров одной привязки.
+   */
+  private static final class CreationStats {
+    /**
+     * Количество созданных экземпляров.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Суммарное время создания в наносекундах.
+     */
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * Наибольшее время создания в наносекундах.
+     */
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+  }
+}
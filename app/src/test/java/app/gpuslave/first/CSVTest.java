@@ -2,10 +2,25 @@ package app.gpuslave.first;
 
 import org.junit.Test;
 import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Calendar;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Test class for the CSV parser functionality.
@@ -13,7 +28,11 @@ import java.util.stream.Collectors;
  */
 public class CSVTest {
 
-  private final String csvFilePath = "/home/gpuslave/pet/java-gpuslave/foreign_names.csv";
+  /**
+   * Path to the sample data set. Gradle passes it in the {@code csv.file}
+   * system property; the default resolves it from the {@code app} directory.
+   */
+  private final String csvFilePath = System.getProperty("csv.file", "../foreign_names.csv");
 
   /**
    * Test that the CSV file is successfully loaded and parsed.
@@ -146,4 +165,352 @@ public class CSVTest {
       assertTrue("Data should be malformed when using wrong separator", isMalformed);
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Test that a query filter gives the same people as filtering the full list.
+   */
+  @Test
+  public void testQueryFilter() {
+    List<CSV.Person> people = CSV.parseCSV(csvFilePath, ';');
+    Calendar calendar = Calendar.getInstance();
+    List<Integer> expected = people.stream()
+        .filter(person -> {
+          calendar.setTime(person.getDateOfBirth());
+          return person.getSalary() * 1.1 > 5000 && calendar.get(Calendar.YEAR) >= 1980
+              && person.getGender() == 'M';
+        })
+        .map(CSV.Person::getId)
+        .collect(Collectors.toList());
+
+    PersonQuery query = PersonQuery.where("salary * 1.1 > 5000 && birthYear >= 1980 && male == 1");
+    List<Integer> actual = CSV.parseCSV(csvFilePath, ';', query).stream()
+        .map(CSV.Person::getId)
+        .collect(Collectors.toList());
+
+    assertFalse("The filter should select some people", expected.isEmpty());
+    assertTrue("The filter should reject some people", expected.size() < people.size());
+    assertEquals(expected, actual);
+  }
+
+  /**
+   * Test that query projection computes derived columns for selected rows.
+   */
+  @Test
+  public void testQueryProjection() {
+    PersonQuery query = PersonQuery.where("id == 28281")
+        .select("raise", "salary * 0.1")
+        .select("age", "2000 - birthYear");
+    List<PersonQuery.Row> rows = CSV.queryCSV(csvFilePath, ';', query);
+
+    assertEquals(1, rows.size());
+    PersonQuery.Row row = rows.get(0);
+    assertEquals("Aahan", row.getName());
+    assertEquals(480.0, row.get("raise"), 0.001);
+    assertEquals(List.of("raise", "age"), query.getSelectedColumns());
+  }
+
+  /**
+   * Test that people written by PersonCsvWriter, plain and gzip, read back
+   * unchanged, including names with backslashes.
+   */
+  @Test
+  public void testWriterRoundTrip() throws Exception {
+    List<CSV.Person> people = new ArrayList<>(CSV.parseCSV(csvFilePath, ';'));
+    CSV.Person first = people.get(0);
+    people.add(new CSV.Person(1, "O\\Brien", 'M', first.getDateOfBirth(), first.getDivision(), 100));
+    people.add(new CSV.Person(2, "Back\\\"slash\\", 'F', first.getDateOfBirth(), first.getDivision(), 200));
+    Path plain = Files.createTempFile("persons", ".csv");
+    Path gzip = Files.createTempFile("persons", ".csv.gz");
+    try {
+      try (PersonCsvWriter writer = new PersonCsvWriter(plain, ';', false, 256)) {
+        writer.writeAll(people);
+        assertEquals(people.size(), writer.getRowsWritten());
+      }
+      try (PersonCsvWriter writer = new PersonCsvWriter(gzip, ';', true)) {
+        writer.writeAll(people);
+      }
+
+      assertSamePeople(people, CSV.parseCSV(plain.toString(), ';'));
+      try (InputStream in = new GZIPInputStream(Files.newInputStream(gzip))) {
+        assertSamePeople(people, CSV.parseCSV(in, ';'));
+      }
+      assertTrue("Gzip output should be smaller", Files.size(gzip) < Files.size(plain));
+    } finally {
+      Files.deleteIfExists(plain);
+      Files.deleteIfExists(gzip);
+    }
+  }
+
+  private static void assertSamePeople(List<CSV.Person> expected, List<CSV.Person> actual) {
+    SimpleDateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy");
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      CSV.Person e = expected.get(i);
+      CSV.Person a = actual.get(i);
+      assertEquals(e.getId(), a.getId());
+      assertEquals(e.getName(), a.getName());
+      assertEquals(e.getGender(), a.getGender());
+      assertEquals(dateFormat.format(e.getDateOfBirth()), dateFormat.format(a.getDateOfBirth()));
+      assertEquals(e.getDivision().getTitle(), a.getDivision().getTitle());
+      assertEquals(e.getSalary(), a.getSalary());
+    }
+  }
+
+  /**
+   * Test that the pipelined parser delivers the same people in file order.
+   */
+  @Test
+  public void testPipelinedParsing() throws Exception {
+    List<CSV.Person> expected = CSV.parseCSV(csvFilePath, ';');
+    List<CSV.Person> actual = new ArrayList<>();
+    long count;
+    try (InputStream in = Files.newInputStream(Path.of(csvFilePath))) {
+      count = CSV.parseCSVPipelined(in, ';', 4, actual::add);
+    }
+    assertEquals(expected.size(), count);
+    assertSamePeople(expected, actual);
+
+    Map<String, CSV.Division> divisions = new HashMap<>();
+    for (CSV.Person person : actual) {
+      assertSame(divisions.computeIfAbsent(person.getDivision().getTitle(), title -> person.getDivision()),
+          person.getDivision());
+    }
+  }
+
+  /**
+   * Test that a failure in the consumer stops the pipeline.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testPipelinedConsumerFailure() throws Exception {
+    try (InputStream in = Files.newInputStream(Path.of(csvFilePath))) {
+      CSV.parseCSVPipelined(in, ';', 2, person -> {
+        throw new IllegalStateException("stop");
+      });
+    }
+  }
+
+  /**
+   * Test that records with a line break inside a quoted field, as written by
+   * PersonCsvWriter, are parsed whole by the pipelined parser and that line
+   * numbers of later errors still count physical lines.
+   */
+  @Test
+  public void testPipelinedMultilineRecords() throws Exception {
+    CSV.Division division = new CSV.Division("A");
+    Calendar calendar = Calendar.getInstance();
+    calendar.clear();
+    calendar.set(1990, Calendar.FEBRUARY, 1);
+    List<CSV.Person> people = List.of(
+        new CSV.Person(1, "Ann \"Q\"\nSmith", 'F', calendar.getTime(), division, 100),
+        new CSV.Person(2, "Bob;Jr", 'M', calendar.getTime(), division, 200),
+        new CSV.Person(3, "O\\Brien", 'M', calendar.getTime(), division, 300));
+    Path file = Files.createTempFile("persons", ".csv");
+    try {
+      try (PersonCsvWriter writer = new PersonCsvWriter(file, ';', false)) {
+        writer.writeAll(people);
+      }
+      List<CSV.Person> actual = new ArrayList<>();
+      try (InputStream in = Files.newInputStream(file)) {
+        assertEquals(3, CSV.parseCSVPipelined(in, ';', 2, CsvErrorSink.failFast(), actual::add));
+      }
+      assertSamePeople(people, actual);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+
+    String csv = "id;name;gender;BirtDate;Division;Salary\n"
+        + "1;\"Ann\nSmith\";Female;01.02.1990;A;100\n"
+        + "2;Bob;Male;1990-02-01;A;200\n"
+        + "3;\"Eve\nAdams\";Female;1990-02-01;A;300\n";
+    CsvErrorSink errors = CsvErrorSink.collect(10);
+    List<CSV.Person> parsed = new ArrayList<>();
+    CSV.parseCSVPipelined(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ';', 2, errors,
+        parsed::add);
+    assertEquals("Ann\nSmith", parsed.get(0).getName());
+    assertEquals(List.of(4L, 5L), errors.getSampleLines(CsvErrorSink.ErrorType.BAD_DATE));
+
+    // the sequential parser reports the first line of a record as well
+    CsvErrorSink sequential = CsvErrorSink.collect(10);
+    CSV.parseCSV(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ';', sequential);
+    assertEquals(List.of(4L, 5L), sequential.getSampleLines(CsvErrorSink.ErrorType.BAD_DATE));
+  }
+
+  /**
+   * Test that a fail-fast error in a later batch is thrown only after the
+   * people of all earlier batches reached the consumer.
+   */
+  @Test
+  public void testPipelinedFailFastOrder() {
+    int bad = CSV.PIPELINE_BATCH_SIZE * 2 + 5;
+    StringBuilder csv = new StringBuilder("id;name;gender;BirtDate;Division;Salary\n");
+    for (int i = 0; i < CSV.PIPELINE_BATCH_SIZE * 4; i++) {
+      csv.append(i).append(";P").append(i).append(";Male;")
+          .append(i == bad ? "1990-02-01" : "01.02.1990").append(";A;100\n");
+    }
+    List<CSV.Person> consumed = new ArrayList<>();
+    try {
+      CSV.parseCSVPipelined(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), ';', 4,
+          CsvErrorSink.failFast(), consumed::add);
+      fail("Fail-fast policy should stop at the bad row");
+    } catch (CsvErrorSink.RowException e) {
+      assertEquals(bad + 2, e.getError().getLine());
+    }
+    assertEquals(CSV.PIPELINE_BATCH_SIZE * 2, consumed.size());
+    assertEquals(CSV.PIPELINE_BATCH_SIZE * 2 - 1, consumed.get(consumed.size() - 1).getId());
+  }
+
+  /**
+   * Test that a consumer failure closes the input, so that a reader blocked
+   * on a stream that never ends is released.
+   */
+  @Test
+  public void testPipelinedFailureReleasesBlockedReader() throws Exception {
+    try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Socket client = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+        Socket socket = server.accept()) {
+      // one full batch reaches the consumer while the stream stays open
+      StringBuilder csv = new StringBuilder("id;name;gender;BirtDate;Division;Salary\n");
+      for (int i = 0; i < CSV.PIPELINE_BATCH_SIZE; i++) {
+        csv.append(i).append(";Ann;Female;01.02.1990;A;100\n");
+      }
+      client.getOutputStream().write(csv.toString().getBytes(StandardCharsets.UTF_8));
+      client.getOutputStream().flush();
+      try {
+        CSV.parseCSVPipelined(socket.getInputStream(), ';', 1, person -> {
+          throw new IllegalStateException("stop");
+        });
+        fail("Consumer failure should stop the pipeline");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+      assertTrue(socket.isClosed());
+      long deadline = System.nanoTime() + 5_000_000_000L;
+      while (pipelineThreadAlive() && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      assertFalse("Pipeline threads should finish", pipelineThreadAlive());
+    }
+  }
+
+  private static boolean pipelineThreadAlive() {
+    return Thread.getAllStackTraces().keySet().stream()
+        .anyMatch(thread -> thread.getName().startsWith("csv-pipeline-") && thread.isAlive());
+  }
+
+  /**
+   * Test that an empty stream is rejected by the pipelined parser.
+   */
+  @Test(expected = RuntimeException.class)
+  public void testPipelinedEmptyInput() {
+    CSV.parseCSVPipelined(new ByteArrayInputStream("".getBytes(StandardCharsets.UTF_8)), ';', 2, person -> { });
+  }
+
+  /**
+   * Test that bad rows are counted by type with their line numbers and that
+   * the policies skip them or stop parsing.
+   */
+  @Test
+  public void testErrorSink() {
+    String csv = "id;name;gender;BirtDate;Division;Salary\n"
+        + "1;Ann;Female;01.02.1990;A;100\n"
+        + "2;Bob;Male\n"
+        + "x;Eve;Female;01.02.1990;A;100\n"
+        + "4;Dan;Male;1990-02-01;B;200\n"
+        + "5;Kim;Female;03.04.1985;B;300\n";
+
+    CsvErrorSink errors = CsvErrorSink.collect(1);
+    List<CSV.Person> people = CSV.parseCSV(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ';',
+        errors);
+    assertEquals(2, people.size());
+    assertEquals(3, errors.getTotal());
+    assertEquals(List.of(3L), errors.getSampleLines(CsvErrorSink.ErrorType.SHORT_ROW));
+    assertEquals(List.of(4L), errors.getSampleLines(CsvErrorSink.ErrorType.BAD_NUMBER));
+    assertEquals(List.of(5L), errors.getSampleLines(CsvErrorSink.ErrorType.BAD_DATE));
+    assertEquals(1, errors.getCollected().size());
+    assertTrue(errors.toSummary().contains("BAD_DATE"));
+
+    CsvErrorSink counts = CsvErrorSink.countOnly();
+    long count = CSV.parseCSVPipelined(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ';', 2,
+        counts, person -> { });
+    assertEquals(2, count);
+    assertEquals(1, counts.getCount(CsvErrorSink.ErrorType.BAD_DATE));
+    assertTrue(counts.getSampleLines(CsvErrorSink.ErrorType.BAD_DATE).isEmpty());
+
+    try {
+      CSV.parseCSV(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ';', CsvErrorSink.failFast());
+      fail("Fail-fast policy should stop at the first bad row");
+    } catch (CsvErrorSink.RowException e) {
+      assertEquals(CsvErrorSink.ErrorType.SHORT_ROW, e.getError().getType());
+      assertEquals(3, e.getError().getLine());
+    }
+
+    try {
+      CSV.parseCSV(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ';', CsvErrorSink.collectUpTo(2));
+      fail("Collect-up-to policy should stop after the limit");
+    } catch (CsvErrorSink.RowException e) {
+      assertEquals(5, e.getError().getLine());
+    }
+    assertEquals(2, CSV.parseCSV(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ';',
+        CsvErrorSink.collectUpTo(3)).size());
+
+    // the overloads without a sink report what they skipped
+    PrintStream originalErr = System.err;
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+    try {
+      assertEquals(2, CSV.parseCSV(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ';').size());
+    } finally {
+      System.setErr(originalErr);
+    }
+    assertTrue(err.toString(StandardCharsets.UTF_8).contains("BAD_DATE"));
+  }
+
+  /**
+   * Test that the external sorter spills runs and merges them, in several
+   * passes when the fan-in is small, into a stable order equal to an
+   * in-memory sort, and that it rejects a budget the parser alone exceeds.
+   */
+  @Test
+  public void testExternalSort() throws Exception {
+    List<CSV.Person> expected = new ArrayList<>(CSV.parseCSV(csvFilePath, ';'));
+    expected.sort(PersonExternalSorter.SortKey.SALARY.comparator());
+
+    Path tempDirectory = Files.createTempDirectory("persons-sort");
+    try {
+      PersonExternalSorter sorter = new PersonExternalSorter(PersonExternalSorter.SortKey.SALARY)
+          .memoryBudget(1 << 20)
+          .tempDirectory(tempDirectory)
+          .workers(1)
+          .maxFanIn(3);
+      List<CSV.Person> actual = new ArrayList<>();
+      long count;
+      try (InputStream in = Files.newInputStream(Path.of(csvFilePath))) {
+        count = sorter.sort(in, ';', actual::add);
+      }
+      assertEquals(expected.size(), count);
+      assertTrue("The data should be spilled to several runs", sorter.getLastRunCount() > 3);
+      assertTrue("More runs than the fan-in need several passes", sorter.getLastMergePasses() > 1);
+      assertSamePeople(expected, actual);
+      try (Stream<Path> files = Files.list(tempDirectory)) {
+        assertEquals("Run files should be deleted", 0, files.count());
+      }
+
+      sorter.memoryBudget(PersonExternalSorter.DEFAULT_MEMORY_BUDGET);
+      try (InputStream in = Files.newInputStream(Path.of(csvFilePath))) {
+        assertEquals(expected.size(), sorter.sort(in, ';', person -> { }));
+      }
+      assertEquals(0, sorter.getLastRunCount());
+
+      // the parser's batches in flight alone exceed this budget
+      sorter.memoryBudget(256 << 10).workers(3);
+      try (InputStream in = Files.newInputStream(Path.of(csvFilePath))) {
+        sorter.sort(in, ';', person -> { });
+        fail("A budget below the pipeline reserve should be rejected");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+    } finally {
+      Files.deleteIfExists(tempDirectory);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package app.gpuslave.first;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Smoke tests for the Compare and ConcurrentCompare harnesses: small runs
+ * checked for the shape of their reports.
+ */
+public class CompareTest {
+
+  /**
+   * Test that the list comparison reports every collection and operation,
+   * with no result for operations the collection does not support.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testCompareReport() {
+    Compare.Report report = new Compare(50, 100)
+        .addCollection("ArrayList", ArrayList::new)
+        .addCollection("LinkedList", LinkedList::new)
+        .addCollection("Container", Compare::containerList)
+        .withOperations(Compare.Operation.ADD_TO_END, Compare.Operation.ADD_TO_BEGINNING, Compare.Operation.GET)
+        .run();
+
+    assertEquals(List.of("ArrayList", "LinkedList", "Container"), report.getCollections());
+    assertEquals(3, report.getOperations().size());
+    assertEquals(50, report.histogram(Compare.Operation.GET, "LinkedList").getCount());
+    assertNull(report.histogram(Compare.Operation.ADD_TO_BEGINNING, "Container"));
+    assertTrue(report.nanosPerOp(Compare.Operation.ADD_TO_END, "ArrayList") > 0);
+
+    String[] csv = report.toCsv().split("\n");
+    assertEquals(1 + 3 * 3, csv.length);
+    assertTrue(csv[0].startsWith("collection,operation,ns_per_op"));
+
+    Map<String, Object> json = (Map<String, Object>) Json.parse(report.toJson());
+    assertEquals(50.0, json.get("iterations"));
+    assertEquals(9, ((List<Object>) json.get("results")).size());
+  }
+
+  /**
+   * Test that the concurrent comparison produces one row per collection,
+   * thread kind and thread count, with every operation recorded and the
+   * collection name quoted in CSV.
+   */
+  @Test
+  public void testConcurrentCompareReport() throws Exception {
+    ConcurrentCompare.Report report = new ConcurrentCompare()
+        .addCollection("synchronized,List",
+            () -> ConcurrentCompare.SharedCollection.ofList(Collections.synchronizedList(new ArrayList<>())))
+        .withThreadCounts(1, 2)
+        .withThreadKinds(ConcurrentCompare.ThreadKind.PLATFORM, ConcurrentCompare.ThreadKind.VIRTUAL)
+        .withOperationsPerThread(200)
+        .withCollectionSize(16)
+        .run();
+
+    assertEquals(4, report.getRows().size());
+    for (ConcurrentCompare.Row row : report.getRows()) {
+      assertEquals("synchronized,List", row.getCollection());
+      assertEquals(200L * row.getThreads(), row.getLatency().getCount());
+      assertTrue(row.getThroughput() > 0);
+    }
+    String[] csv = report.toCsv().split("\n");
+    assertEquals(1 + 4, csv.length);
+    assertTrue(csv[1].startsWith("\"synchronized,List\","));
+  }
+
+  /**
+   * Test that a failing workload is reported instead of producing a row.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testConcurrentCompareWorkloadFailure() throws Exception {
+    new ConcurrentCompare()
+        .addCollection("failing", () -> ConcurrentCompare.SharedCollection.ofList(new ArrayList<>() {
+          @Override
+          public Integer get(int index) {
+            throw new UnsupportedOperationException("get");
+          }
+        }))
+        .withThreadCounts(2)
+        .withWritePercent(0)
+        .withOperationsPerThread(10)
+        .run();
+  }
+}
@@ -3,6 +3,16 @@ package app.gpuslave.first;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
 public class ContainerTest {
 
   @Test
@@ -59,4 +69,211 @@ public class ContainerTest {
       assertEquals(Integer.valueOf(i), container.get(i));
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testAddAll() {
+    Container<Integer> container = new Container<>();
+    container.add(0);
+    assertTrue(container.addAll(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12)));
+    assertFalse(container.addAll(new ArrayList<Integer>()));
+
+    Container<Integer> other = new Container<>();
+    other.add(13);
+    other.add(14);
+    assertTrue(container.addAll(other));
+
+    assertEquals(15, container.size());
+    for (int i = 0; i < 15; i++) {
+      assertEquals(Integer.valueOf(i), container.get(i));
+    }
+  }
+
+  @Test
+  public void testRemoveIf() {
+    Container<Integer> container = new Container<>();
+    for (int i = 0; i < 20; i++) {
+      container.add(i);
+    }
+
+    assertTrue(container.removeIf(x -> x % 3 == 0));
+    assertFalse(container.removeIf(x -> x > 100));
+
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      if (i % 3 != 0) {
+        expected.add(i);
+      }
+    }
+    assertEquals(expected.size(), container.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i), container.get(i));
+    }
+  }
+
+  @Test
+  public void testRemoveIfPredicateFailure() {
+    Container<Integer> container = new Container<>();
+    for (int i = 0; i < 100; i++) {
+      container.add(i);
+    }
+    try {
+      container.removeIf(x -> {
+        if (x == 90) {
+          throw new IllegalStateException("stop");
+        }
+        return x % 2 == 0;
+      });
+      fail("The predicate failure should propagate");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertEquals(100, container.size());
+    for (int i = 0; i < 100; i++) {
+      assertEquals(Integer.valueOf(i), container.get(i));
+    }
+  }
+
+  @Test
+  public void testForEachAndIterator() {
+    Container<String> container = new Container<>();
+    container.addAll(Arrays.asList("a", "b", "c"));
+
+    StringBuilder viaForEach = new StringBuilder();
+    container.forEach(viaForEach::append);
+    assertEquals("abc", viaForEach.toString());
+
+    StringBuilder viaIterator = new StringBuilder();
+    for (String s : container) {
+      viaIterator.append(s);
+    }
+    assertEquals("abc", viaIterator.toString());
+  }
+
+  @Test(expected = ConcurrentModificationException.class)
+  public void testForEachConcurrentModification() {
+    Container<Integer> container = new Container<>();
+    container.addAll(Arrays.asList(1, 2, 3));
+    container.forEach(container::add);
+  }
+
+  @Test
+  public void testStream() {
+    Container<Integer> container = new Container<>();
+    for (int i = 1; i <= 1000; i++) {
+      container.add(i);
+    }
+
+    Spliterator<Integer> spliterator = container.spliterator();
+    assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+    assertTrue(spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+    assertEquals(1000, spliterator.estimateSize());
+
+    Spliterator<Integer> prefix = spliterator.trySplit();
+    assertNotNull(prefix);
+    assertEquals(1000, prefix.estimateSize() + spliterator.estimateSize());
+
+    assertEquals(500500, container.stream().mapToInt(Integer::intValue).sum());
+    assertEquals(500500, container.parallelStream().mapToInt(Integer::intValue).sum());
+    assertEquals(container.stream().collect(Collectors.toList()),
+        container.parallelStream().collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testSortAndBinarySearch() {
+    Container<String> container = new Container<>();
+    container.addAll(Arrays.asList("pear", "apple", "fig", "banana"));
+
+    container.sort(null);
+    assertEquals("apple", container.get(0));
+    assertEquals("banana", container.get(1));
+    assertEquals("fig", container.get(2));
+    assertEquals("pear", container.get(3));
+    assertEquals(2, container.binarySearch("fig", null));
+    assertTrue(container.binarySearch("cherry", null) < 0);
+
+    container.sort(Comparator.comparingInt(String::length));
+    assertEquals("fig", container.get(0));
+    assertEquals("pear", container.get(1));
+    assertEquals(0, container.binarySearch("abc", Comparator.comparingInt(String::length)));
+  }
+
+  @Test
+  public void testParallelSort() {
+    Container<Integer> container = new Container<>();
+    List<Integer> expected = new ArrayList<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 50000; i++) {
+      int value = random.nextInt();
+      container.add(value);
+      expected.add(value);
+    }
+
+    container.parallelSort(Comparator.reverseOrder());
+    expected.sort(Comparator.reverseOrder());
+
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i), container.get(i));
+    }
+    int index = container.binarySearch(expected.get(1234), Comparator.reverseOrder());
+    assertEquals(expected.get(1234), container.get(index));
+  }
+
+  @Test
+  public void testEnsureCapacityAndTrimToSize() {
+    Container<Integer> container = new Container<>(0);
+    assertEquals(0, container.capacity());
+
+    container.ensureCapacity(100);
+    assertEquals(100, container.capacity());
+    for (int i = 0; i < 100; i++) {
+      container.add(i);
+    }
+    assertEquals(100, container.capacity());
+
+    container.removeIf(x -> x >= 10);
+    long before = container.memoryFootprint();
+    container.trimToSize();
+    assertEquals(10, container.capacity());
+    assertTrue(container.memoryFootprint() < before);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(Integer.valueOf(i), container.get(i));
+    }
+
+    container.removeIf(x -> true);
+    container.trimToSize();
+    assertEquals(0, container.capacity());
+    container.add(42);
+    assertEquals(Integer.valueOf(42), container.get(0));
+  }
+
+  @Test
+  public void testGrowthPolicies() {
+    Container<Integer> linear = new Container<>(4, Container.GrowthPolicy.linear(3));
+    for (int i = 0; i < 5; i++) {
+      linear.add(i);
+    }
+    assertEquals(7, linear.capacity());
+
+    Container<Integer> factor = new Container<>(10, Container.GrowthPolicy.factor(1.5));
+    for (int i = 0; i < 11; i++) {
+      factor.add(i);
+    }
+    assertEquals(15, factor.capacity());
+
+    Container<Integer> capped = new Container<>(100,
+        Container.GrowthPolicy.doubling().withMaxIncrement(16));
+    for (int i = 0; i < 101; i++) {
+      capped.add(i);
+    }
+    assertEquals(116, capped.capacity());
+
+    capped.addAll(new ArrayList<>(Collections.nCopies(500, 0)));
+    assertEquals(601, capped.size());
+    assertEquals(601, capped.capacity());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidGrowthFactor() {
+    Container.GrowthPolicy.factor(1.0);
+  }
+}
@@ -7,6 +7,11 @@ import static org.junit.Assert.*;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 public class ExpressionEvaluatorTest {
 
@@ -64,4 +69,106 @@ public class ExpressionEvaluatorTest {
       newEvaluator.close();
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testCompiledExpression() {
+    assertEquals(1.0, evaluator.evaluate("2 + 3 > 4 && 1 != 2"), 0.001);
+
+    CompiledExpression filter = ExpressionEvaluator.compile("salary * 1.1 > 5000 || id == 7",
+        List.of("id", "salary"));
+    assertTrue(filter.test(1, 4800));
+    assertFalse(filter.test(1, 4500));
+    assertTrue(filter.test(7, 4500));
+
+    CompiledExpression range = ExpressionEvaluator.compile("(a - b) * 2 <= 10", List.of("a", "b"));
+    assertTrue(range.test(8, 3));
+    assertFalse(range.test(9, 3));
+
+    CompiledExpression mixed = ExpressionEvaluator.compile("a / b - 1 >= 0 && a_1 == 2", List.of("a", "b", "a_1"));
+    assertTrue(mixed.test(6, 3, 2));
+    assertFalse(mixed.test(2, 3, 2));
+
+    assertTrue(ExpressionEvaluator.isIdentifier("_salary2"));
+    assertFalse(ExpressionEvaluator.isIdentifier("a-b"));
+    assertFalse(ExpressionEvaluator.isIdentifier("2a"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCompileUnknownVariable() {
+    ExpressionEvaluator.compile("salary > bonus", List.of("salary"));
+  }
+
+  @Test
+  public void testFixedPointExpression() {
+    CompiledExpression raise = ExpressionEvaluator.compile("salary * 1.1", List.of("salary"), 2,
+        RoundingMode.HALF_EVEN);
+    assertEquals(528000L, raise.evaluateScaled(480000L));
+    long salary = raise.toScaled(new BigDecimal("4800"));
+    assertEquals(new BigDecimal("5280.00"), raise.toDecimal(raise.evaluateScaled(salary)));
+
+    CompiledExpression sum = ExpressionEvaluator.compile("a + b == 0.3", List.of("a", "b"), 2, RoundingMode.HALF_UP);
+    assertTrue(sum.test(0.1, 0.2));
+    assertFalse(ExpressionEvaluator.compile("a + b == 0.3", List.of("a", "b")).test(0.1, 0.2));
+
+    assertEquals(67L, ExpressionEvaluator.compile("2 / 3", List.of(), 2, RoundingMode.HALF_UP).evaluateScaled());
+    assertEquals(66L, ExpressionEvaluator.compile("2 / 3", List.of(), 2, RoundingMode.DOWN).evaluateScaled());
+    assertEquals(-67L, ExpressionEvaluator.compile("(0 - 2) / 3", List.of(), 2, RoundingMode.FLOOR).evaluateScaled());
+    assertEquals(2L, ExpressionEvaluator.compile("5 / 2", List.of(), 0, RoundingMode.HALF_EVEN).evaluateScaled());
+    assertEquals(4L, ExpressionEvaluator.compile("7 / 2", List.of(), 0, RoundingMode.HALF_EVEN).evaluateScaled());
+
+    // the intermediate products overflow a long, the results do not
+    CompiledExpression wide = ExpressionEvaluator.compile("a * 1.1", List.of("a"), 6, RoundingMode.HALF_EVEN);
+    assertEquals(new BigDecimal("11000000.000000"),
+        wide.toDecimal(wide.evaluateScaled(wide.toScaled(new BigDecimal("10000000")))));
+    CompiledExpression quotient = ExpressionEvaluator.compile("a / 3", List.of("a"), 6, RoundingMode.HALF_UP);
+    assertEquals(new BigDecimal("3333333333.333333"),
+        quotient.toDecimal(quotient.evaluateScaled(quotient.toScaled(new BigDecimal("10000000000")))));
+  }
+
+  @Test(expected = ArithmeticException.class)
+  public void testFixedPointOverflow() {
+    ExpressionEvaluator.compile("a * a", List.of("a"), 6, RoundingMode.HALF_EVEN)
+        .evaluateScaled(Long.MAX_VALUE / 1000);
+  }
+
+  @Test
+  public void testQuietEvaluation() {
+    EvaluationResult result = evaluator.evaluateQuietly("salary * 1.1 > 5000 && x < 3",
+        Map.of("salary", 4800.0, "x", 2.0));
+    assertTrue(result.isSuccess());
+    assertEquals(1.0, result.getValue(), 0.001);
+    assertEquals(14.0, evaluator.evaluateQuietly("2 * (5 + 2)").getValue(), 0.001);
+    assertEquals(EvaluationResult.Error.MISSING_OPERAND,
+        ExpressionEvaluator.evaluateSilently("x +", Map.of("x", 1.0)).getError());
+
+    assertFailure(EvaluationResult.Error.DIVISION_BY_ZERO, 3, "10 / (2 - 2)");
+    assertFailure(EvaluationResult.Error.UNKNOWN_VARIABLE, 4, "2 + y");
+    assertFailure(EvaluationResult.Error.UNBALANCED_BRACKETS, 0, "(2 + 3");
+    assertFailure(EvaluationResult.Error.UNBALANCED_BRACKETS, 5, "2 + 3)");
+    assertFailure(EvaluationResult.Error.MISSING_OPERAND, 4, "2 + * 3");
+    assertFailure(EvaluationResult.Error.MISSING_OPERAND, 3, "2 +");
+    assertFailure(EvaluationResult.Error.MISSING_OPERATOR, 2, "2 3");
+    assertFailure(EvaluationResult.Error.INVALID_NUMBER, 0, "1.2.3 + 1");
+    assertFailure(EvaluationResult.Error.UNEXPECTED_CHARACTER, 2, "2 % 3");
+  }
+
+  private void assertFailure(EvaluationResult.Error error, int position, String expression) {
+    List<EvaluationResult> reported = new ArrayList<>();
+    evaluator.setDiagnosticsListener((source, result) -> reported.add(result));
+    EvaluationResult result = evaluator.evaluateQuietly(expression);
+    assertFalse(result.isSuccess());
+    assertEquals(expression, error, result.getError());
+    assertEquals(expression, position, result.getPosition());
+    assertEquals(List.of(result), reported);
+  }
+
+  @Test
+  public void testEvaluateKeepsCause() {
+    try {
+      evaluator.evaluate("10 / 0");
+      fail("Division by zero should fail");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getCause() instanceof ArithmeticException);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package app.gpuslave.first;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ExpressionGraphTest {
+
+  @Test
+  public void testRecalculatesAffectedCells() {
+    ExpressionGraph graph = new ExpressionGraph();
+    graph.set("base", 100);
+    graph.set("rate", 0.2);
+    graph.define("tax", "base * rate");
+    graph.define("total", "base + tax");
+    graph.define("bonus", "rate * 1000");
+    graph.define("flag", "total > 150");
+
+    assertEquals(120.0, graph.get("total"), 0.001);
+    assertEquals(0.0, graph.get("flag"), 0.001);
+
+    assertEquals(3, graph.set("base", 200));
+    assertEquals(240.0, graph.get("total"), 0.001);
+    assertEquals(1.0, graph.get("flag"), 0.001);
+    assertEquals(200.0, graph.get("bonus"), 0.001);
+
+    // flag is recalculated but stays 1, so nothing below it is touched
+    assertEquals(4, graph.setAll(Map.of("base", 300.0, "rate", 0.1)));
+    assertEquals(330.0, graph.get("total"), 0.001);
+    assertEquals(0, graph.set("base", 300));
+
+    graph.define("rate", "0.5");
+    assertEquals(450.0, graph.get("total"), 0.001);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsCycle() {
+    ExpressionGraph graph = new ExpressionGraph();
+    graph.define("a", "b + 1");
+    graph.define("b", "c * 2");
+    graph.define("c", "a - 1");
+  }
+
+  @Test
+  public void testParallelLevels() {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      ExpressionGraph graph = new ExpressionGraph().parallel(executor, 16);
+      graph.set("x", 1);
+      StringBuilder sum = new StringBuilder("0");
+      for (int i = 0; i < 200; i++) {
+        graph.define("c" + i, "x * " + i);
+        sum.append(" + c").append(i);
+      }
+      graph.define("sum", sum.toString());
+
+      assertEquals(201, graph.set("x", 2));
+      assertEquals(2.0 * 199 * 200 / 2, graph.get("sum"), 0.001);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testRejectsInvalidName() {
+    ExpressionGraph graph = new ExpressionGraph();
+    for (String name : new String[] {"", "2a", "a-b", "a b"}) {
+      try {
+        graph.set(name, 1);
+        fail("Should reject " + name);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+}
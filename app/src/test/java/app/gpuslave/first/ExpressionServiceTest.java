@@ -0,0 +1,63 @@
+package app.gpuslave.first;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+public class ExpressionServiceTest {
+
+  @Test
+  public void testPipelinedBatch() throws Exception {
+    try (ExpressionService service = new ExpressionService(0).start();
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), service.getPort())) {
+      OutputStream out = socket.getOutputStream();
+      out.write(("salary * 1.1 > 5000; salary=4800\n"
+          + "(a + b) / 2; a=1; b=-2\n"
+          + "10 / (x - 1); x=1\n"
+          + "a + ; a=1\n"
+          + "a + b; a=oops\n"
+          + "salary * 1.1 > 5000; salary=100\n"
+          + "1 + 1\n"
+          + "1/0 +\n"
+          + "2 + 2\n").getBytes(StandardCharsets.UTF_8));
+      out.flush();
+
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      assertEquals("OK 1.0", in.readLine());
+      assertEquals("OK -0.5", in.readLine());
+      assertEquals("ERR DIVISION_BY_ZERO 3", in.readLine());
+      assertEquals("ERR MISSING_OPERAND 4", in.readLine());
+      assertEquals("ERR BAD_REQUEST 6", in.readLine());
+      assertEquals("OK 0.0", in.readLine());
+      // a syntax error after a division by zero still gets an answer
+      assertEquals("OK 2.0", in.readLine());
+      assertEquals("ERR DIVISION_BY_ZERO 1", in.readLine());
+      assertEquals("OK 4.0", in.readLine());
+      assertEquals(5, service.getCacheSize());
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testPartialNextLineDoesNotDelayAnswers() throws Exception {
+    try (ExpressionService service = new ExpressionService(0).start();
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), service.getPort())) {
+      OutputStream out = socket.getOutputStream();
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+      // the first request arrives together with the beginning of the second
+      out.write("1 + 1\n2 +".getBytes(StandardCharsets.UTF_8));
+      out.flush();
+      assertEquals("OK 2.0", in.readLine());
+
+      out.write(" 2\n".getBytes(StandardCharsets.UTF_8));
+      out.flush();
+      assertEquals("OK 4.0", in.readLine());
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package app.gpuslave.first;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testEmpty() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getValueAtPercentile(99));
+    assertEquals(0, histogram.getMax());
+  }
+
+  @Test
+  public void testSmallValuesAreExact() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+    assertEquals(100, histogram.getCount());
+    assertEquals(1, histogram.getMin());
+    assertEquals(100, histogram.getMax());
+    assertEquals(50.5, histogram.getMean(), 0.001);
+    assertEquals(50, histogram.getValueAtPercentile(50));
+    assertEquals(90, histogram.getValueAtPercentile(90));
+    assertEquals(99, histogram.getValueAtPercentile(99));
+    assertEquals(100, histogram.getValueAtPercentile(100));
+  }
+
+  @Test
+  public void testRelativeErrorOfLargeValues() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1000; value <= 1_000_000_000L; value *= 10) {
+      histogram.reset();
+      histogram.record(value);
+      histogram.record(value * 2);
+      long p50 = histogram.getValueAtPercentile(50);
+      assertTrue("p50 " + p50 + " should be close to " + value,
+          p50 >= value && p50 <= value + value / 60);
+      assertEquals(value * 2, histogram.getValueAtPercentile(100));
+    }
+  }
+
+  @Test
+  public void testTailPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 9990; i++) {
+      histogram.record(100);
+    }
+    for (int i = 0; i < 10; i++) {
+      histogram.record(1_000_000);
+    }
+    assertEquals(100, histogram.getValueAtPercentile(99.9));
+    assertTrue(histogram.getValueAtPercentile(99.95) >= 1_000_000 - 1_000_000 / 60);
+    assertEquals(1_000_000, histogram.getMax());
+  }
+
+  @Test
+  public void testAddAndCsvRoundTrip() {
+    LatencyHistogram first = new LatencyHistogram();
+    LatencyHistogram second = new LatencyHistogram();
+    for (int i = 0; i < 1000; i++) {
+      first.record(i * 7L);
+      second.record(i * 13L + 5);
+    }
+    first.add(second);
+    assertEquals(2000, first.getCount());
+    assertEquals(999 * 13L + 5, first.getMax());
+
+    LatencyHistogram restored = LatencyHistogram.fromCsv(first.toCsv());
+    assertEquals(first.getCount(), restored.getCount());
+    assertEquals(first.getMax(), restored.getMax());
+    for (double p : new double[] { 10, 50, 90, 99, 99.9 }) {
+      assertEquals(first.getValueAtPercentile(p), restored.getValueAtPercentile(p));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPercentile() {
+    new LatencyHistogram().getValueAtPercentile(101);
+  }
+}
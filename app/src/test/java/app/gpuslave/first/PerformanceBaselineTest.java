@@ -0,0 +1,117 @@
+package app.gpuslave.first;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for the regression and threshold logic of PerformanceBaseline and
+ * for the JSON helper it is stored with.
+ */
+public class PerformanceBaselineTest {
+
+  private static PerformanceBaseline run(Map<String, Object> metadata, Object... results) {
+    Map<String, Double> values = new LinkedHashMap<>();
+    for (int i = 0; i < results.length; i += 2) {
+      values.put((String) results[i], (Double) results[i + 1]);
+    }
+    return new PerformanceBaseline(metadata, values);
+  }
+
+  /**
+   * Test that only growth beyond the threshold is a regression.
+   */
+  @Test
+  public void testThreshold() {
+    PerformanceBaseline baseline = run(Map.of(), "a", 100.0, "b", 100.0, "c", 100.0);
+    PerformanceBaseline current = run(Map.of(), "a", 125.0, "b", 126.0, "c", 50.0);
+
+    PerformanceBaseline.Comparison comparison = current.compareTo(baseline, 0.25);
+    assertTrue(comparison.hasRegressions());
+    assertEquals(1, comparison.getRegressions().size());
+    assertTrue(comparison.getRegressions().get(0).startsWith("b "));
+    assertTrue(comparison.getWarnings().isEmpty());
+
+    assertFalse(current.compareTo(baseline, 0.30).hasRegressions());
+    assertEquals(2, current.compareTo(baseline, 0.0).getRegressions().size());
+  }
+
+  /**
+   * Test that new, missing and incomparable measurements produce warnings
+   * rather than regressions.
+   */
+  @Test
+  public void testMissingMeasurementsAndEnvironment() {
+    PerformanceBaseline baseline = run(Map.of("javaVersion", "17", "cpu", "x"), "a", 100.0, "old", 10.0);
+    PerformanceBaseline current = run(Map.of("javaVersion", "21", "cpu", "x"), "a", 90.0, "new", 10.0);
+
+    PerformanceBaseline.Comparison comparison = current.compareTo(baseline, 0.25);
+    assertFalse(comparison.hasRegressions());
+    assertEquals(2, comparison.getWarnings().size());
+    assertTrue(comparison.getWarnings().get(0).contains("javaVersion"));
+    assertTrue(comparison.getWarnings().get(1).contains("old"));
+    assertTrue(comparison.toText().contains("новый замер"));
+  }
+
+  /**
+   * Test that a run survives a JSON round trip, including escaped metadata.
+   */
+  @Test
+  public void testJsonRoundTrip() {
+    Map<String, Object> metadata = new LinkedHashMap<>();
+    metadata.put("cpu", "Quoted \"model\"\\path\n\ttab");
+    metadata.put("availableProcessors", 8.0);
+    PerformanceBaseline original = run(metadata, "compare/ArrayList/GET", 12.5, "expression/compile", 800.0);
+
+    PerformanceBaseline parsed = PerformanceBaseline.fromJson(original.toJson());
+    assertEquals(original.getResults(), parsed.getResults());
+    assertEquals(metadata, parsed.getMetadata());
+  }
+
+  /**
+   * Test that malformed baseline files are rejected.
+   */
+  @Test
+  public void testMalformedJson() {
+    for (String json : List.of("{", "{\"results\": 1}", "{\"results\": {\"a\": \"x\"}}", "[1, 2] 3")) {
+      try {
+        PerformanceBaseline.fromJson(json);
+        fail("Should reject " + json);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  /**
+   * Test that the JSON helper parses nested values and quotes control
+   * characters.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testJsonParseAndQuote() {
+    Map<String, Object> value = (Map<String, Object>) Json.parse(
+        "{\"a\": [1, -2.5e1, true, null], \"b\": {\"c\": \"\\u0041\\\"\"}}");
+    assertEquals(List.of(1.0, -25.0, true), ((List<Object>) value.get("a")).subList(0, 3));
+    assertNull(((List<Object>) value.get("a")).get(3));
+    assertEquals("A\"", ((Map<String, Object>) value.get("b")).get("c"));
+
+    assertEquals("\"a\\u0001\\r\"", Json.quote("a\u0001\r"));
+    assertEquals("x\u0001\"y", Json.parse(Json.quote("x\u0001\"y")));
+  }
+
+  /**
+   * Test that the expression workloads cover every evaluator phase.
+   */
+  @Test
+  public void testExpressionWorkloads() {
+    Map<String, Double> results = PerformanceBaseline.measureExpressions(10);
+    assertEquals(List.of("expression/parseAndEvaluate", "expression/compile", "expression/evaluateCompiled",
+        "expression/evaluateQuietly"), List.copyOf(results.keySet()));
+    for (double value : results.values()) {
+      assertTrue(value > 0);
+    }
+  }
+}
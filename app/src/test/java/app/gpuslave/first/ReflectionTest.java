@@ -7,8 +7,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.FileOutputStream;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import app.gpuslave.first.AutoInjectable.Scope;
 
 /**
  * Тестовый класс для проверки механизма внедрения зависимостей
@@ -120,6 +127,243 @@ public class ReflectionTest {
     }
   }
 
+  /**
+   * Реализация интерфейса A, подсчитывающая созданные экземпляры.
+   * Используется в тесте отложенного внедрения.
+   */
+  public static class CountingA implements InterfaceA {
+    /**
+     * Количество созданных экземпляров.
+     */
+    static final AtomicInteger CREATED = new AtomicInteger();
+
+    /**
+     * Создает экземпляр и увеличивает счетчик.
+     */
+    public CountingA() {
+      CREATED.incrementAndGet();
+    }
+
+    @Override
+    public String doSomething() {
+      return "Counting A";
+    }
+  }
+
+  /**
+   * Тестовый бин с полями отложенного внедрения.
+   */
+  public static class LazyBean {
+    /**
+     * Поле, в которое внедряется прокси интерфейса.
+     */
+    @AutoInjectable(lazy = true)
+    private InterfaceA lazyA;
+
+    /**
+     * Поле, в которое внедряется поставщик.
+     */
+    @AutoInjectable(lazy = true)
+    private Supplier<InterfaceB> lazyB;
+  }
+
+  /**
+   * Тестовый интерфейс C, реализация которого сама имеет зависимости.
+   */
+  public interface InterfaceC {
+    /**
+     * Возвращает зависимость, переданную в конструктор.
+     *
+     * @return реализация InterfaceA
+     */
+    InterfaceA getA();
+
+    /**
+     * Возвращает зависимость, внедренную в поле.
+     *
+     * @return реализация InterfaceB
+     */
+    InterfaceB getB();
+  }
+
+  /**
+   * Реализация интерфейса C с внедрением через конструктор и поле.
+   */
+  public static class ImplementationC implements InterfaceC {
+    /**
+     * Зависимость, переданная в конструктор.
+     */
+    private final InterfaceA a;
+
+    /**
+     * Зависимость, внедряемая в поле.
+     */
+    @AutoInjectable
+    private InterfaceB b;
+
+    /**
+     * Создает реализацию с зависимостью.
+     *
+     * @param a реализация InterfaceA
+     */
+    @AutoInjectable
+    public ImplementationC(InterfaceA a) {
+      this.a = a;
+    }
+
+    @Override
+    public InterfaceA getA() {
+      return a;
+    }
+
+    @Override
+    public InterfaceB getB() {
+      return b;
+    }
+  }
+
+  /**
+   * Тестовый бин, зависимость которого имеет собственные зависимости.
+   */
+  public static class GraphBean {
+    /**
+     * Поле, для которого разрешается граф зависимостей.
+     */
+    @AutoInjectable
+    private InterfaceC fieldC;
+  }
+
+  /**
+   * Первый интерфейс циклической зависимости.
+   */
+  public interface CycleX {
+  }
+
+  /**
+   * Второй интерфейс циклической зависимости.
+   */
+  public interface CycleY {
+  }
+
+  /**
+   * Реализация CycleX, зависящая от CycleY через конструктор.
+   */
+  public static class CycleXImpl implements CycleX {
+    /**
+     * Создает реализацию.
+     *
+     * @param y реализация CycleY
+     */
+    @AutoInjectable
+    public CycleXImpl(CycleY y) {
+      // Зависимость нужна только для построения цикла
+    }
+  }
+
+  /**
+   * Реализация CycleY, зависящая от CycleX через поле.
+   */
+  public static class CycleYImpl implements CycleY {
+    /**
+     * Поле, замыкающее цикл.
+     */
+    @AutoInjectable
+    private CycleX x;
+  }
+
+  /**
+   * Тестовый бин с циклической зависимостью.
+   */
+  public static class CycleBean {
+    /**
+     * Поле, разрешение которого приводит к циклу.
+     */
+    @AutoInjectable
+    private CycleX x;
+  }
+
+  /**
+   * Тестовый бин с доступными из пакета полями, для которого процессор
+   * аннотаций генерирует внедритель.
+   */
+  public static class GeneratedBean {
+    /**
+     * Поле с единственным экземпляром на инжектор.
+     */
+    @AutoInjectable(scope = Scope.SINGLETON)
+    InterfaceA fieldA;
+
+    /**
+     * Поле, в которое внедряется поставщик.
+     */
+    @AutoInjectable(lazy = true)
+    Supplier<InterfaceB> lazyB;
+  }
+
+  /**
+   * Тестовый бин с final полем, которое нельзя внедрить ни сгенерированным
+   * внедрителем, ни через рефлексию.
+   */
+  public static class FinalFieldBean {
+    /**
+     * Поле, внедрение в которое отклоняется.
+     */
+    @AutoInjectable
+    final InterfaceA fieldA = null;
+  }
+
+  /**
+   * Приватный внешний класс, из-за которого процессор аннотаций не может
+   * сослаться на вложенный бин.
+   */
+  private static class Hidden {
+    /**
+     * Тестовый бин, который внедряется через рефлексию.
+     */
+    static class ReflectiveBean {
+      /**
+       * Поле с единственным экземпляром на инжектор.
+       */
+      @AutoInjectable(scope = Scope.SINGLETON)
+      private InterfaceA singletonA;
+
+      /**
+       * Поле с экземпляром на область запроса.
+       */
+      @AutoInjectable(scope = Scope.REQUEST)
+      private InterfaceB requestB;
+
+      /**
+       * Поле, в которое внедряется прокси интерфейса.
+       */
+      @AutoInjectable(lazy = true)
+      private InterfaceA lazyA;
+
+      /**
+       * Поле, в которое внедряется поставщик.
+       */
+      @AutoInjectable(lazy = true)
+      private Supplier<InterfaceB> lazyB;
+    }
+  }
+
+  /**
+   * Тестовый бин с полями, области видимости которых заданы в аннотации.
+   */
+  public static class ScopedBean {
+    /**
+     * Поле с единственным экземпляром на инжектор.
+     */
+    @AutoInjectable(scope = Scope.SINGLETON)
+    private InterfaceA singletonA;
+
+    /**
+     * Поле с экземпляром на область запроса.
+     */
+    @AutoInjectable(scope = Scope.REQUEST)
+    private InterfaceB requestB;
+  }
+
   /**
    * Настройка тестового окружения перед выполнением каждого теста.
    * Создает временный файл свойств с конфигурацией внедрения зависимостей.
@@ -201,6 +445,396 @@ public class ReflectionTest {
     assertEquals("Implementation B", testBean.getFieldB().doSomethingElse());
   }
 
+  /**
+   * Проверяет, что повторное внедрение тем же инжектором (с использованием
+   * сохраненного плана) создает новые экземпляры реализаций для каждого
+   * объекта.
+   *
+   * @throws Exception при ошибке внедрения зависимостей
+   */
+  @Test
+  public void testRepeatedInjection() throws Exception {
+    Injector injector = new Injector(propertiesPath);
+
+    TestBean first = injector.inject(new TestBean());
+    TestBean second = injector.inject(new TestBean());
+
+    assertEquals("Implementation A1", second.getFieldA().doSomething());
+    assertEquals("Implementation B", second.getFieldB().doSomethingElse());
+    assertNotSame(first.getFieldA(), second.getFieldA());
+    assertNotSame(first.getFieldB(), second.getFieldB());
+  }
+
+  /**
+   * Проверяет области singleton и request, заданные атрибутом аннотации:
+   * singleton-экземпляр общий для всех объектов, экземпляр области запроса
+   * общий внутри области и новый в каждой следующей, а вне области внедрение
+   * невозможно.
+   *
+   * @throws Exception при ошибке внедрения зависимостей
+   */
+  @Test
+  public void testAnnotationScopes() throws Exception {
+    Injector injector = new Injector(propertiesPath);
+
+    ScopedBean first;
+    ScopedBean second;
+    try (Injector.RequestScope scope = injector.openRequestScope()) {
+      first = injector.inject(new ScopedBean());
+      second = injector.inject(new ScopedBean());
+    }
+    ScopedBean third;
+    try (Injector.RequestScope scope = injector.openRequestScope()) {
+      third = injector.inject(new ScopedBean());
+    }
+
+    assertSame(first.singletonA, second.singletonA);
+    assertSame(first.singletonA, third.singletonA);
+    assertSame(first.requestB, second.requestB);
+    assertNotSame(first.requestB, third.requestB);
+
+    try {
+      injector.inject(new ScopedBean());
+      fail("Внедрение поля с областью запроса вне области должно завершаться ошибкой");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().contains("request scope"));
+    }
+  }
+
+  /**
+   * Проверяет область thread, заданную в файле свойств: внутри потока
+   * экземпляр общий, в другом потоке создается свой.
+   *
+   * @throws Exception при ошибке внедрения зависимостей
+   */
+  @Test
+  public void testThreadScopeFromProperties() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceA",
+        "app.gpuslave.first.ReflectionTest$ImplementationA1");
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceA.scope", "thread");
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceB",
+        "app.gpuslave.first.ReflectionTest$ImplementationB");
+
+    try (FileOutputStream out = new FileOutputStream(propertiesPath)) {
+      props.store(out, "Test configuration with thread scope");
+    }
+
+    Injector injector = new Injector(propertiesPath);
+    TestBean first = injector.inject(new TestBean());
+    TestBean second = injector.inject(new TestBean());
+
+    AtomicReference<TestBean> other = new AtomicReference<>();
+    Thread thread = new Thread(() -> {
+      try {
+        other.set(injector.inject(new TestBean()));
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    thread.start();
+    thread.join();
+
+    assertSame(first.getFieldA(), second.getFieldA());
+    assertNotSame(first.getFieldB(), second.getFieldB());
+    assertNotNull(other.get());
+    assertNotSame(first.getFieldA(), other.get().getFieldA());
+  }
+
+  /**
+   * Проверяет отложенное внедрение: реализация создается только при первом
+   * обращении к прокси и затем переиспользуется, поставщик возвращает один и
+   * тот же экземпляр.
+   *
+   * @throws Exception при ошибке внедрения зависимостей
+   */
+  @Test
+  public void testLazyInjection() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceA",
+        "app.gpuslave.first.ReflectionTest$CountingA");
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceB",
+        "app.gpuslave.first.ReflectionTest$ImplementationB");
+
+    try (FileOutputStream out = new FileOutputStream(propertiesPath)) {
+      props.store(out, "Test configuration with lazy injection");
+    }
+
+    Injector injector = new Injector(propertiesPath);
+    int before = CountingA.CREATED.get();
+    LazyBean bean = injector.inject(new LazyBean());
+
+    assertNotNull(bean.lazyA);
+    assertNotNull(bean.lazyB);
+    assertEquals("Реализация не должна создаваться до первого обращения", before, CountingA.CREATED.get());
+
+    assertEquals("Counting A", bean.lazyA.doSomething());
+    assertEquals("Counting A", bean.lazyA.doSomething());
+    assertEquals(before + 1, CountingA.CREATED.get());
+
+    assertEquals("Implementation B", bean.lazyB.get().doSomethingElse());
+    assertSame(bean.lazyB.get(), bean.lazyB.get());
+  }
+
+  /**
+   * Проверяет, что для бинов с доступными и приватными полями используется
+   * внедритель, сгенерированный на этапе компиляции, с теми же областями
+   * видимости и отложенным созданием.
+   *
+   * @throws Exception при ошибке внедрения зависимостей
+   */
+  @Test
+  public void testGeneratedInjector() throws Exception {
+    Injector injector = new Injector(propertiesPath);
+
+    assertTrue(injector.isGenerated(GeneratedBean.class));
+    assertTrue(injector.isGenerated(TestBean.class));
+
+    TestBean privateFields = injector.inject(new TestBean());
+    assertEquals("Implementation A1", privateFields.getFieldA().doSomething());
+
+    GeneratedBean first = injector.inject(new GeneratedBean());
+    GeneratedBean second = injector.inject(new GeneratedBean());
+
+    assertEquals("Implementation A1", first.fieldA.doSomething());
+    assertSame(first.fieldA, second.fieldA);
+    assertEquals("Implementation B", first.lazyB.get().doSomethingElse());
+    assertSame(first.lazyB.get(), first.lazyB.get());
+  }
+
+  /**
+   * Проверяет внедрение через рефлексию в бин, для которого процессор не
+   * генерирует внедритель: области singleton и request, прокси и поставщик
+   * ведут себя так же, как в сгенерированном внедрителе.
+   *
+   * @throws Exception при ошибке внедрения зависимостей
+   */
+  @Test
+  public void testReflectiveFallback() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceA",
+        "app.gpuslave.first.ReflectionTest$CountingA");
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceB",
+        "app.gpuslave.first.ReflectionTest$ImplementationB");
+    writeProperties(props, "Test configuration for reflective injection");
+
+    Injector injector = new Injector(propertiesPath);
+    assertFalse(injector.isGenerated(Hidden.ReflectiveBean.class));
+
+    int before = CountingA.CREATED.get();
+    Hidden.ReflectiveBean first;
+    Hidden.ReflectiveBean second;
+    try (Injector.RequestScope scope = injector.openRequestScope()) {
+      first = injector.inject(new Hidden.ReflectiveBean());
+      second = injector.inject(new Hidden.ReflectiveBean());
+    }
+    Hidden.ReflectiveBean third;
+    try (Injector.RequestScope scope = injector.openRequestScope()) {
+      third = injector.inject(new Hidden.ReflectiveBean());
+    }
+
+    assertSame(first.singletonA, second.singletonA);
+    assertSame(first.singletonA, third.singletonA);
+    assertSame(first.requestB, second.requestB);
+    assertNotSame(first.requestB, third.requestB);
+    assertEquals("Реализация прокси не должна создаваться до первого обращения",
+        before + 1, CountingA.CREATED.get());
+
+    assertEquals("Counting A", first.lazyA.doSomething());
+    assertEquals("Counting A", first.lazyA.doSomething());
+    assertEquals(before + 2, CountingA.CREATED.get());
+
+    assertEquals("Implementation B", first.lazyB.get().doSomethingElse());
+    assertSame(first.lazyB.get(), first.lazyB.get());
+  }
+
+  /**
+   * Проверяет, что final поле с аннотацией отклоняется и при внедрении
+   * через рефлексию.
+   *
+   * @throws Exception при ошибке внедрения зависимостей
+   */
+  @Test
+  public void testFinalFieldRejected() throws Exception {
+    Injector injector = new Injector(propertiesPath);
+    try {
+      injector.inject(new FinalFieldBean());
+      fail("Внедрение в final поле должно завершаться ошибкой");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().contains("fieldA"));
+    }
+  }
+
+  /**
+   * Проверяет рекурсивное разрешение графа: реализация создается
+   * конструктором с аннотацией, а в ее поля также внедряются зависимости.
+   *
+   * @throws Exception при ошибке внедрения зависимостей
+   */
+  @Test
+  public void testRecursiveConstructorInjection() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceA",
+        "app.gpuslave.first.ReflectionTest$ImplementationA1");
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceB",
+        "app.gpuslave.first.ReflectionTest$ImplementationB");
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceC",
+        "app.gpuslave.first.ReflectionTest$ImplementationC");
+    writeProperties(props, "Test configuration with dependency graph");
+
+    GraphBean bean = new Injector(propertiesPath).inject(new GraphBean());
+
+    assertNotNull(bean.fieldC);
+    assertEquals("Implementation A1", bean.fieldC.getA().doSomething());
+    assertEquals("Implementation B", bean.fieldC.getB().doSomethingElse());
+  }
+
+  /**
+   * Проверяет, что циклическая зависимость обнаруживается и сообщение
+   * содержит цепочку интерфейсов.
+   *
+   * @throws Exception при ошибке внедрения зависимостей
+   */
+  @Test
+  public void testDependencyCycle() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("app.gpuslave.first.ReflectionTest$CycleX",
+        "app.gpuslave.first.ReflectionTest$CycleXImpl");
+    props.setProperty("app.gpuslave.first.ReflectionTest$CycleY",
+        "app.gpuslave.first.ReflectionTest$CycleYImpl");
+    writeProperties(props, "Test configuration with dependency cycle");
+
+    try {
+      new Injector(propertiesPath).inject(new CycleBean());
+      fail("Циклическая зависимость должна приводить к ошибке");
+    } catch (IllegalStateException e) {
+      assertEquals("Dependency cycle: app.gpuslave.first.ReflectionTest$CycleX"
+          + " -> app.gpuslave.first.ReflectionTest$CycleY"
+          + " -> app.gpuslave.first.ReflectionTest$CycleX", e.getMessage());
+    }
+  }
+
+  /**
+   * Проверяет заранее выполняемое параллельное создание singleton-экземпляров:
+   * каждый создается один раз с учетом зависимостей и затем переиспользуется
+   * при внедрении.
+   *
+   * @throws Exception при ошибке внедрения зависимостей
+   */
+  @Test
+  public void testStartEager() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceA",
+        "app.gpuslave.first.ReflectionTest$CountingA");
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceA.scope", "singleton");
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceB",
+        "app.gpuslave.first.ReflectionTest$ImplementationB");
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceC",
+        "app.gpuslave.first.ReflectionTest$ImplementationC");
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceC.scope", "singleton");
+    writeProperties(props, "Test configuration with eager singletons");
+
+    Injector injector = new Injector(propertiesPath);
+    int before = CountingA.CREATED.get();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      injector.startEager(executor);
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(before + 1, CountingA.CREATED.get());
+
+    GraphBean first = injector.inject(new GraphBean());
+    GraphBean second = injector.inject(new GraphBean());
+    assertSame(first.fieldC, second.fieldC);
+    assertEquals("Counting A", first.fieldC.getA().doSomething());
+    assertEquals(before + 1, CountingA.CREATED.get());
+  }
+
+  /**
+   * Проверяет инжектор, собранный из индексов на пути классов: тестовый
+   * индекс объединяется с основным, все привязки разрешаются заранее с
+   * отчетом о времени, и внедрение использует сопоставление из индекса.
+   *
+   * @throws Exception при ошибке внедрения зависимостей
+   */
+  @Test
+  public void testClasspathIndex() throws Exception {
+    Injector injector = Injector.fromClasspath();
+
+    Injector.PreloadReport report = injector.preload();
+    assertTrue(report.getTimings().containsKey("app.gpuslave.first.ReflectionTest$InterfaceA"));
+    assertTrue(report.getTimings().containsKey("app.gpuslave.first.ReflectionExample$SomeInterface"));
+    assertTrue(report.toTable().contains("app.gpuslave.first.ReflectionTest$InterfaceB"));
+
+    TestBean testBean = injector.inject(new TestBean());
+    assertEquals("Implementation A1", testBean.getFieldA().doSomething());
+    assertEquals("Implementation B", testBean.getFieldB().doSomethingElse());
+  }
+
+  /**
+   * Проверяет, что предварительное разрешение сообщает обо всех
+   * некорректных привязках сразу.
+   */
+  @Test
+  public void testPreloadReportsInvalidBindings() {
+    Properties props = new Properties();
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceA",
+        "app.gpuslave.first.ReflectionTest$ImplementationB");
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceB",
+        "app.gpuslave.first.ReflectionTest$Missing");
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceC",
+        "app.gpuslave.first.ReflectionTest$ImplementationC");
+    props.setProperty("app.gpuslave.first.ReflectionTest$InterfaceC.scope", "forever");
+
+    try {
+      new Injector(props).preload();
+      fail("Некорректные привязки должны приводить к ошибке");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().contains("ImplementationB is not a app.gpuslave.first.ReflectionTest$InterfaceA"));
+      assertTrue(e.getMessage().contains("ClassNotFoundException"));
+      assertTrue(e.getMessage().contains("Unknown scope 'forever'"));
+    }
+  }
+
+  /**
+   * Проверяет сбор метрик: количество внедрений по классам, созданных
+   * экземпляров по привязкам и попаданий в кэш планов.
+   *
+   * @throws Exception при ошибке внедрения зависимостей
+   */
+  @Test
+  public void testMetrics() throws Exception {
+    SimpleInjectorMetrics metrics = new SimpleInjectorMetrics();
+    Injector injector = new Injector(propertiesPath).withMetrics(metrics);
+
+    injector.inject(new TestBean());
+    injector.inject(new TestBean());
+
+    assertEquals(2, metrics.getInjectionCount(TestBean.class));
+    assertEquals(2, metrics.getCreationCount("app.gpuslave.first.ReflectionTest$InterfaceA"));
+    assertEquals(2, metrics.getCreationCount("app.gpuslave.first.ReflectionTest$InterfaceB"));
+    assertTrue(metrics.getCreationNanos("app.gpuslave.first.ReflectionTest$InterfaceA") >= 0);
+    assertEquals(0, metrics.getCreationCount("app.gpuslave.first.ReflectionTest$InterfaceC"));
+    // План строится для бина и для обеих реализаций; повторное внедрение берет все три из кэша
+    assertEquals(3, metrics.getPlanCacheMisses());
+    assertEquals(3, metrics.getPlanCacheHits());
+    assertTrue(metrics.toTable().contains("app.gpuslave.first.ReflectionTest$InterfaceA"));
+  }
+
+  /**
+   * Записывает тестовый файл свойств.
+   *
+   * @param props   сопоставление интерфейсов и реализаций
+   * @param comment комментарий файла
+   * @throws IOException при ошибке записи файла
+   */
+  private void writeProperties(Properties props, String comment) throws IOException {
+    try (FileOutputStream out = new FileOutputStream(propertiesPath)) {
+      props.store(out, comment);
+    }
+  }
+
   /**
    * Проверяет, что при отсутствии реализации в файле свойств
    * генерируется соответствующее исключение.
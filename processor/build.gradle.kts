@@ -0,0 +1,19 @@
+/*
+ * Annotation processor that generates plain-Java injectors for classes with
+ * @AutoInjectable fields. It is used by the app project through the
+ * annotationProcessor and testAnnotationProcessor configurations.
+ */
+
+plugins {
+    `java-library`
+}
+
+repositories {
+    mavenCentral()
+}
+
+java {
+    toolchain {
+        languageVersion = JavaLanguageVersion.of(21)
+    }
+}
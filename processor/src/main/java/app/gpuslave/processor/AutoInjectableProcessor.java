@@ -0,0 +1,331 @@
+package app.gpuslave.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Процессор аннотаций, который на этапе компиляции генерирует внедритель
+ * для каждого класса с полями {@code @AutoInjectable}.
+ * <p>
+ * Для класса {@code пакет.Внешний$Бин} создается класс
+ * {@code пакет.Внешний$Бин$$Injector}, реализующий
+ * {@code app.gpuslave.first.GeneratedInjector}. Он присваивает поля бина
+ * напрямую и получает экземпляры реализаций из контекста инжектора, поэтому
+ * сопоставление из файла свойств, области видимости и отложенное создание
+ * сохраняются, а рефлексия при внедрении не нужна.
+ * <p>
+ * Доступные из пакета поля присваиваются напрямую. Для приватных полей
+ * внедритель один раз при загрузке получает {@link java.lang.invoke.VarHandle}
+ * через {@code MethodHandles.privateLookupIn} и хранит его в статической
+ * константе, поэтому запись поля так же компилируется JIT без рефлексии.
+ * Если у бина есть статическое или final поле либо сам бин или тип поля
+ * недоступен, внедритель не генерируется, а компилятор выводит
+ * предупреждение со списком таких бинов; они внедряются через рефлексию.
+ * <p>
+ * Процессор изолирующий в смысле инкрементальной компиляции Gradle: каждый
+ * сгенерированный файл зависит только от своего бина.
+ */
+@SupportedAnnotationTypes(AutoInjectableProcessor.ANNOTATION)
+public class AutoInjectableProcessor extends AbstractProcessor {
+
+  /**
+   * Полное имя обрабатываемой аннотации.
+   */
+  static final String ANNOTATION = "app.gpuslave.first.AutoInjectable";
+
+  /**
+   * Полное имя контракта сгенерированного внедрителя.
+   */
+  private static final String GENERATED_INJECTOR = "app.gpuslave.first.GeneratedInjector";
+
+  /**
+   * Полное имя перечисления областей видимости.
+   */
+  private static final String SCOPE = ANNOTATION + ".Scope";
+
+  /**
+   * Суффикс имени сгенерированного класса.
+   */
+  private static final String SUFFIX = "$$Injector";
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    Map<TypeElement, List<VariableElement>> beans = new LinkedHashMap<>();
+    for (TypeElement annotation : annotations) {
+      for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+        if (element.getKind() == ElementKind.FIELD) {
+          beans.computeIfAbsent((TypeElement) element.getEnclosingElement(), bean -> new ArrayList<>())
+              .add((VariableElement) element);
+        }
+      }
+    }
+
+    List<String> skipped = new ArrayList<>();
+    for (Map.Entry<TypeElement, List<VariableElement>> entry : beans.entrySet()) {
+      TypeElement bean = entry.getKey();
+      String reason = unsupportedReason(bean, entry.getValue());
+      if (reason != null) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+            "No injector generated for " + bean.getQualifiedName() + ": " + reason
+                + "; reflection will be used", bean);
+        skipped.add(bean.getQualifiedName().toString());
+        continue;
+      }
+      try {
+        generate(bean, entry.getValue());
+      } catch (IOException e) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+            "Failed to generate injector for " + bean.getQualifiedName() + ": " + e.getMessage(), bean);
+      }
+    }
+    if (!skipped.isEmpty()) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+          skipped.size() + " bean(s) will be injected through reflection: " + String.join(", ", skipped));
+    }
+    return false;
+  }
+
+  /**
+   * Проверяет, можно ли сгенерировать внедритель для бина.
+   *
+   * @param bean   класс бина
+   * @param fields поля с аннотацией
+   * @return причина, по которой внедритель не генерируется, или {@code null}
+   */
+  private String unsupportedReason(TypeElement bean, List<VariableElement> fields) {
+    if (!isAccessible(bean)) {
+      return "the class is not accessible from its package";
+    }
+    for (VariableElement field : fields) {
+      Set<Modifier> modifiers = field.getModifiers();
+      if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL)) {
+        return "field " + field.getSimpleName() + " is static or final";
+      }
+      TypeMirror target = targetType(field);
+      if (target == null || !isAccessible((TypeElement) ((DeclaredType) target).asElement())) {
+        return "the type of field " + field.getSimpleName() + " is not an accessible class or interface";
+      }
+      if (isLazy(field) && !isSupplier(field.asType())
+          && ((DeclaredType) target).asElement().getKind() != ElementKind.INTERFACE) {
+        return "lazy field " + field.getSimpleName() + " is neither an interface nor a Supplier";
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Проверяет, что на класс можно сослаться из его пакета: ни он, ни
+   * внешние для него классы не являются приватными или локальными.
+   *
+   * @param type класс
+   * @return {@code true}, если класс доступен
+   */
+  private static boolean isAccessible(TypeElement type) {
+    Element element = type;
+    while (element instanceof TypeElement) {
+      NestingKind nesting = ((TypeElement) element).getNestingKind();
+      if (element.getModifiers().contains(Modifier.PRIVATE)
+          || nesting == NestingKind.LOCAL || nesting == NestingKind.ANONYMOUS) {
+        return false;
+      }
+      element = element.getEnclosingElement();
+    }
+    return true;
+  }
+
+  /**
+   * Определяет тип, реализация которого внедряется в поле: тип поля, а для
+   * отложенного поля {@code Supplier<X>} - аргумент {@code X}.
+   *
+   * @param field поле
+   * @return тип или {@code null}, если это не класс или интерфейс
+   */
+  private TypeMirror targetType(VariableElement field) {
+    TypeMirror type = field.asType();
+    if (type.getKind() != TypeKind.DECLARED) {
+      return null;
+    }
+    if (isLazy(field) && isSupplier(type)) {
+      List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+      if (arguments.size() != 1 || arguments.get(0).getKind() != TypeKind.DECLARED) {
+        return null;
+      }
+      type = arguments.get(0);
+    }
+    return processingEnv.getTypeUtils().erasure(type);
+  }
+
+  /**
+   * Генерирует исходный код внедрителя.
+   *
+   * @param bean   класс бина
+   * @param fields поля с аннотацией
+   * @throws IOException при ошибке записи файла
+   */
+  private void generate(TypeElement bean, List<VariableElement> fields) throws IOException {
+    String packageName = processingEnv.getElementUtils().getPackageOf(bean).getQualifiedName().toString();
+    String binaryName = processingEnv.getElementUtils().getBinaryName(bean).toString();
+    String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+        + SUFFIX;
+    String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+    String beanType = processingEnv.getTypeUtils().erasure(bean.asType()).toString();
+
+    StringBuilder sb = new StringBuilder();
+    if (!packageName.isEmpty()) {
+      sb.append("package ").append(packageName).append(";\n\n");
+    }
+    sb.append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n");
+    sb.append("public final class ").append(simpleName)
+        .append(" implements ").append(GENERATED_INJECTOR).append('<').append(beanType).append("> {\n\n");
+    appendVarHandles(sb, beanType, fields);
+    sb.append("  @Override\n");
+    sb.append("  @SuppressWarnings(\"unchecked\")\n");
+    sb.append("  public void inject(").append(beanType).append(" bean, ")
+        .append(GENERATED_INJECTOR).append(".Context context) throws Exception {\n");
+    for (VariableElement field : fields) {
+      String target = targetType(field).toString();
+      String method = !isLazy(field) ? "instance" : isSupplier(field.asType()) ? "lazySupplier" : "lazyProxy";
+      String value = "context." + method + "(" + target + ".class, " + SCOPE + "." + scope(field) + ")";
+      if (field.getModifiers().contains(Modifier.PRIVATE)) {
+        sb.append("    ").append(varHandleName(field)).append(".set(bean, ").append(value).append(");\n");
+      } else {
+        sb.append("    bean.").append(field.getSimpleName()).append(" = ").append(value).append(";\n");
+      }
+    }
+    sb.append("  }\n}\n");
+
+    try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, bean).openWriter()) {
+      writer.write(sb.toString());
+    }
+  }
+
+  /**
+   * Добавляет в сгенерированный класс константы {@code VarHandle} для
+   * приватных полей бина и статический блок, который их получает.
+   *
+   * @param sb       исходный код класса
+   * @param beanType имя типа бина
+   * @param fields   поля с аннотацией
+   */
+  private void appendVarHandles(StringBuilder sb, String beanType, List<VariableElement> fields) {
+    List<VariableElement> privateFields = new ArrayList<>();
+    for (VariableElement field : fields) {
+      if (field.getModifiers().contains(Modifier.PRIVATE)) {
+        privateFields.add(field);
+      }
+    }
+    if (privateFields.isEmpty()) {
+      return;
+    }
+    for (VariableElement field : privateFields) {
+      sb.append("  private static final java.lang.invoke.VarHandle ").append(varHandleName(field)).append(";\n");
+    }
+    sb.append("\n  static {\n");
+    sb.append("    try {\n");
+    sb.append("      java.lang.invoke.MethodHandles.Lookup lookup = java.lang.invoke.MethodHandles.privateLookupIn(")
+        .append(beanType).append(".class, java.lang.invoke.MethodHandles.lookup());\n");
+    for (VariableElement field : privateFields) {
+      sb.append("      ").append(varHandleName(field)).append(" = lookup.findVarHandle(").append(beanType)
+          .append(".class, \"").append(field.getSimpleName()).append("\", ")
+          .append(processingEnv.getTypeUtils().erasure(field.asType())).append(".class);\n");
+    }
+    sb.append("    } catch (ReflectiveOperationException e) {\n");
+    sb.append("      throw new ExceptionInInitializerError(e);\n");
+    sb.append("    }\n");
+    sb.append("  }\n\n");
+  }
+
+  /**
+   * Возвращает имя константы {@code VarHandle} для приватного поля.
+   *
+   * @param field поле
+   * @return имя константы
+   */
+  private static String varHandleName(VariableElement field) {
+    return "FIELD_" + field.getSimpleName();
+  }
+
+  /**
+   * Проверяет, является ли тип {@code java.util.function.Supplier}.
+   *
+   * @param type тип
+   * @return {@code true} для {@code Supplier}
+   */
+  private boolean isSupplier(TypeMirror type) {
+    return type.getKind() == TypeKind.DECLARED
+        && ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName()
+            .contentEquals("java.util.function.Supplier");
+  }
+
+  /**
+   * Возвращает значение атрибута {@code lazy} аннотации поля.
+   *
+   * @param field поле
+   * @return значение атрибута
+   */
+  private boolean isLazy(VariableElement field) {
+    Object value = attribute(field, "lazy");
+    return Boolean.TRUE.equals(value);
+  }
+
+  /**
+   * Возвращает имя константы атрибута {@code scope} аннотации поля.
+   *
+   * @param field поле
+   * @return имя области видимости
+   */
+  private String scope(VariableElement field) {
+    Object value = attribute(field, "scope");
+    return value instanceof VariableElement ? ((VariableElement) value).getSimpleName().toString() : "DEFAULT";
+  }
+
+  /**
+   * Возвращает значение атрибута аннотации {@code @AutoInjectable} с учетом
+   * значений по умолчанию.
+   *
+   * @param field поле
+   * @param name  имя атрибута
+   * @return значение или {@code null}
+   */
+  private Object attribute(VariableElement field, String name) {
+    for (AnnotationMirror mirror : field.getAnnotationMirrors()) {
+      if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(ANNOTATION)) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+            : processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+          if (entry.getKey().getSimpleName().contentEquals(name)) {
+            return entry.getValue().getValue();
+          }
+        }
+      }
+    }
+    return null;
+  }
+}
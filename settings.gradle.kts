@@ -11,4 +11,4 @@ plugins {
 }
 
 rootProject.name = "java-gpuslave"
-include("app")
+include("app", "processor")